@@ -0,0 +1,332 @@
+package com.github.tueda.donuts;
+
+import cc.redberry.rings.bigint.BigInteger;
+import cc.redberry.rings.poly.PolynomialMethods;
+import cc.redberry.rings.poly.multivar.MultivariateDivision;
+import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A coprime (GCD-free) basis of polynomials. Immutable.
+ *
+ * <p>A coprime basis of polynomials {@code p_1, ..., p_n} is a set of pairwise coprime polynomials
+ * {@code b_1, ..., b_m} such that each {@code p_i} is written as {@code p_i = u_i * b_1^e_i1 * ...
+ * * b_m^e_im} with an integer {@code u_i}. The basis is obtained by refining the input polynomials
+ * with GCDs only; its elements need not be irreducible. Each element is primitive and has its
+ * leading term with a positive coefficient.
+ *
+ * @see Polynomial#coprimeBasis(Polynomial...)
+ */
+public final class CoprimeBasis {
+  /** The set of variables. */
+  private final VariableSet variables;
+
+  /** The basis elements. */
+  private final MultivariatePolynomial<BigInteger>[] basis;
+
+  /** The exponents of the basis elements for each input polynomial. */
+  private final int[][] exponents;
+
+  /** The integer factor of each input polynomial. */
+  private final BigInteger[] units;
+
+  private CoprimeBasis(
+      final VariableSet variables,
+      final MultivariatePolynomial<BigInteger>[] basis,
+      final int[][] exponents,
+      final BigInteger[] units) {
+    this.variables = variables;
+    this.basis = basis;
+    this.exponents = exponents;
+    this.units = units;
+  }
+
+  /**
+   * Constructs a coprime basis of the given polynomials.
+   *
+   * @param polynomials the polynomials
+   * @return the coprime basis
+   * @throws IllegalArgumentException when any of the polynomials is zero
+   */
+  /* default */ static CoprimeBasis of(final Polynomial... polynomials) {
+    return of(0, polynomials);
+  }
+
+  /**
+   * Constructs a coprime basis of the given polynomials, the first {@code nCoprime} of which are
+   * known to be pairwise coprime. Only the rest are refined against the others, which saves the
+   * GCD computations among the known ones.
+   *
+   * @param nCoprime the number of the leading polynomials known to be pairwise coprime
+   * @param polynomials the polynomials
+   * @return the coprime basis
+   * @throws IllegalArgumentException when any of the polynomials is zero
+   */
+  /* default */ static CoprimeBasis of(final int nCoprime, final Polynomial... polynomials) {
+    final VariableSet newVariables = VariableSet.unionOf(polynomials);
+    final int nVariables = newVariables.size();
+    final int n = polynomials.length;
+
+    // Split each polynomial into its integer factor, monomial content and the rest.
+    final BigInteger[] newUnits = new BigInteger[n];
+    final int[][] monomialExponents = new int[n][];
+    final List<MultivariatePolynomial<BigInteger>> rests = new ArrayList<>(n);
+    final boolean[] usedVariables = new boolean[nVariables];
+    for (int i = 0; i < n; i++) {
+      final MultivariatePolynomial<BigInteger> poly =
+          polynomials[i].translate(newVariables).getRawPolynomialWithoutCopy();
+      if (poly.isZero()) {
+        throw new IllegalArgumentException("coprime basis with zero");
+      }
+      final BigInteger content = poly.content().abs();
+      newUnits[i] = poly.signumOfLC() < 0 ? content.negate() : content;
+      final int[] dv = poly.monomialContent().exponents;
+      monomialExponents[i] = dv;
+      for (int j = 0; j < nVariables; j++) {
+        if (dv[j] > 0) {
+          usedVariables[j] = true;
+        }
+      }
+      MultivariatePolynomial<BigInteger> rest = poly.copy().divideExact(newUnits[i]);
+      rest = rest.divideDegreeVectorOrNull(poly.monomialContent());
+      rests.add(rest);
+    }
+
+    // Refine the polynomials into pairwise coprime ones.
+    // The divisors of pairwise coprime polynomials are pairwise coprime, and the rests are already
+    // primitive with positive leading coefficients.
+    final List<MultivariatePolynomial<BigInteger>> refined = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      final MultivariatePolynomial<BigInteger> rest = rests.get(i);
+      if (rest.isConstant()) {
+        continue;
+      }
+      if (i < nCoprime) {
+        refined.add(rest);
+      } else {
+        insert(refined, rest);
+      }
+    }
+
+    // The variables in the monomial contents come first.
+    final List<MultivariatePolynomial<BigInteger>> newBasis = new ArrayList<>();
+    final List<Integer> variableIndices = new ArrayList<>();
+    for (int j = 0; j < nVariables; j++) {
+      if (usedVariables[j]) {
+        newBasis.add(Polynomial.RAW_ZERO.setNVariables(nVariables).createMonomial(j, 1));
+        variableIndices.add(j);
+      }
+    }
+    final int nMonomials = newBasis.size();
+    newBasis.addAll(refined);
+
+    final int[][] newExponents = new int[n][newBasis.size()];
+    for (int i = 0; i < n; i++) {
+      for (int k = 0; k < nMonomials; k++) {
+        newExponents[i][k] = monomialExponents[i][variableIndices.get(k)];
+      }
+      MultivariatePolynomial<BigInteger> rest = rests.get(i);
+      for (int k = nMonomials; k < newBasis.size() && !rest.isConstant(); k++) {
+        final MultivariatePolynomial<BigInteger> b = newBasis.get(k);
+        if (!mayDivide(rest, b)) {
+          continue;
+        }
+        int e = 0;
+        while (true) {
+          final MultivariatePolynomial<BigInteger> q = MultivariateDivision.divideOrNull(rest, b);
+          if (q == null) {
+            break;
+          }
+          rest = q;
+          e++;
+        }
+        newExponents[i][k] = e;
+      }
+      assert rest.isConstant();
+    }
+
+    @SuppressWarnings("unchecked")
+    final MultivariatePolynomial<BigInteger>[] basisArray =
+        newBasis.toArray(new MultivariatePolynomial[0]);
+    return new CoprimeBasis(newVariables, basisArray, newExponents, newUnits);
+  }
+
+  /**
+   * Inserts the given polynomial into the list of pairwise coprime polynomials, keeping the
+   * pairwise coprimality.
+   */
+  private static void insert(
+      final List<MultivariatePolynomial<BigInteger>> basis,
+      final MultivariatePolynomial<BigInteger> poly) {
+    final Deque<MultivariatePolynomial<BigInteger>> work = new ArrayDeque<>();
+    work.push(poly);
+    outer:
+    while (!work.isEmpty()) {
+      MultivariatePolynomial<BigInteger> a = work.pop();
+      for (int j = 0; j < basis.size() && !a.isConstant(); j++) {
+        final MultivariatePolynomial<BigInteger> b = basis.get(j);
+        final MultivariatePolynomial<BigInteger> g = normalize(VariableOrdering.gcd(a, b));
+        if (g.isConstant()) {
+          continue;
+        }
+        if (g.equals(b)) {
+          // b divides a: keep b and check the quotient again with b.
+          a = MultivariateDivision.divideExact(a, b);
+          j--;
+          continue;
+        }
+        // Split a and b into a/g, g and b/g. They are not necessarily coprime with each other,
+        // but the total degree strictly decreases.
+        basis.remove(j);
+        work.push(MultivariateDivision.divideExact(b, g));
+        work.push(g);
+        work.push(MultivariateDivision.divideExact(a, g));
+        continue outer;
+      }
+      if (!a.isConstant()) {
+        basis.add(normalize(a));
+      }
+    }
+  }
+
+  /** Makes the given polynomial primitive with a positive leading coefficient. */
+  private static MultivariatePolynomial<BigInteger> normalize(
+      final MultivariatePolynomial<BigInteger> poly) {
+    final MultivariatePolynomial<BigInteger> p = poly.copy().primitivePart();
+    if (p.signumOfLC() < 0) {
+      p.negate();
+    }
+    return p;
+  }
+
+  /** Returns {@code false} if {@code b} can never divide {@code a} by looking at the degrees. */
+  private static boolean mayDivide(
+      final MultivariatePolynomial<BigInteger> a, final MultivariatePolynomial<BigInteger> b) {
+    final int[] da = a.degrees();
+    final int[] db = b.degrees();
+    for (int j = 0; j < da.length; j++) {
+      if (db[j] > da[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the set of variables of the basis.
+   *
+   * @return the set of variables
+   */
+  public VariableSet getVariables() {
+    return variables;
+  }
+
+  /**
+   * Returns the number of elements in the basis.
+   *
+   * @return the number of the basis elements
+   */
+  public int size() {
+    return basis.length;
+  }
+
+  /**
+   * Returns the number of the polynomials from which the basis was constructed.
+   *
+   * @return the number of the input polynomials
+   */
+  public int getNumberOfPolynomials() {
+    return exponents.length;
+  }
+
+  /**
+   * Returns the basis element at the specified position.
+   *
+   * @param index the index of the basis element
+   * @return the basis element
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public Polynomial get(final int index) {
+    return Polynomial.createFromRaw(variables, basis[index]);
+  }
+
+  /**
+   * Returns the basis elements.
+   *
+   * @return the basis elements
+   */
+  public Polynomial[] getBasis() {
+    final Polynomial[] result = new Polynomial[basis.length];
+    for (int j = 0; j < basis.length; j++) {
+      result[j] = get(j);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the exponents of the basis elements in the specified input polynomial.
+   *
+   * @param index the index of the input polynomial
+   * @return the exponents, in the same order as the basis elements
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public int[] getExponents(final int index) {
+    return exponents[index].clone();
+  }
+
+  /**
+   * Returns the integer factor of the specified input polynomial.
+   *
+   * @param index the index of the input polynomial
+   * @return the integer factor, as a constant polynomial
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public Polynomial getUnit(final int index) {
+    return new Polynomial(units[index]);
+  }
+
+  /**
+   * Returns the least common multiple of the input polynomials. The sign of the result is the
+   * product of the signs of those input polynomials that raise the exponent of any basis element
+   * or the integer factor when they are taken in order.
+   *
+   * @return the LCM of the input polynomials
+   */
+  /* default */ Polynomial lcm() {
+    final int[] maxExponents = new int[basis.length];
+    BigInteger content = BigInteger.ONE;
+    int sign = 1;
+    for (int i = 0; i < exponents.length; i++) {
+      boolean raised = false;
+      for (int j = 0; j < basis.length; j++) {
+        if (exponents[i][j] > maxExponents[j]) {
+          maxExponents[j] = exponents[i][j];
+          raised = true;
+        }
+      }
+      final BigInteger c = units[i].abs();
+      final BigInteger g = content.gcd(c);
+      if (!g.equals(c)) {
+        content = content.multiply(c.divide(g));
+        raised = true;
+      }
+      if (raised && units[i].signum() < 0) {
+        sign = -sign;
+      }
+    }
+
+    final MultivariatePolynomial<BigInteger> result =
+        Polynomial.RAW_ZERO
+            .setNVariables(variables.size())
+            .createConstant(sign < 0 ? content.negate() : content);
+    for (int j = 0; j < basis.length; j++) {
+      if (maxExponents[j] > 0) {
+        result.multiply(PolynomialMethods.polyPow(basis[j], maxExponents[j], true));
+      }
+    }
+    return Polynomial.createFromRaw(variables, result);
+  }
+}
@@ -0,0 +1,420 @@
+package com.github.tueda.donuts;
+
+import cc.redberry.rings.IntegersZp64;
+import cc.redberry.rings.bigint.BigInteger;
+import cc.redberry.rings.poly.multivar.Monomial;
+import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A compiled polynomial for evaluations at many numeric points. Immutable and thread-safe.
+ *
+ * <p>The terms are flattened once into primitive arrays: for each term, the positions of its
+ * variables among the given variables and their exponents, and the coefficient. The batch
+ * methods take the points as rows of values in the order of the given variables, process blocks of
+ * the points in parallel, and return primitive arrays. For each point, the powers of the values
+ * are tabulated once up to the degrees of the variables, unless a degree exceeds the number of the
+ * terms.
+ *
+ * <p>For the evaluation in {@code long}, a bound of the intermediate results is estimated once for
+ * each block from the largest absolute values of the variables in the block. The block is evaluated
+ * in plain {@code long} arithmetic if the bound fits, and otherwise in {@link BigInteger} with the
+ * buffers reused within the block.
+ *
+ * @see RationalEvaluator
+ */
+public final class Evaluator {
+  /** The number of the points processed by a task. */
+  private static final int BLOCK_SIZE = 256;
+
+  /** The bound for the {@code long} arithmetic, leaving a margin for the rounding errors. */
+  private static final double LONG_BOUND = 0x1p62;
+
+  /** The variables, in the order of the values of the points. */
+  private final Variable[] variables;
+
+  /** The number of the terms. */
+  private final int nTerms;
+
+  /** The start of each term in {@link #positions} and {@link #exponents}, followed by the end. */
+  private final int[] termOffsets;
+
+  /** The positions of the variables in the terms. */
+  private final int[] positions;
+
+  /** The positive exponents of the variables in the terms. */
+  private final int[] exponents;
+
+  /** The coefficients of the terms. */
+  private final BigInteger[] coefficients;
+
+  /** The coefficients of the terms, or {@code null} if any of them does not fit in a long. */
+  private final long[] longCoefficients;
+
+  /** The degrees of the variables. */
+  private final int[] degrees;
+
+  /** The offset of the power table of each variable, or -1 if not tabulated. */
+  private final int[] tableOffsets;
+
+  /** The total size of the power tables. */
+  private final int tableSize;
+
+  private Evaluator(final Polynomial poly, final Variable[] variables) {
+    if (new VariableSet(variables).size() != variables.length) {
+      throw new IllegalArgumentException("duplicate variables given");
+    }
+    this.variables = variables;
+
+    // Map the variables of the polynomial to the given ones.
+    final VariableSet polyVariables = poly.getVariables();
+    final MultivariatePolynomial<BigInteger> raw = poly.getRawPolynomialWithoutCopy();
+    final int[] polyDegrees = raw.degrees();
+    final int[] mapping = new int[polyVariables.size()];
+    final int[] degrees = new int[variables.length];
+    for (int j = 0; j < mapping.length; j++) {
+      mapping[j] = -1;
+      if (polyDegrees[j] > 0) {
+        final String name = polyVariables.getRawName(j);
+        for (int i = 0; i < variables.length; i++) {
+          if (variables[i].getName().equals(name)) {
+            mapping[j] = i;
+            degrees[i] = polyDegrees[j];
+          }
+        }
+        if (mapping[j] < 0) {
+          throw new IllegalArgumentException(String.format("No value given for %s", name));
+        }
+      }
+    }
+
+    // Flatten the terms.
+    nTerms = raw.size();
+    termOffsets = new int[nTerms + 1];
+    coefficients = new BigInteger[nTerms];
+    int nEntries = 0;
+    int t = 0;
+    for (final Monomial<BigInteger> term : raw) {
+      for (final int e : term.exponents) {
+        if (e > 0) {
+          nEntries++;
+        }
+      }
+      coefficients[t++] = term.coefficient;
+    }
+    positions = new int[nEntries];
+    exponents = new int[nEntries];
+    int k = 0;
+    t = 0;
+    for (final Monomial<BigInteger> term : raw) {
+      for (int j = 0; j < term.exponents.length; j++) {
+        if (term.exponents[j] > 0) {
+          positions[k] = mapping[j];
+          exponents[k] = term.exponents[j];
+          k++;
+        }
+      }
+      termOffsets[++t] = k;
+    }
+
+    final long[] longs = new long[nTerms];
+    boolean allLong = true;
+    for (t = 0; t < nTerms && allLong; t++) {
+      allLong = coefficients[t].bitLength() < Long.SIZE;
+      longs[t] = coefficients[t].longValue();
+    }
+    longCoefficients = allLong ? longs : null;
+
+    tableOffsets = new int[variables.length];
+    int size = 0;
+    for (int i = 0; i < variables.length; i++) {
+      if (degrees[i] > 0 && degrees[i] <= nTerms) {
+        tableOffsets[i] = size;
+        size += degrees[i] + 1;
+      } else {
+        tableOffsets[i] = -1;
+      }
+    }
+    tableSize = size;
+    this.degrees = degrees;
+  }
+
+  /**
+   * Returns the evaluator of the given polynomial for points giving the values of the given
+   * variables. All the variables used in the polynomial must be given.
+   *
+   * @param poly the polynomial
+   * @param variables the variables, in the order of the values of the points
+   * @return the evaluator
+   * @throws IllegalArgumentException when {@code variables} has duplicates or lacks a variable used
+   *     in {@code poly}
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static Evaluator of(final Polynomial poly, final Variable... variables) {
+    return new Evaluator(poly, variables.clone());
+  }
+
+  /**
+   * Returns the variables, in the order of the values of the points.
+   *
+   * @return the variables
+   */
+  public Variable[] getVariables() {
+    return variables.clone();
+  }
+
+  /**
+   * Returns the values of the polynomial at the given points.
+   *
+   * @param points the points, each of which gives the values of the variables
+   * @return the values
+   * @throws IllegalArgumentException when any of the points has a wrong number of values
+   * @throws ArithmeticException when any of the values does not fit in a long
+   */
+  public long[] evaluate(final long[][] points) {
+    checkPoints(points);
+    final long[] results = new long[points.length];
+    forEachBlock(
+        points.length,
+        (from, to) -> {
+          if (isLongSafe(points, from, to)) {
+            final long[] table = new long[tableSize];
+            for (int p = from; p < to; p++) {
+              results[p] = evaluateLong(points[p], table);
+            }
+          } else {
+            final BigInteger[] point = new BigInteger[variables.length];
+            final BigInteger[] table = new BigInteger[tableSize];
+            for (int p = from; p < to; p++) {
+              for (int i = 0; i < point.length; i++) {
+                point[i] = BigInteger.valueOf(points[p][i]);
+              }
+              final BigInteger result = evaluateBig(point, table);
+              if (result.bitLength() >= Long.SIZE) {
+                throw new ArithmeticException("long overflow");
+              }
+              results[p] = result.longValue();
+            }
+          }
+        });
+    return results;
+  }
+
+  /**
+   * Returns the values of the polynomial at the given points.
+   *
+   * @param points the points, each of which gives the values of the variables
+   * @return the values
+   * @throws IllegalArgumentException when any of the points has a wrong number of values
+   */
+  public BigInteger[] evaluate(final BigInteger[][] points) {
+    checkPoints(points);
+    final BigInteger[] results = new BigInteger[points.length];
+    forEachBlock(
+        points.length,
+        (from, to) -> {
+          final BigInteger[] table = new BigInteger[tableSize];
+          for (int p = from; p < to; p++) {
+            results[p] = evaluateBig(points[p], table);
+          }
+        });
+    return results;
+  }
+
+  /**
+   * Returns the values of the polynomial modulo the given modulus at the given points.
+   *
+   * @param points the points, each of which gives the values of the variables
+   * @param modulus the modulus, at least 2 and less than 2^62
+   * @return the values in the range from 0 to {@code modulus - 1}
+   * @throws IllegalArgumentException when any of the points has a wrong number of values, or
+   *     {@code modulus} is out of range
+   */
+  public long[] evaluateModP(final long[][] points, final long modulus) {
+    if (modulus < 2 || modulus >= 1L << 62) {
+      throw new IllegalArgumentException(String.format("Invalid modulus given: %s", modulus));
+    }
+    checkPoints(points);
+    final IntegersZp64 ring = new IntegersZp64(modulus);
+    final BigInteger bigModulus = BigInteger.valueOf(modulus);
+    final long[] coefficientsModP = new long[nTerms];
+    for (int t = 0; t < nTerms; t++) {
+      coefficientsModP[t] =
+          longCoefficients != null
+              ? ring.modulus(longCoefficients[t])
+              : coefficients[t].mod(bigModulus).longValue();
+    }
+    final long[] results = new long[points.length];
+    forEachBlock(
+        points.length,
+        (from, to) -> {
+          final long[] values = new long[variables.length];
+          final long[] table = new long[tableSize];
+          for (int p = from; p < to; p++) {
+            for (int i = 0; i < values.length; i++) {
+              values[i] = ring.modulus(points[p][i]);
+            }
+            results[p] = evaluateModP(values, table, ring, coefficientsModP);
+          }
+        });
+    return results;
+  }
+
+  private void checkPoints(final long[][] points) {
+    for (final long[] point : points) {
+      checkPointSize(point.length);
+    }
+  }
+
+  private void checkPoints(final BigInteger[][] points) {
+    for (final BigInteger[] point : points) {
+      checkPointSize(point.length);
+    }
+  }
+
+  private void checkPointSize(final int size) {
+    if (size != variables.length) {
+      throw new IllegalArgumentException("sizes of variables and point unmatch");
+    }
+  }
+
+  /**
+   * Returns {@code true} if the evaluation in {@code long} cannot overflow for the given points,
+   * estimated from the largest absolute values of the variables.
+   */
+  private boolean isLongSafe(final long[][] points, final int from, final int to) {
+    if (longCoefficients == null) {
+      return false;
+    }
+    final double[] maxValues = new double[variables.length];
+    Arrays.fill(maxValues, 1);
+    for (int p = from; p < to; p++) {
+      for (int i = 0; i < maxValues.length; i++) {
+        maxValues[i] = Math.max(maxValues[i], Math.abs((double) points[p][i]));
+      }
+    }
+    for (int i = 0; i < maxValues.length; i++) {
+      if (Math.pow(maxValues[i], degrees[i]) >= LONG_BOUND) {
+        return false;
+      }
+    }
+    double sum = 0;
+    for (int t = 0; t < nTerms; t++) {
+      double term = Math.abs((double) longCoefficients[t]);
+      for (int k = termOffsets[t]; k < termOffsets[t + 1]; k++) {
+        term *= Math.pow(maxValues[positions[k]], exponents[k]);
+      }
+      sum += term;
+    }
+    return sum < LONG_BOUND;
+  }
+
+  /** Evaluates the polynomial at the given point, which must be checked by {@link #isLongSafe}. */
+  private long evaluateLong(final long[] point, final long[] table) {
+    for (int i = 0; i < variables.length; i++) {
+      final int offset = tableOffsets[i];
+      if (offset >= 0) {
+        table[offset] = 1;
+        for (int e = 1; e <= degrees[i]; e++) {
+          table[offset + e] = table[offset + e - 1] * point[i];
+        }
+      }
+    }
+    long sum = 0;
+    for (int t = 0; t < nTerms; t++) {
+      long term = longCoefficients[t];
+      for (int k = termOffsets[t]; k < termOffsets[t + 1]; k++) {
+        final int i = positions[k];
+        final int offset = tableOffsets[i];
+        term *= offset >= 0 ? table[offset + exponents[k]] : pow(point[i], exponents[k]);
+      }
+      sum += term;
+    }
+    return sum;
+  }
+
+  private static long pow(final long base, final int exponent) {
+    long result = 1;
+    long b = base;
+    int e = exponent;
+    while (true) {
+      if ((e & 1) != 0) {
+        result *= b;
+      }
+      e >>>= 1;
+      if (e == 0) {
+        return result;
+      }
+      b *= b;
+    }
+  }
+
+  private BigInteger evaluateBig(final BigInteger[] point, final BigInteger[] table) {
+    for (int i = 0; i < variables.length; i++) {
+      final int offset = tableOffsets[i];
+      if (offset >= 0) {
+        table[offset] = BigInteger.ONE;
+        for (int e = 1; e <= degrees[i]; e++) {
+          table[offset + e] = table[offset + e - 1].multiply(point[i]);
+        }
+      }
+    }
+    BigInteger sum = BigInteger.ZERO;
+    for (int t = 0; t < nTerms; t++) {
+      BigInteger term = coefficients[t];
+      for (int k = termOffsets[t]; k < termOffsets[t + 1]; k++) {
+        final int i = positions[k];
+        final int offset = tableOffsets[i];
+        term =
+            term.multiply(offset >= 0 ? table[offset + exponents[k]] : point[i].pow(exponents[k]));
+      }
+      sum = sum.add(term);
+    }
+    return sum;
+  }
+
+  private long evaluateModP(
+      final long[] values,
+      final long[] table,
+      final IntegersZp64 ring,
+      final long[] coefficientsModP) {
+    for (int i = 0; i < variables.length; i++) {
+      final int offset = tableOffsets[i];
+      if (offset >= 0) {
+        table[offset] = 1;
+        for (int e = 1; e <= degrees[i]; e++) {
+          table[offset + e] = ring.multiply(table[offset + e - 1], values[i]);
+        }
+      }
+    }
+    long sum = 0;
+    for (int t = 0; t < nTerms; t++) {
+      long term = coefficientsModP[t];
+      for (int k = termOffsets[t]; k < termOffsets[t + 1] && term != 0; k++) {
+        final int i = positions[k];
+        final int offset = tableOffsets[i];
+        term =
+            ring.multiply(
+                term,
+                offset >= 0 ? table[offset + exponents[k]] : ring.powMod(values[i], exponents[k]));
+      }
+      sum = ring.add(sum, term);
+    }
+    return sum;
+  }
+
+  /** A task on a block of the points. */
+  @FunctionalInterface
+  private interface BlockTask {
+    void run(int from, int to);
+  }
+
+  /** Runs the given task on the blocks of the points, in parallel if there are many blocks. */
+  private static void forEachBlock(final int nPoints, final BlockTask task) {
+    final int nBlocks = (nPoints + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    final IntStream stream = IntStream.range(0, nBlocks);
+    (nBlocks >= 2 ? stream.parallel() : stream)
+        .forEach(b -> task.run(b * BLOCK_SIZE, Math.min(nPoints, (b + 1) * BLOCK_SIZE)));
+  }
+}
@@ -0,0 +1,321 @@
+package com.github.tueda.donuts;
+
+import com.github.tueda.donuts.util.WeightedCache;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact collection of rational functions whose denominators share their factors.
+ *
+ * <p>Each entry is stored as its numerator and a sparse exponent vector over a dictionary of
+ * deduplicated denominator factors. The factors are primitive with positive leading coefficients,
+ * and the integer content of a denominator is kept as a constant factor. Entries with the same
+ * denominator share the same vector, so the memory for the denominators is proportional to the
+ * number of the distinct factors rather than the number of the entries. No expanded denominator is
+ * retained beyond the bounded caches: one for the expanded denominators on retrieval, and one for
+ * the recently added denominators to skip repeated factorizations.
+ *
+ * <p>This class is not thread-safe for insertions; retrievals may be performed concurrently once
+ * all the entries have been added.
+ */
+public final class FactorDictionary {
+  /** The default maximum weight of each of the caches of the denominators. */
+  public static final long DEFAULT_MAX_CACHE_WEIGHT = 1L << 16;
+
+  /** The denominator factors. */
+  private final List<Polynomial> factors = new ArrayList<>();
+
+  /** The index of each denominator factor. */
+  private final Map<Polynomial, Integer> factorIndices = new HashMap<>();
+
+  /** The distinct encoded denominators, to share the vectors among the entries. */
+  private final Map<Denominator, Denominator> vectors = new HashMap<>();
+
+  /** The recently encoded denominators, to skip the factorizations of repeated denominators. */
+  private final WeightedCache<Polynomial, Denominator> recentDenominators;
+
+  /** The numerators of the entries. */
+  private final List<Polynomial> numerators = new ArrayList<>();
+
+  /** The encoded denominators of the entries. */
+  private final List<Denominator> entryDenominators = new ArrayList<>();
+
+  /** The cache of the expanded denominators. */
+  private final WeightedCache<Denominator, Polynomial> cache;
+
+  /** A denominator as a sparse exponent vector over the dictionary. Immutable. */
+  private static final class Denominator {
+    /** The indices of the factors, in ascending order. */
+    private final int[] indices;
+
+    /** The exponents of the factors. */
+    private final int[] exponents;
+
+    /** The hash code. */
+    private final int hash;
+
+    /* default */ Denominator(final int[] indices, final int[] exponents) {
+      this.indices = indices;
+      this.exponents = exponents;
+      this.hash = 31 * Arrays.hashCode(indices) + Arrays.hashCode(exponents);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Denominator)) {
+        return false;
+      }
+      final Denominator aDen = (Denominator) other;
+      return hash == aDen.hash
+          && Arrays.equals(indices, aDen.indices)
+          && Arrays.equals(exponents, aDen.exponents);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /** Constructs an empty dictionary with the default cache size. */
+  public FactorDictionary() {
+    this(DEFAULT_MAX_CACHE_WEIGHT);
+  }
+
+  /**
+   * Constructs an empty dictionary with the given cache size.
+   *
+   * @param maxCacheWeight the maximum total number of terms of the cached denominators, for each
+   *     of the expanded denominators on retrieval and the recently added denominators
+   * @throws IllegalArgumentException when {@code maxCacheWeight} is not positive
+   */
+  public FactorDictionary(final long maxCacheWeight) {
+    cache = new WeightedCache<>(maxCacheWeight);
+    recentDenominators = new WeightedCache<>(maxCacheWeight);
+  }
+
+  /**
+   * Adds the given rational function to this collection.
+   *
+   * @param rat the rational function
+   * @return the index of the new entry
+   */
+  public int add(final RationalFunction rat) {
+    Polynomial num = rat.getNumerator();
+    Polynomial den = rat.getDenominator();
+    den = den.translate(den.getMinimalVariables());
+    // Keep the denominator with a positive leading coefficient, so that the product of the
+    // normalized factors has a positive unit.
+    if (den.getRawPolynomialWithoutCopy().signumOfLC() < 0) {
+      num = num.negate();
+      den = den.negate();
+    }
+    numerators.add(num.translate(num.getMinimalVariables()));
+    entryDenominators.add(encode(den));
+    return numerators.size() - 1;
+  }
+
+  private Denominator encode(final Polynomial denominator) {
+    final Denominator cached = recentDenominators.get(denominator);
+    if (cached != null) {
+      return cached;
+    }
+    final long start = System.nanoTime();
+    final Factorization factorization = denominator.factorization();
+    final Map<Integer, Integer> vector = new HashMap<>();
+    Polynomial unit = factorization.getUnit();
+    for (int i = 0; i < factorization.size(); i++) {
+      final Polynomial[] pair = FactoredPolynomial.normalizeFactor(factorization.getFactor(i));
+      unit = unit.multiply(pair[0].pow(factorization.getExponent(i)));
+      vector.merge(indexOf(pair[1]), factorization.getExponent(i), Math::addExact);
+    }
+    assert unit.signum() > 0;
+    if (!unit.isOne()) {
+      vector.merge(indexOf(unit), 1, Math::addExact);
+    }
+    final int[] indices = vector.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    final int[] exponents = Arrays.stream(indices).map(vector::get).toArray();
+    final Denominator result =
+        vectors.computeIfAbsent(new Denominator(indices, exponents), d -> d);
+    recentDenominators.put(denominator, result, denominator.size(), System.nanoTime() - start);
+    return result;
+  }
+
+  private int indexOf(final Polynomial factor) {
+    final Polynomial key = factor.translate(factor.getMinimalVariables());
+    final Integer index = factorIndices.get(key);
+    if (index != null) {
+      return index;
+    }
+    factors.add(key);
+    factorIndices.put(key, factors.size() - 1);
+    return factors.size() - 1;
+  }
+
+  /** Returns the total number of terms of the polynomials held in the caches. */
+  /* default */ long getCachedWeight() {
+    return cache.getWeight() + recentDenominators.getWeight();
+  }
+
+  /**
+   * Returns the number of the entries.
+   *
+   * @return the number of the entries
+   */
+  public int size() {
+    return numerators.size();
+  }
+
+  /**
+   * Returns the number of the distinct denominator factors.
+   *
+   * @return the number of the factors
+   */
+  public int getFactorCount() {
+    return factors.size();
+  }
+
+  /**
+   * Returns the denominator factor at the specified position in the dictionary.
+   *
+   * @param index the index of the factor
+   * @return the factor
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public Polynomial getFactor(final int index) {
+    return factors.get(index);
+  }
+
+  /**
+   * Returns the numerator of the entry at the specified position. The sign is chosen such that
+   * the denominator has a positive leading coefficient.
+   *
+   * @param index the index of the entry
+   * @return the numerator
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public Polynomial getNumerator(final int index) {
+    return numerators.get(index);
+  }
+
+  /**
+   * Returns the denominator of the entry at the specified position.
+   *
+   * @param index the index of the entry
+   * @return the expanded denominator
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public Polynomial getDenominator(final int index) {
+    return expand(entryDenominators.get(index));
+  }
+
+  /**
+   * Returns the entry at the specified position.
+   *
+   * @param index the index of the entry
+   * @return the rational function
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public RationalFunction get(final int index) {
+    return new RationalFunction(getNumerator(index), getDenominator(index));
+  }
+
+  private Polynomial expand(final Denominator den) {
+    if (den.indices.length == 0) {
+      return Polynomial.ONE;
+    }
+    final Polynomial cached = cache.get(den);
+    if (cached != null) {
+      return cached;
+    }
+    final long start = System.nanoTime();
+    final Polynomial result = expand(den.indices, den.exponents);
+    cache.put(den, result, result.size(), System.nanoTime() - start);
+    return result;
+  }
+
+  private Polynomial expand(final int[] indices, final int[] exponents) {
+    final List<Polynomial> powers = new ArrayList<>(indices.length);
+    for (int k = 0; k < indices.length; k++) {
+      if (exponents[k] > 0) {
+        powers.add(factors.get(indices[k]).pow(exponents[k]));
+      }
+    }
+    return Polynomial.productOf(powers);
+  }
+
+  /**
+   * Returns the entries at the specified positions over their common denominator.
+   *
+   * <p>The common denominator is the product of the dictionary factors raised to their maximum
+   * exponents among the entries. Each numerator is multiplied by the factors missing from its
+   * denominator; no polynomial GCD is computed.
+   *
+   * @param indices the indices of the entries
+   * @return the numerators over the common denominator, followed by the common denominator
+   * @throws IndexOutOfBoundsException when any of {@code indices} is out of range
+   */
+  public Polynomial[] toCommonDenominator(final int... indices) {
+    final Map<Integer, Integer> maxExponents = new HashMap<>();
+    for (final int i : indices) {
+      final Denominator den = entryDenominators.get(i);
+      for (int k = 0; k < den.indices.length; k++) {
+        maxExponents.merge(den.indices[k], den.exponents[k], Math::max);
+      }
+    }
+    final int[] commonIndices =
+        maxExponents.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    final int[] commonExponents = Arrays.stream(commonIndices).map(maxExponents::get).toArray();
+
+    final Polynomial[] result = new Polynomial[indices.length + 1];
+    for (int j = 0; j < indices.length; j++) {
+      final Denominator den = entryDenominators.get(indices[j]);
+      final int[] missing = commonExponents.clone();
+      for (int k = 0; k < den.indices.length; k++) {
+        missing[Arrays.binarySearch(commonIndices, den.indices[k])] -= den.exponents[k];
+      }
+      result[j] = numerators.get(indices[j]).multiply(expand(commonIndices, missing));
+    }
+    result[indices.length] = expand(new Denominator(commonIndices, commonExponents));
+    return result;
+  }
+
+  /**
+   * Returns the sum of the entries at the specified positions.
+   *
+   * <p>The numerators are brought to the common denominator and summed, and the GCD is cancelled
+   * only once at the end.
+   *
+   * @param indices the indices of the entries
+   * @return the sum
+   * @throws IndexOutOfBoundsException when any of {@code indices} is out of range
+   */
+  public RationalFunction sumOf(final int... indices) {
+    if (indices.length == 0) {
+      return RationalFunction.ZERO;
+    }
+    if (indices.length == 1) {
+      return get(indices[0]);
+    }
+    final Polynomial[] pp = toCommonDenominator(indices);
+    final Polynomial den = pp[indices.length];
+    return new RationalFunction(Polynomial.sumOf(Arrays.copyOf(pp, indices.length)), den);
+  }
+
+  /**
+   * Returns the sum of all the entries.
+   *
+   * @return the sum
+   */
+  public RationalFunction sum() {
+    final int[] indices = new int[size()];
+    Arrays.setAll(indices, i -> i);
+    return sumOf(indices);
+  }
+}
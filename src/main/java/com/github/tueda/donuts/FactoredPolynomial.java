@@ -0,0 +1,342 @@
+package com.github.tueda.donuts;
+
+import cc.redberry.rings.bigint.BigInteger;
+import cc.redberry.rings.poly.multivar.MultivariateDivision;
+import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A polynomial kept as a product of factors with positive integer exponents. Immutable.
+ *
+ * <p>Multiplication, exact division by known factors and powers are performed as exponent
+ * arithmetic. Each factor is primitive and has its leading term with a positive coefficient; the
+ * integer content and sign go to the overall constant factor (unit). The factors are not
+ * necessarily irreducible, and different factors may have a common divisor. Expansion to {@link
+ * Polynomial} happens only on demand.
+ */
+public final class FactoredPolynomial {
+  /** The overall constant factor. */
+  private final Polynomial unit;
+
+  /** The non-constant factors. */
+  private final Polynomial[] factors;
+
+  /** The exponents of the factors. */
+  private final int[] exponents;
+
+  /**
+   * Constructs a factored polynomial consisting of the given polynomial as a single factor.
+   *
+   * @param poly the polynomial
+   */
+  public FactoredPolynomial(final Polynomial poly) {
+    if (poly.isConstant()) {
+      unit = poly;
+      factors = new Polynomial[0];
+      exponents = new int[0];
+    } else {
+      final Polynomial[] pair = normalizeFactor(poly);
+      unit = pair[0];
+      factors = new Polynomial[] {pair[1]};
+      exponents = new int[] {1};
+    }
+  }
+
+  /**
+   * Constructs a factored polynomial from the given factorization.
+   *
+   * @param factorization the factorization
+   */
+  public FactoredPolynomial(final Factorization factorization) {
+    unit = factorization.getUnit();
+    factors = factorization.getFactors();
+    exponents = factorization.getExponents();
+  }
+
+  /**
+   * Constructs a factored polynomial from the given constant and normalized factors.
+   *
+   * @param unit the overall constant factor
+   * @param map the normalized factors and their positive exponents
+   */
+  /* default */ FactoredPolynomial(final Polynomial unit, final Map<Polynomial, Integer> map) {
+    if (unit.isZero()) {
+      this.unit = unit;
+      this.factors = new Polynomial[0];
+      this.exponents = new int[0];
+    } else {
+      this.unit = unit;
+      this.factors = map.keySet().toArray(new Polynomial[0]);
+      this.exponents = map.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+  }
+
+  /**
+   * Splits the given non-constant polynomial into its integer content with the sign and the
+   * normalized factor.
+   *
+   * @param poly the polynomial
+   * @return {@code {unit, factor}}
+   */
+  /* default */ static Polynomial[] normalizeFactor(final Polynomial poly) {
+    final MultivariatePolynomial<BigInteger> raw = poly.getRawPolynomialWithoutCopy();
+    BigInteger content = raw.content().abs();
+    if (raw.signumOfLC() < 0) {
+      content = content.negate();
+    }
+    if (content.isOne()) {
+      return new Polynomial[] {Polynomial.ONE, poly};
+    }
+    return new Polynomial[] {
+      new Polynomial(content),
+      Polynomial.createFromRaw(poly.getVariables(), raw.copy().divideExact(content))
+    };
+  }
+
+  /**
+   * Returns the quotient of the given polynomials if the division is exact, otherwise {@code null}.
+   *
+   * @param dividend the dividend
+   * @param divisor the divisor
+   * @return {@code dividend / divisor}, or {@code null}
+   */
+  /* default */ static Polynomial divideOrNull(
+      final Polynomial dividend, final Polynomial divisor) {
+    final VariableSet newVariables = dividend.getVariables().union(divisor.getVariables());
+    final MultivariatePolynomial<BigInteger> q =
+        MultivariateDivision.divideOrNull(
+            dividend.translate(newVariables).getRawPolynomialWithoutCopy(),
+            divisor.translate(newVariables).getRawPolynomialWithoutCopy());
+    return q == null ? null : Polynomial.createFromRaw(newVariables, q);
+  }
+
+  private Map<Polynomial, Integer> toMap() {
+    final Map<Polynomial, Integer> map = new LinkedHashMap<>();
+    for (int i = 0; i < factors.length; i++) {
+      map.put(factors[i], exponents[i]);
+    }
+    return map;
+  }
+
+  /**
+   * Returns the overall constant factor.
+   *
+   * @return the overall constant factor
+   */
+  public Polynomial getUnit() {
+    return unit;
+  }
+
+  /**
+   * Returns the number of the non-constant factors.
+   *
+   * @return the number of the factors
+   */
+  public int size() {
+    return factors.length;
+  }
+
+  /**
+   * Returns the non-constant factor at the specified position.
+   *
+   * @param index the index of the factor
+   * @return the factor
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public Polynomial getFactor(final int index) {
+    return factors[index];
+  }
+
+  /**
+   * Returns the exponent of the factor at the specified position.
+   *
+   * @param index the index of the factor
+   * @return the exponent
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public int getExponent(final int index) {
+    return exponents[index];
+  }
+
+  /**
+   * Returns {@code true} if this polynomial is zero.
+   *
+   * @return {@code true} if this polynomial is zero
+   */
+  public boolean isZero() {
+    return unit.isZero();
+  }
+
+  /**
+   * Returns this polynomial in the expanded form.
+   *
+   * @return the expanded polynomial
+   */
+  public Polynomial toPolynomial() {
+    final List<Polynomial> powers = new ArrayList<>(factors.length + 1);
+    powers.add(unit);
+    for (int i = 0; i < factors.length; i++) {
+      powers.add(factors[i].pow(exponents[i]));
+    }
+    return Polynomial.productOf(powers);
+  }
+
+  /**
+   * Returns the negation of this polynomial.
+   *
+   * @return {@code -this}
+   */
+  public FactoredPolynomial negate() {
+    return new FactoredPolynomial(unit.negate(), toMap());
+  }
+
+  /**
+   * Returns the sum of this polynomial and the other. The factors common to both are kept in the
+   * factored form and the rest is expanded.
+   *
+   * @param other the polynomial to be added
+   * @return {@code this + other}
+   */
+  public FactoredPolynomial add(final FactoredPolynomial other) {
+    if (isZero()) {
+      return other;
+    }
+    if (other.isZero()) {
+      return this;
+    }
+
+    final Map<Polynomial, Integer> otherMap = other.toMap();
+    final Map<Polynomial, Integer> common = new LinkedHashMap<>();
+    for (int i = 0; i < factors.length; i++) {
+      final Integer e = otherMap.get(factors[i]);
+      if (e != null) {
+        common.put(factors[i], Math.min(exponents[i], e));
+      }
+    }
+
+    final Polynomial sum = cofactor(common).add(other.cofactor(common));
+    return new FactoredPolynomial(sum).multiply(new FactoredPolynomial(Polynomial.ONE, common));
+  }
+
+  /** Returns the expanded quotient of this polynomial divided by the given known factors. */
+  private Polynomial cofactor(final Map<Polynomial, Integer> divisor) {
+    final List<Polynomial> powers = new ArrayList<>(factors.length + 1);
+    powers.add(unit);
+    for (int i = 0; i < factors.length; i++) {
+      final int n = exponents[i] - divisor.getOrDefault(factors[i], 0);
+      if (n > 0) {
+        powers.add(factors[i].pow(n));
+      }
+    }
+    return Polynomial.productOf(powers);
+  }
+
+  /**
+   * Returns the difference of this polynomial from the other.
+   *
+   * @param other the polynomial to be subtracted
+   * @return {@code this - other}
+   */
+  public FactoredPolynomial subtract(final FactoredPolynomial other) {
+    return add(other.negate());
+  }
+
+  /**
+   * Returns the product of this polynomial and the other.
+   *
+   * @param other the polynomial to be multiplied
+   * @return {@code this * other}
+   */
+  public FactoredPolynomial multiply(final FactoredPolynomial other) {
+    final Map<Polynomial, Integer> map = toMap();
+    for (int i = 0; i < other.factors.length; i++) {
+      map.merge(other.factors[i], other.exponents[i], Math::addExact);
+    }
+    return new FactoredPolynomial(unit.multiply(other.unit), map);
+  }
+
+  /**
+   * Returns this polynomial raised to the given power.
+   *
+   * @param exponent the exponent
+   * @return {@code this ^ exponent}
+   * @throws IllegalArgumentException when {@code exponent} is negative
+   */
+  public FactoredPolynomial pow(final int exponent) {
+    if (exponent < 0) {
+      throw new IllegalArgumentException(String.format("Negative exponent given: %s", exponent));
+    }
+    final Map<Polynomial, Integer> map = new LinkedHashMap<>();
+    if (exponent > 0) {
+      for (int i = 0; i < factors.length; i++) {
+        map.put(factors[i], Math.multiplyExact(exponents[i], exponent));
+      }
+    }
+    return new FactoredPolynomial(unit.pow(exponent), map);
+  }
+
+  /**
+   * Returns the quotient of this polynomial divided by the given divisor. When the factors of the
+   * divisor are not found in this polynomial, the division falls back to the expanded forms.
+   *
+   * @param divisor the divisor
+   * @return {@code this / divisor}
+   * @throws ArithmeticException when exact division is impossible
+   */
+  public FactoredPolynomial divideExact(final FactoredPolynomial divisor) {
+    final Map<Polynomial, Integer> map = toMap();
+    boolean found = true;
+    for (int i = 0; i < divisor.factors.length && found; i++) {
+      final int n = map.getOrDefault(divisor.factors[i], 0) - divisor.exponents[i];
+      if (n > 0) {
+        map.put(divisor.factors[i], n);
+      } else if (n == 0) {
+        map.remove(divisor.factors[i]);
+      } else {
+        found = false;
+      }
+    }
+    if (!found) {
+      return new FactoredPolynomial(toPolynomial().divideExact(divisor.toPolynomial()));
+    }
+    // The product of the primitive factors is primitive, so the units must divide.
+    return new FactoredPolynomial(unit.divideExact(divisor.unit), map);
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof FactoredPolynomial)) {
+      return false;
+    }
+    return toPolynomial().equals(((FactoredPolynomial) other).toPolynomial());
+  }
+
+  @Override
+  public int hashCode() {
+    return toPolynomial().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    if (factors.length == 0 || !unit.isOne()) {
+      sb.append(unit);
+    }
+    for (int i = 0; i < factors.length; i++) {
+      if (sb.length() > 0) {
+        sb.append('*');
+      }
+      sb.append('(').append(factors[i]).append(')');
+      if (exponents[i] != 1) {
+        sb.append('^').append(exponents[i]);
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,475 @@
+package com.github.tueda.donuts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A rational function kept as a product of factors with nonzero integer exponents. Immutable.
+ *
+ * <p>Factors with negative exponents form the denominator. Multiplication, division and powers are
+ * performed as exponent arithmetic without any GCD computation. Addition takes the LCM of the
+ * denominators over a coprime basis of the factors of both operands, so that only the factors not
+ * shared by the operands are expanded. The leading factors known to be pairwise coprime, such as
+ * the basis elements kept from a previous addition, are not refined again, so that repeated sums
+ * only refine the new factors. Each factor is primitive and has its leading term with a
+ * positive coefficient; the integer content and sign go to the overall constant factor (unit).
+ */
+public final class FactoredRationalFunction {
+  /** The overall constant factor. */
+  private final RationalFunction unit;
+
+  /** The non-constant factors. */
+  private final Polynomial[] factors;
+
+  /** The nonzero exponents of the factors. */
+  private final int[] exponents;
+
+  /** The number of the leading factors known to be pairwise coprime. */
+  private final int coprimePrefix;
+
+  /**
+   * Constructs a factored rational function from the given polynomial.
+   *
+   * @param poly the polynomial
+   */
+  public FactoredRationalFunction(final Polynomial poly) {
+    this(new FactoredPolynomial(poly));
+  }
+
+  /**
+   * Constructs a factored rational function from the given rational function.
+   *
+   * @param rat the rational function
+   */
+  public FactoredRationalFunction(final RationalFunction rat) {
+    this(
+        new FactoredPolynomial(rat.getNumerator()), new FactoredPolynomial(rat.getDenominator()));
+  }
+
+  /**
+   * Constructs a factored rational function from the given factored polynomial.
+   *
+   * @param poly the factored polynomial
+   */
+  public FactoredRationalFunction(final FactoredPolynomial poly) {
+    this(poly, new FactoredPolynomial(Polynomial.ONE));
+  }
+
+  /**
+   * Constructs a factored rational function from the given numerator and denominator. No
+   * cancellation is performed.
+   *
+   * @param numerator the numerator
+   * @param denominator the denominator
+   * @throws ArithmeticException when division by zero
+   */
+  public FactoredRationalFunction(
+      final FactoredPolynomial numerator, final FactoredPolynomial denominator) {
+    if (denominator.isZero()) {
+      throw new ArithmeticException("division by zero");
+    }
+    final Map<Polynomial, Integer> map = new LinkedHashMap<>();
+    for (int i = 0; i < numerator.size(); i++) {
+      map.merge(numerator.getFactor(i), numerator.getExponent(i), Math::addExact);
+    }
+    for (int i = 0; i < denominator.size(); i++) {
+      map.merge(denominator.getFactor(i), -denominator.getExponent(i), Math::addExact);
+    }
+    final FactoredRationalFunction result =
+        create(
+            new RationalFunction(numerator.getUnit(), denominator.getUnit()),
+            removeZeros(map),
+            0);
+    unit = result.unit;
+    factors = result.factors;
+    exponents = result.exponents;
+    coprimePrefix = result.coprimePrefix;
+  }
+
+  private FactoredRationalFunction(
+      final RationalFunction unit,
+      final Polynomial[] factors,
+      final int[] exponents,
+      final int coprimePrefix) {
+    this.unit = unit;
+    this.factors = factors;
+    this.exponents = exponents;
+    this.coprimePrefix = coprimePrefix;
+  }
+
+  private static FactoredRationalFunction create(
+      final RationalFunction unit, final Map<Polynomial, Integer> map, final int coprimePrefix) {
+    if (unit.isZero()) {
+      return new FactoredRationalFunction(unit, new Polynomial[0], new int[0], 0);
+    }
+    // A single factor is trivially coprime.
+    return new FactoredRationalFunction(
+        unit,
+        map.keySet().toArray(new Polynomial[0]),
+        map.values().stream().mapToInt(Integer::intValue).toArray(),
+        Math.max(coprimePrefix, Math.min(map.size(), 1)));
+  }
+
+  private static Map<Polynomial, Integer> removeZeros(final Map<Polynomial, Integer> map) {
+    map.values().removeIf(e -> e == 0);
+    return map;
+  }
+
+  private Map<Polynomial, Integer> toMap() {
+    final Map<Polynomial, Integer> map = new LinkedHashMap<>();
+    for (int i = 0; i < factors.length; i++) {
+      map.put(factors[i], exponents[i]);
+    }
+    return map;
+  }
+
+  /**
+   * Returns the number of the leading keys of the given map, derived from {@link #toMap()}, that
+   * are among the leading coprime factors of this rational function.
+   */
+  private int coprimePrefixOf(final Map<Polynomial, Integer> map) {
+    final Set<Polynomial> coprimeFactors =
+        new HashSet<>(Arrays.asList(factors).subList(0, coprimePrefix));
+    int n = 0;
+    for (final Polynomial f : map.keySet()) {
+      if (!coprimeFactors.contains(f)) {
+        break;
+      }
+      n++;
+    }
+    return n;
+  }
+
+  /**
+   * Returns the overall constant factor.
+   *
+   * @return the overall constant factor
+   */
+  public RationalFunction getUnit() {
+    return unit;
+  }
+
+  /**
+   * Returns the number of the non-constant factors.
+   *
+   * @return the number of the factors
+   */
+  public int size() {
+    return factors.length;
+  }
+
+  /**
+   * Returns the non-constant factor at the specified position.
+   *
+   * @param index the index of the factor
+   * @return the factor
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public Polynomial getFactor(final int index) {
+    return factors[index];
+  }
+
+  /**
+   * Returns the exponent of the factor at the specified position. A negative exponent means that
+   * the factor belongs to the denominator.
+   *
+   * @param index the index of the factor
+   * @return the exponent
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public int getExponent(final int index) {
+    return exponents[index];
+  }
+
+  /**
+   * Returns {@code true} if this rational function is zero.
+   *
+   * @return {@code true} if this rational function is zero
+   */
+  public boolean isZero() {
+    return unit.isZero();
+  }
+
+  /**
+   * Returns the numerator in the factored form. It is not necessarily coprime to the denominator.
+   *
+   * @return the numerator
+   */
+  public FactoredPolynomial getNumerator() {
+    return part(unit.getNumerator(), 1);
+  }
+
+  /**
+   * Returns the denominator in the factored form. It is not necessarily coprime to the numerator.
+   *
+   * @return the denominator
+   */
+  public FactoredPolynomial getDenominator() {
+    return part(unit.getDenominator(), -1);
+  }
+
+  private FactoredPolynomial part(final Polynomial partUnit, final int sign) {
+    final Map<Polynomial, Integer> map = new LinkedHashMap<>();
+    for (int i = 0; i < factors.length; i++) {
+      if (exponents[i] * sign > 0) {
+        map.put(factors[i], exponents[i] * sign);
+      }
+    }
+    return new FactoredPolynomial(partUnit, map);
+  }
+
+  /**
+   * Returns this rational function in the expanded and normalized form.
+   *
+   * @return the rational function
+   */
+  public RationalFunction toRationalFunction() {
+    final List<Polynomial> num = new ArrayList<>(factors.length + 1);
+    final List<Polynomial> den = new ArrayList<>(factors.length + 1);
+    num.add(unit.getNumerator());
+    den.add(unit.getDenominator());
+    for (int i = 0; i < factors.length; i++) {
+      if (exponents[i] > 0) {
+        num.add(factors[i].pow(exponents[i]));
+      } else {
+        den.add(factors[i].pow(-exponents[i]));
+      }
+    }
+    return new RationalFunction(Polynomial.productOf(num), Polynomial.productOf(den));
+  }
+
+  /**
+   * Returns the negation of this rational function.
+   *
+   * @return {@code -this}
+   */
+  public FactoredRationalFunction negate() {
+    return new FactoredRationalFunction(unit.negate(), factors, exponents, coprimePrefix);
+  }
+
+  /**
+   * Returns the sum of this rational function and the other.
+   *
+   * @param other the rational function to be added
+   * @return {@code this + other}
+   */
+  public FactoredRationalFunction add(final FactoredRationalFunction other) {
+    if (isZero()) {
+      return other;
+    }
+    if (other.isZero()) {
+      return this;
+    }
+
+    // Collect the distinct factors of both operands. The leading coprime factors of either
+    // operand come first and are not refined against each other.
+    final FactoredRationalFunction seed = coprimePrefix >= other.coprimePrefix ? this : other;
+    final Map<Polynomial, Integer> indices = new LinkedHashMap<>();
+    for (int i = 0; i < seed.coprimePrefix; i++) {
+      indices.put(seed.factors[i], i);
+    }
+    final int nCoprime = indices.size();
+    for (final Polynomial f : factors) {
+      indices.putIfAbsent(f, indices.size());
+    }
+    for (final Polynomial f : other.factors) {
+      indices.putIfAbsent(f, indices.size());
+    }
+
+    if (indices.isEmpty()) {
+      return create(unit.add(other.unit), new LinkedHashMap<>(), 0);
+    }
+
+    // Rewrite both operands over the coprime basis.
+    final CoprimeBasis basis =
+        CoprimeBasis.of(nCoprime, indices.keySet().toArray(new Polynomial[0]));
+    final int m = basis.size();
+    final int[] e1 = new int[m];
+    final int[] e2 = new int[m];
+    final RationalFunction u1 = rewrite(basis, indices, e1);
+    final RationalFunction u2 = other.rewrite(basis, indices, e2);
+
+    // The common part: the LCM of the denominators and the GCD of the numerators.
+    final int[] common = new int[m];
+    for (int j = 0; j < m; j++) {
+      common[j] = Math.min(e1[j], e2[j]);
+    }
+
+    final RationalFunction sum =
+        new RationalFunction(cofactor(basis, e1, common))
+            .multiply(u1)
+            .add(new RationalFunction(cofactor(basis, e2, common)).multiply(u2));
+    if (sum.isZero()) {
+      return create(sum, new LinkedHashMap<>(), 0);
+    }
+
+    // Cancel the denominator factors dividing the new numerator.
+    Polynomial numerator = sum.getNumerator();
+    for (int j = 0; j < m && !numerator.isConstant(); j++) {
+      while (common[j] < 0) {
+        final Polynomial q = FactoredPolynomial.divideOrNull(numerator, basis.get(j));
+        if (q == null) {
+          break;
+        }
+        numerator = q;
+        common[j]++;
+      }
+    }
+
+    // The basis elements come first and remain pairwise coprime for the next addition.
+    final Map<Polynomial, Integer> map = new LinkedHashMap<>();
+    for (int j = 0; j < m; j++) {
+      if (common[j] != 0) {
+        map.put(basis.get(j), common[j]);
+      }
+    }
+    final int nBasis = map.size();
+    RationalFunction newUnit = new RationalFunction(Polynomial.ONE, sum.getDenominator());
+    if (numerator.isConstant()) {
+      newUnit = newUnit.multiply(new RationalFunction(numerator));
+    } else {
+      final Polynomial[] pair = FactoredPolynomial.normalizeFactor(numerator);
+      newUnit = newUnit.multiply(new RationalFunction(pair[0]));
+      map.merge(pair[1], 1, Math::addExact);
+    }
+    removeZeros(map);
+    return create(newUnit, map, Math.min(nBasis, map.size()));
+  }
+
+  /**
+   * Computes the exponents of this rational function over the given coprime basis.
+   *
+   * @param basis the coprime basis
+   * @param indices the indices of the polynomials from which the basis was constructed
+   * @param result the array to store the exponents
+   * @return the overall constant factor
+   */
+  private RationalFunction rewrite(
+      final CoprimeBasis basis, final Map<Polynomial, Integer> indices, final int[] result) {
+    RationalFunction newUnit = unit;
+    for (int i = 0; i < factors.length; i++) {
+      final int index = indices.get(factors[i]);
+      final int[] e = basis.getExponents(index);
+      for (int j = 0; j < e.length; j++) {
+        result[j] = Math.addExact(result[j], Math.multiplyExact(e[j], exponents[i]));
+      }
+      newUnit = newUnit.multiply(new RationalFunction(basis.getUnit(index)).pow(exponents[i]));
+    }
+    return newUnit;
+  }
+
+  /** Returns the product of the basis elements with the exponents {@code e - common}. */
+  private static Polynomial cofactor(final CoprimeBasis basis, final int[] e, final int[] common) {
+    final List<Polynomial> powers = new ArrayList<>();
+    for (int j = 0; j < e.length; j++) {
+      final int n = e[j] - common[j];
+      if (n > 0) {
+        powers.add(basis.get(j).pow(n));
+      }
+    }
+    return Polynomial.productOf(powers);
+  }
+
+  /**
+   * Returns the difference of this rational function from the other.
+   *
+   * @param other the rational function to be subtracted
+   * @return {@code this - other}
+   */
+  public FactoredRationalFunction subtract(final FactoredRationalFunction other) {
+    return add(other.negate());
+  }
+
+  /**
+   * Returns the product of this rational function and the other.
+   *
+   * @param other the rational function to be multiplied
+   * @return {@code this * other}
+   */
+  public FactoredRationalFunction multiply(final FactoredRationalFunction other) {
+    final Map<Polynomial, Integer> map = toMap();
+    for (int i = 0; i < other.factors.length; i++) {
+      map.merge(other.factors[i], other.exponents[i], Math::addExact);
+    }
+    removeZeros(map);
+    return create(unit.multiply(other.unit), map, coprimePrefixOf(map));
+  }
+
+  /**
+   * Returns the quotient of this rational function divided by the other.
+   *
+   * @param divisor the rational function by which this rational function is to be divided
+   * @return {@code this / divisor}
+   * @throws ArithmeticException when division by zero
+   */
+  public FactoredRationalFunction divide(final FactoredRationalFunction divisor) {
+    if (divisor.isZero()) {
+      throw new ArithmeticException("division by zero");
+    }
+    final Map<Polynomial, Integer> map = toMap();
+    for (int i = 0; i < divisor.factors.length; i++) {
+      map.merge(divisor.factors[i], Math.negateExact(divisor.exponents[i]), Math::addExact);
+    }
+    removeZeros(map);
+    return create(unit.divide(divisor.unit), map, coprimePrefixOf(map));
+  }
+
+  /**
+   * Returns this rational function raised to the given power.
+   *
+   * @param exponent the exponent
+   * @return {@code this ^ exponent}
+   * @throws ArithmeticException when division by zero
+   */
+  public FactoredRationalFunction pow(final int exponent) {
+    if (exponent < 0 && isZero()) {
+      throw new ArithmeticException("division by zero");
+    }
+    final Map<Polynomial, Integer> map = new LinkedHashMap<>();
+    if (exponent != 0) {
+      for (int i = 0; i < factors.length; i++) {
+        map.put(factors[i], Math.multiplyExact(exponents[i], exponent));
+      }
+    }
+    return create(unit.pow(exponent), map, exponent != 0 ? coprimePrefix : 0);
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof FactoredRationalFunction)) {
+      return false;
+    }
+    return toRationalFunction().equals(((FactoredRationalFunction) other).toRationalFunction());
+  }
+
+  @Override
+  public int hashCode() {
+    return toRationalFunction().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    if (factors.length == 0 || !unit.isOne()) {
+      sb.append('(').append(unit).append(')');
+    }
+    for (int i = 0; i < factors.length; i++) {
+      if (sb.length() > 0) {
+        sb.append('*');
+      }
+      sb.append('(').append(factors[i]).append(')');
+      if (exponents[i] != 1) {
+        sb.append('^').append(exponents[i]);
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,309 @@
+package com.github.tueda.donuts;
+
+import cc.redberry.rings.bigint.BigInteger;
+import cc.redberry.rings.poly.PolynomialFactorDecomposition;
+import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A factorization of a polynomial, given by the overall constant factor (unit), the distinct
+ * non-constant factors and their exponents. Immutable.
+ *
+ * <p>Unlike {@link Polynomial#factors()}, a power of a factor is not expanded, so the memory
+ * consumption is proportional to the number of the distinct factors.
+ *
+ * @see Polynomial#factorization()
+ * @see Polynomial#squareFreeFactorization()
+ */
+public final class Factorization {
+  /** The set of variables. */
+  private final VariableSet variables;
+
+  /** The overall constant factor. */
+  private final Polynomial unit;
+
+  /** The distinct non-constant factors. */
+  private final Polynomial[] factors;
+
+  /** The exponents of the factors. */
+  private final int[] exponents;
+
+  private Factorization(
+      final VariableSet variables,
+      final Polynomial unit,
+      final Polynomial[] factors,
+      final int[] exponents) {
+    this.variables = variables;
+    this.unit = unit;
+    this.factors = factors;
+    this.exponents = exponents;
+  }
+
+  /**
+   * Constructs a trivial factorization of the given constant polynomial.
+   *
+   * @param constant the constant polynomial
+   * @return the factorization
+   */
+  /* default */ static Factorization of(final Polynomial constant) {
+    assert constant.isConstant();
+    return new Factorization(constant.getVariables(), constant, new Polynomial[0], new int[0]);
+  }
+
+  /**
+   * Constructs a factorization from the given raw factor decomposition.
+   *
+   * <p>A univariate monomial factor with exponent 1, such as {@code x^3}, is always recorded as the
+   * variable with the degree as the exponent, as {@link Polynomial#factors()} has always done. If
+   * {@code splitMonomials} is {@code true}, every monomial factor is split into its variables.
+   *
+   * @param poly the polynomial that was factorized
+   * @param decomposition the factor decomposition of {@code poly}
+   * @param splitMonomials {@code true} to split every monomial factor into its variables
+   * @return the factorization
+   */
+  /* default */ static Factorization of(
+      final Polynomial poly,
+      final PolynomialFactorDecomposition<MultivariatePolynomial<BigInteger>> decomposition,
+      final boolean splitMonomials) {
+    final VariableSet variables = poly.getVariables();
+
+    final MultivariatePolynomial<BigInteger> raw = poly.getRawPolynomialWithoutCopy();
+
+    decomposition.setLcFrom(raw); // workaround for https://github.com/PoslavskySV/rings/issues/76
+
+    decomposition.canonical(); // sorting, positive signumOfLC
+
+    final Map<Polynomial, Integer> map = new LinkedHashMap<>();
+
+    for (int i = 0; i < decomposition.size(); i++) {
+      final MultivariatePolynomial<BigInteger> factor = decomposition.get(i);
+      final int exponent = decomposition.getExponent(i);
+      if (exponent == 1 && factor.isMonomial() && factor.isEffectiveUnivariate()) {
+        final int variable = factor.univariateVariable();
+        map.merge(
+            Polynomial.createFromRaw(variables, factor.createMonomial(variable, 1)),
+            factor.degree(variable),
+            Math::addExact);
+      } else if (splitMonomials && factor.isMonomial()) {
+        // Split a monomial into the variables, in the same order as the canonical sorting.
+        final int[] monomialExponents = factor.lt().exponents;
+        for (int variable = monomialExponents.length - 1; variable >= 0; variable--) {
+          if (monomialExponents[variable] > 0) {
+            map.merge(
+                Polynomial.createFromRaw(variables, factor.createMonomial(variable, 1)),
+                Math.multiplyExact(monomialExponents[variable], exponent),
+                Math::addExact);
+          }
+        }
+      } else {
+        map.merge(Polynomial.createFromRaw(variables, factor), exponent, Math::addExact);
+      }
+    }
+
+    return of(variables, Polynomial.createFromRaw(variables, decomposition.unit), map);
+  }
+
+  private static Factorization of(
+      final VariableSet variables, final Polynomial unit, final Map<Polynomial, Integer> map) {
+    final Polynomial[] newFactors = map.keySet().toArray(new Polynomial[0]);
+    final int[] newExponents = map.values().stream().mapToInt(Integer::intValue).toArray();
+    return new Factorization(variables, unit, newFactors, newExponents);
+  }
+
+  /**
+   * Returns this factorization in a different variable set.
+   *
+   * @param newVariables the new variables to be used
+   * @return the resultant factorization
+   * @throws IllegalArgumentException when any of used variables are not in {@code newVariables}
+   */
+  /* default */ Factorization translate(final VariableSet newVariables) {
+    if (variables.equals(newVariables)) {
+      return this;
+    }
+    return new Factorization(
+        newVariables,
+        unit.translate(newVariables),
+        Arrays.stream(factors).map(f -> f.translate(newVariables)).toArray(Polynomial[]::new),
+        exponents);
+  }
+
+  /**
+   * Returns the set of variables of this factorization.
+   *
+   * @return the set of variables
+   */
+  public VariableSet getVariables() {
+    return variables;
+  }
+
+  /**
+   * Returns the overall constant factor.
+   *
+   * @return the overall constant factor
+   */
+  public Polynomial getUnit() {
+    return unit;
+  }
+
+  /**
+   * Returns the number of the distinct non-constant factors.
+   *
+   * @return the number of the distinct factors
+   */
+  public int size() {
+    return factors.length;
+  }
+
+  /**
+   * Returns the distinct non-constant factor at the specified position.
+   *
+   * @param index the index of the factor
+   * @return the factor
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public Polynomial getFactor(final int index) {
+    return factors[index];
+  }
+
+  /**
+   * Returns the exponent of the factor at the specified position.
+   *
+   * @param index the index of the factor
+   * @return the exponent
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public int getExponent(final int index) {
+    return exponents[index];
+  }
+
+  /**
+   * Returns the distinct non-constant factors.
+   *
+   * @return the factors
+   */
+  public Polynomial[] getFactors() {
+    return factors.clone();
+  }
+
+  /**
+   * Returns the exponents of the factors.
+   *
+   * @return the exponents, in the same order as {@link #getFactors()}
+   */
+  public int[] getExponents() {
+    return exponents.clone();
+  }
+
+  /**
+   * Returns the factors with the powers expanded, in the same form as {@link Polynomial#factors()}.
+   * The returned list is an unmodifiable view, which does not hold the duplicate factors.
+   *
+   * @return the list of the factors
+   * @throws ArithmeticException when the total number of the factors exceeds the range of {@code
+   *     int}
+   */
+  public List<Polynomial> expand() {
+    return new ExpandedList();
+  }
+
+  /** An unmodifiable list view of the expanded factors. */
+  private final class ExpandedList extends AbstractList<Polynomial> implements RandomAccess {
+    /** The offset for the unit. */
+    private final int offset;
+
+    /** The end positions of the factors. */
+    private final int[] ends;
+
+    /* default */ ExpandedList() {
+      super();
+      offset = factors.length == 0 || !unit.isOne() ? 1 : 0;
+      ends = new int[factors.length];
+      int n = offset;
+      for (int i = 0; i < factors.length; i++) {
+        n = Math.addExact(n, exponents[i]);
+        ends[i] = n;
+      }
+    }
+
+    @Override
+    public Polynomial get(final int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException(
+            String.format("Index %s out of bounds for length %s", index, size()));
+      }
+      if (index < offset) {
+        return unit;
+      }
+      final int i = Arrays.binarySearch(ends, index);
+      return factors[i >= 0 ? i + 1 : -i - 1];
+    }
+
+    @Override
+    public int size() {
+      return ends.length == 0 ? offset : ends[ends.length - 1];
+    }
+  }
+
+  /**
+   * Returns the product of the factors.
+   *
+   * @return the polynomial
+   */
+  public Polynomial toPolynomial() {
+    final List<Polynomial> powers = new ArrayList<>(factors.length + 1);
+    powers.add(unit);
+    for (int i = 0; i < factors.length; i++) {
+      powers.add(factors[i].pow(exponents[i]));
+    }
+    return Polynomial.productOf(powers).translate(variables);
+  }
+
+  /**
+   * Returns the product of this factorization and the other. The exponents of the factors common
+   * to both are added. No further factorization is performed.
+   *
+   * @param other the factorization to be multiplied
+   * @return the factorization of {@code this * other}
+   */
+  public Factorization multiply(final Factorization other) {
+    final VariableSet newVariables = variables.union(other.variables);
+    final Factorization a = translate(newVariables);
+    final Factorization b = other.translate(newVariables);
+
+    final Map<Polynomial, Integer> map = new LinkedHashMap<>();
+    for (int i = 0; i < a.factors.length; i++) {
+      map.put(a.factors[i], a.exponents[i]);
+    }
+    for (int i = 0; i < b.factors.length; i++) {
+      map.merge(b.factors[i], b.exponents[i], Math::addExact);
+    }
+
+    return of(newVariables, a.unit.multiply(b.unit), map);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    if (factors.length == 0 || !unit.isOne()) {
+      sb.append(unit);
+    }
+    for (int i = 0; i < factors.length; i++) {
+      if (sb.length() > 0) {
+        sb.append('*');
+      }
+      sb.append('(').append(factors[i]).append(')');
+      if (exponents[i] != 1) {
+        sb.append('^').append(exponents[i]);
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,242 @@
+package com.github.tueda.donuts;
+
+import cc.redberry.rings.bigint.BigInteger;
+import cc.redberry.rings.poly.PolynomialFactorDecomposition;
+import cc.redberry.rings.poly.multivar.Monomial;
+import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import cc.redberry.rings.poly.multivar.MultivariateSquareFreeFactorization;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.experimental.UtilityClass;
+
+/** This class consists of static utility methods for factorization. */
+@SuppressWarnings("doclint:missing") // workaround for JDK-8271159
+@UtilityClass
+public class FactorizationUtils {
+  /** The prime modulus for the separability test. */
+  private static final long PRIME = 2_147_483_647L;
+
+  /** The prime modulus for the separability test, as a big integer. */
+  private static final BigInteger BIG_PRIME = BigInteger.valueOf(PRIME);
+
+  /** The upper bound of the integers used for the exact evaluation. */
+  private static final int EVALUATION_BOUND = 1 << 16;
+
+  /**
+   * Returns the factorization of the given polynomial.
+   *
+   * <p>Before the full factorization, the integer content and the monomial content are extracted,
+   * the rest is split into factors with disjoint variable sets where possible, and each factor is
+   * decomposed into square-free factors. The remaining independent parts are factorized
+   * concurrently. The result is not normalized.
+   *
+   * @param poly the polynomial to be factorized, must be non-constant
+   * @return the factor decomposition
+   */
+  public static PolynomialFactorDecomposition<MultivariatePolynomial<BigInteger>> factorize(
+      final MultivariatePolynomial<BigInteger> poly) {
+    final BigInteger content = poly.content();
+    final MultivariatePolynomial<BigInteger> primitive = poly.copy().divideExact(content);
+
+    final PolynomialFactorDecomposition<MultivariatePolynomial<BigInteger>> result =
+        PolynomialFactorDecomposition.unit(poly.createConstant(content));
+
+    final Monomial<BigInteger> monomialContent = primitive.monomialContent();
+    if (monomialContent.totalDegree > 0) {
+      // Each variable is a factor by itself, as in Rings.
+      for (int i = 0; i < monomialContent.exponents.length; i++) {
+        if (monomialContent.exponents[i] > 0) {
+          result.addFactor(poly.createMonomial(i, 1), monomialContent.exponents[i]);
+        }
+      }
+      primitive.divideDegreeVectorOrNull(monomialContent);
+    }
+
+    if (primitive.isConstant()) {
+      return result;
+    }
+
+    // Square-free pieces of the variable-separable blocks.
+    final List<MultivariatePolynomial<BigInteger>> pieces = new ArrayList<>();
+    final List<Integer> exponents = new ArrayList<>();
+    for (final MultivariatePolynomial<BigInteger> block : separate(primitive)) {
+      final PolynomialFactorDecomposition<MultivariatePolynomial<BigInteger>> sqf =
+          MultivariateSquareFreeFactorization.SquareFreeFactorization(block);
+      for (int i = 0; i < sqf.size(); i++) {
+        if (!sqf.get(i).isConstant()) {
+          pieces.add(sqf.get(i));
+          exponents.add(sqf.getExponent(i));
+        }
+      }
+    }
+
+    // The pieces are independent of each other.
+    final List<PolynomialFactorDecomposition<MultivariatePolynomial<BigInteger>>> decompositions =
+        (pieces.size() >= 2 ? pieces.parallelStream() : pieces.stream())
+            .map(VariableOrdering::factorInZ)
+            .collect(Collectors.toList());
+
+    for (int k = 0; k < decompositions.size(); k++) {
+      final PolynomialFactorDecomposition<MultivariatePolynomial<BigInteger>> d =
+          decompositions.get(k);
+      for (int i = 0; i < d.size(); i++) {
+        result.addFactor(d.get(i), Math.multiplyExact(d.getExponent(i), exponents.get(k)));
+      }
+    }
+
+    // The overall sign is to be fixed by setLcFrom() by the caller.
+    return result;
+  }
+
+  /**
+   * Splits the given polynomial into factors whose sets of the used variables are disjoint.
+   *
+   * <p>A candidate partition of the variables is obtained by a probabilistic test: when {@code P =
+   * A(X) B(Y)}, {@code P * dP/dxdy = dP/dx * dP/dy} holds for any {@code x} in {@code X} and
+   * {@code y} in {@code Y}, which is checked at a random point modulo a prime. The resultant
+   * factorization is always verified exactly; the polynomial is returned as it is if the
+   * verification fails.
+   *
+   * @param poly the polynomial, must be primitive and have no monomial content
+   * @return the factors up to a sign
+   */
+  /* default */ static List<MultivariatePolynomial<BigInteger>> separate(
+      final MultivariatePolynomial<BigInteger> poly) {
+    final int[] degrees = poly.degrees();
+    final int[] used = IntStream.range(0, degrees.length).filter(i -> degrees[i] > 0).toArray();
+    final int k = used.length;
+    if (k < 2) {
+      return Collections.singletonList(poly);
+    }
+
+    final Random random = ThreadLocalRandom.current();
+
+    // Evaluate P, dP/dx and dP/dxdy at a random point modulo the prime.
+
+    final long[] point = new long[k];
+    final long[] inverses = new long[k];
+    for (int a = 0; a < k; a++) {
+      point[a] = 1 + Math.floorMod(random.nextLong(), PRIME - 1);
+      inverses[a] = powMod(point[a], PRIME - 2);
+    }
+
+    long p0 = 0;
+    final long[] p1 = new long[k];
+    final long[][] p2 = new long[k][k];
+    final int[] vars = new int[k];
+    for (final Monomial<BigInteger> term : poly) {
+      long m = term.coefficient.mod(BIG_PRIME).longValue();
+      int n = 0;
+      for (int a = 0; a < k; a++) {
+        final int e = term.exponents[used[a]];
+        if (e > 0) {
+          m = m * powMod(point[a], e) % PRIME;
+          vars[n++] = a;
+        }
+      }
+      p0 = (p0 + m) % PRIME;
+      for (int i = 0; i < n; i++) {
+        final int a = vars[i];
+        final long ma = m * term.exponents[used[a]] % PRIME * inverses[a] % PRIME;
+        p1[a] = (p1[a] + ma) % PRIME;
+        for (int j = i + 1; j < n; j++) {
+          final int b = vars[j];
+          final long mab = ma * term.exponents[used[b]] % PRIME * inverses[b] % PRIME;
+          p2[a][b] = (p2[a][b] + mab) % PRIME;
+        }
+      }
+    }
+
+    // Link the variables that cannot be separated.
+
+    final int[] parent = IntStream.range(0, k).toArray();
+    for (int a = 0; a < k; a++) {
+      for (int b = a + 1; b < k; b++) {
+        if (p0 * p2[a][b] % PRIME != p1[a] * p1[b] % PRIME) {
+          parent[find(parent, a)] = find(parent, b);
+        }
+      }
+    }
+
+    int nComponents = 0;
+    final int[] componentIndex = new int[k];
+    final int[] rootToComponent = new int[k];
+    Arrays.fill(rootToComponent, -1);
+    for (int a = 0; a < k; a++) {
+      final int root = find(parent, a);
+      if (rootToComponent[root] < 0) {
+        rootToComponent[root] = nComponents++;
+      }
+      componentIndex[a] = rootToComponent[root];
+    }
+    if (nComponents < 2) {
+      return Collections.singletonList(poly);
+    }
+
+    // Construct the candidate factors by evaluating the other variables at integers, and verify
+    // prod_k A_k = P * c^(#components - 1), where c = P(values).
+
+    final BigInteger[] values = new BigInteger[k];
+    for (int a = 0; a < k; a++) {
+      values[a] = BigInteger.valueOf(1 + random.nextInt(EVALUATION_BOUND));
+    }
+
+    final BigInteger c = poly.evaluate(used, values).cc();
+    if (c.isZero()) {
+      return Collections.singletonList(poly);
+    }
+
+    final List<MultivariatePolynomial<BigInteger>> blocks = new ArrayList<>(nComponents);
+    final MultivariatePolynomial<BigInteger> product = poly.createOne();
+    for (int i = 0; i < nComponents; i++) {
+      final int component = i;
+      final int[] others =
+          IntStream.range(0, k).filter(a -> componentIndex[a] != component).toArray();
+      final BigInteger[] otherValues =
+          Arrays.stream(others).mapToObj(a -> values[a]).toArray(BigInteger[]::new);
+      for (int j = 0; j < others.length; j++) {
+        others[j] = used[others[j]];
+      }
+      final MultivariatePolynomial<BigInteger> block = poly.evaluate(others, otherValues);
+      product.multiply(block);
+      blocks.add(block.primitivePart());
+    }
+
+    final MultivariatePolynomial<BigInteger> expected =
+        poly.copy().multiply(c.pow(nComponents - 1));
+    if (!product.equals(expected)) {
+      return Collections.singletonList(poly);
+    }
+
+    return blocks;
+  }
+
+  private static int find(final int[] parent, final int a) {
+    int x = a;
+    while (parent[x] != x) {
+      parent[x] = parent[parent[x]];
+      x = parent[x];
+    }
+    return x;
+  }
+
+  private static long powMod(final long base, final long exponent) {
+    long result = 1;
+    long b = base % PRIME;
+    long e = exponent;
+    while (e > 0) {
+      if ((e & 1) != 0) {
+        result = result * b % PRIME;
+      }
+      b = b * b % PRIME;
+      e >>= 1;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,336 @@
+package com.github.tueda.donuts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A rational function without automatic normalization. Immutable.
+ *
+ * <p>The numerator and denominator are kept without cancelling their GCD. The denominator is held
+ * as a product of known factors with exponents, and denominators are combined by taking the
+ * maximum exponents of identical factors, which requires no GCD computation. The normalization
+ * with a single GCD is performed only when {@link #normalize()}, {@link #equals}, {@link
+ * #hashCode}, {@link #toString}, {@link #getNumerator()} or {@link #getDenominator()} is called,
+ * or when the size exceeds the threshold given by {@link #withNormalizationThreshold(int)}.
+ *
+ * <p>The threshold belongs to each object. The result of an arithmetic operation takes the smaller
+ * threshold of the operands.
+ *
+ * <p>This is useful for long chains of additions, where most of the intermediate cancellations are
+ * wasted.
+ */
+public final class LazyRationalFunction {
+  /** The default threshold of the size for forcing the normalization. */
+  public static final int DEFAULT_NORMALIZATION_THRESHOLD = 1 << 14;
+
+  /** The unnormalized numerator. */
+  private final Polynomial numerator;
+
+  /** The factors of the unnormalized denominator. */
+  private final Polynomial[] factors;
+
+  /** The exponents of the factors of the denominator. */
+  private final int[] exponents;
+
+  /** The threshold of the size for forcing the normalization. */
+  private final int normalizationThreshold;
+
+  /** The normalized form, computed when needed. */
+  private volatile RationalFunction normalized;
+
+  /** Constructs a zero rational function. */
+  public LazyRationalFunction() {
+    this(Polynomial.ZERO);
+  }
+
+  /**
+   * Constructs a rational function from the given polynomial.
+   *
+   * @param poly the polynomial
+   */
+  public LazyRationalFunction(final Polynomial poly) {
+    numerator = poly;
+    factors = new Polynomial[0];
+    exponents = new int[0];
+    normalizationThreshold = DEFAULT_NORMALIZATION_THRESHOLD;
+  }
+
+  /**
+   * Constructs a rational function from the given rational function.
+   *
+   * @param rat the rational function
+   */
+  public LazyRationalFunction(final RationalFunction rat) {
+    numerator = rat.getNumerator();
+    final Polynomial denominator = rat.getDenominator();
+    if (denominator.isOne()) {
+      factors = new Polynomial[0];
+      exponents = new int[0];
+    } else {
+      factors = new Polynomial[] {denominator};
+      exponents = new int[] {1};
+    }
+    normalizationThreshold = DEFAULT_NORMALIZATION_THRESHOLD;
+    normalized = rat;
+  }
+
+  private LazyRationalFunction(
+      final Polynomial numerator,
+      final Polynomial[] factors,
+      final int[] exponents,
+      final int normalizationThreshold,
+      final RationalFunction normalized) {
+    this.numerator = numerator;
+    this.factors = factors;
+    this.exponents = exponents;
+    this.normalizationThreshold = normalizationThreshold;
+    this.normalized = normalized;
+  }
+
+  private static LazyRationalFunction create(
+      final Polynomial numerator, final Map<Polynomial, Integer> denominator, final int threshold) {
+    if (numerator.isZero()) {
+      return new LazyRationalFunction(numerator, new Polynomial[0], new int[0], threshold, null);
+    }
+    final Polynomial[] newFactors = denominator.keySet().toArray(new Polynomial[0]);
+    final int[] newExponents = denominator.values().stream().mapToInt(Integer::intValue).toArray();
+    final LazyRationalFunction result =
+        new LazyRationalFunction(numerator, newFactors, newExponents, threshold, null);
+    if (result.size() > threshold) {
+      return new LazyRationalFunction(result.normalize()).withThreshold(threshold);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the threshold of the size for forcing the normalization.
+   *
+   * @return the threshold, as the total number of terms in the numerator and denominator factors
+   */
+  public int getNormalizationThreshold() {
+    return normalizationThreshold;
+  }
+
+  /**
+   * Returns this rational function with the given threshold of the size for forcing the
+   * normalization. When the total number of terms in the unnormalized numerator and the denominator
+   * factors exceeds the threshold after an arithmetic operation, the result is normalized.
+   *
+   * @param threshold the threshold
+   * @return the rational function with the threshold
+   * @throws IllegalArgumentException when {@code threshold} is not positive
+   */
+  public LazyRationalFunction withNormalizationThreshold(final int threshold) {
+    if (threshold <= 0) {
+      throw new IllegalArgumentException(
+          String.format("Non-positive threshold given: %s", threshold));
+    }
+    return withThreshold(threshold);
+  }
+
+  private LazyRationalFunction withThreshold(final int threshold) {
+    if (threshold == normalizationThreshold) {
+      return this;
+    }
+    return new LazyRationalFunction(numerator, factors, exponents, threshold, normalized);
+  }
+
+  /**
+   * Returns the total number of terms in the unnormalized numerator and the denominator factors.
+   *
+   * @return the size
+   */
+  public long size() {
+    long n = numerator.size();
+    for (final Polynomial f : factors) {
+      n += f.size();
+    }
+    return n;
+  }
+
+  /**
+   * Returns {@code true} if this rational function is zero.
+   *
+   * @return {@code true} if this rational function is zero
+   */
+  public boolean isZero() {
+    return numerator.isZero();
+  }
+
+  /**
+   * Returns the normalized form of this rational function.
+   *
+   * @return the normalized rational function
+   */
+  public RationalFunction normalize() {
+    RationalFunction result = normalized;
+    if (result == null) {
+      result = new RationalFunction(numerator, denominatorProduct());
+      normalized = result;
+    }
+    return result;
+  }
+
+  private Polynomial denominatorProduct() {
+    final List<Polynomial> powers = new ArrayList<>(factors.length);
+    for (int i = 0; i < factors.length; i++) {
+      powers.add(factors[i].pow(exponents[i]));
+    }
+    return Polynomial.productOf(powers);
+  }
+
+  /**
+   * Returns the numerator of the normalized form of this rational function.
+   *
+   * @return the numerator
+   */
+  public Polynomial getNumerator() {
+    return normalize().getNumerator();
+  }
+
+  /**
+   * Returns the denominator of the normalized form of this rational function.
+   *
+   * @return the denominator
+   */
+  public Polynomial getDenominator() {
+    return normalize().getDenominator();
+  }
+
+  private Map<Polynomial, Integer> denominatorMap() {
+    final Map<Polynomial, Integer> map = new LinkedHashMap<>();
+    for (int i = 0; i < factors.length; i++) {
+      map.put(factors[i], exponents[i]);
+    }
+    return map;
+  }
+
+  /**
+   * Returns the negation of this rational function.
+   *
+   * @return {@code -this}
+   */
+  public LazyRationalFunction negate() {
+    return new LazyRationalFunction(
+        numerator.negate(), factors, exponents, normalizationThreshold, null);
+  }
+
+  /**
+   * Returns the sum of this rational function and the other.
+   *
+   * @param other the rational function to be added
+   * @return {@code this + other}
+   */
+  public LazyRationalFunction add(final LazyRationalFunction other) {
+    final int threshold = Math.min(normalizationThreshold, other.normalizationThreshold);
+    if (isZero()) {
+      return other.withThreshold(threshold);
+    }
+    if (other.isZero()) {
+      return withThreshold(threshold);
+    }
+
+    // The LCM of the denominators with respect to the known factors.
+    final Map<Polynomial, Integer> lcm = denominatorMap();
+    for (int i = 0; i < other.factors.length; i++) {
+      lcm.merge(other.factors[i], other.exponents[i], Math::max);
+    }
+
+    return create(multiplyCofactor(lcm).add(other.multiplyCofactor(lcm)), lcm, threshold);
+  }
+
+  /** Returns the numerator multiplied by {@code lcm / denominator}. */
+  private Polynomial multiplyCofactor(final Map<Polynomial, Integer> lcm) {
+    final Map<Polynomial, Integer> own = denominatorMap();
+    final List<Polynomial> powers = new ArrayList<>();
+    powers.add(numerator);
+    for (final Map.Entry<Polynomial, Integer> e : lcm.entrySet()) {
+      final int n = e.getValue() - own.getOrDefault(e.getKey(), 0);
+      if (n > 0) {
+        powers.add(e.getKey().pow(n));
+      }
+    }
+    return Polynomial.productOf(powers);
+  }
+
+  /**
+   * Returns the difference of this rational function from the other.
+   *
+   * @param other the rational function to be subtracted
+   * @return {@code this - other}
+   */
+  public LazyRationalFunction subtract(final LazyRationalFunction other) {
+    return add(other.negate());
+  }
+
+  /**
+   * Returns the product of this rational function and the other.
+   *
+   * @param other the rational function to be multiplied
+   * @return {@code this * other}
+   */
+  public LazyRationalFunction multiply(final LazyRationalFunction other) {
+    final Map<Polynomial, Integer> map = denominatorMap();
+    for (int i = 0; i < other.factors.length; i++) {
+      map.merge(other.factors[i], other.exponents[i], Math::addExact);
+    }
+    return create(
+        numerator.multiply(other.numerator),
+        map,
+        Math.min(normalizationThreshold, other.normalizationThreshold));
+  }
+
+  /**
+   * Returns the quotient of this rational function divided by the other.
+   *
+   * @param divisor the rational function by which this rational function is to be divided
+   * @return {@code this / divisor}
+   * @throws ArithmeticException when division by zero
+   */
+  public LazyRationalFunction divide(final LazyRationalFunction divisor) {
+    if (divisor.isZero()) {
+      throw new ArithmeticException("division by zero");
+    }
+    final Map<Polynomial, Integer> map = denominatorMap();
+    if (!divisor.numerator.isOne()) {
+      map.merge(divisor.numerator, 1, Math::addExact);
+    }
+    return create(
+        numerator.multiply(divisor.denominatorProduct()),
+        map,
+        Math.min(normalizationThreshold, divisor.normalizationThreshold));
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof LazyRationalFunction)) {
+      return false;
+    }
+    return normalize().equals(((LazyRationalFunction) other).normalize());
+  }
+
+  @Override
+  public int hashCode() {
+    return normalize().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return normalize().toString();
+  }
+
+  /**
+   * Returns the factors of the unnormalized denominator.
+   *
+   * @return the denominator factors
+   */
+  /* default */ Polynomial[] getDenominatorFactors() {
+    return Arrays.copyOf(factors, factors.length);
+  }
+}
@@ -0,0 +1,275 @@
+package com.github.tueda.donuts;
+
+import cc.redberry.rings.bigint.BigInteger;
+import cc.redberry.rings.poly.multivar.Monomial;
+import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.experimental.UtilityClass;
+
+/**
+ * This class controls the parallel term-wise kernels for huge polynomials: substitutions ({@link
+ * Polynomial#substitute}), shifts ({@link Polynomial#shift}), term rewriting ({@link
+ * TermRewriter}), {@link Polynomial#flatMapTerms} and {@link Polynomial#evaluateToInteger}, and
+ * their counterparts in {@link RationalFunction}.
+ *
+ * <p>These operations are linear in the terms of the input. For a polynomial with at least {@link
+ * #getThreshold()} terms, the sequence of the terms is split into chunks, which are processed on
+ * the current fork-join pool (the common pool unless called from within another pool). Each worker
+ * merges the results of its chunks into its own accumulator as they complete, and the accumulators
+ * are merged pairwise at the end, so the number of the live partial results is bounded by twice
+ * the parallelism. The terms are split by collecting references to them in one pass, without
+ * copying or re-inserting them; a kernel that needs a polynomial builds its chunk within its own
+ * task. The results are identical to those of the sequential path.
+ *
+ * <p>The cheap kernels, evaluations ({@link Polynomial#evaluate}, {@link
+ * Polynomial#evaluateAtZero}, {@link Polynomial#evaluateAtOne}) and derivatives ({@link
+ * Polynomial#derivative}), are not parallelized, since the splitting and merging would cost as
+ * much as the operations themselves.
+ */
+@SuppressWarnings("doclint:missing") // workaround for JDK-8271159
+@UtilityClass
+public class ParallelTermKernels {
+  /** The default threshold of the number of terms. */
+  public static final int DEFAULT_THRESHOLD = 1 << 15;
+
+  /** The number of chunks per worker, for load balancing. */
+  private static final int CHUNKS_PER_WORKER = 4;
+
+  /** The threshold of the number of terms. */
+  private static volatile int threshold = DEFAULT_THRESHOLD;
+
+  /**
+   * Returns the minimum number of terms for which the parallel kernels are used.
+   *
+   * @return the threshold
+   */
+  public static int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Sets the minimum number of terms for which the parallel kernels are used. Use {@link
+   * Integer#MAX_VALUE} to disable the parallel kernels.
+   *
+   * @param newThreshold the new threshold
+   * @throws IllegalArgumentException when {@code newThreshold} is not positive
+   */
+  public static void setThreshold(final int newThreshold) {
+    if (newThreshold <= 0) {
+      throw new IllegalArgumentException(
+          String.format("Non-positive threshold given: %s", newThreshold));
+    }
+    threshold = newThreshold;
+  }
+
+  /**
+   * Applies the given linear operation on the terms of the given polynomial, in parallel if the
+   * polynomial is large enough.
+   *
+   * @param poly the polynomial
+   * @param operation the operation on a sequence of the terms, which must be linear in the terms
+   * @return the result of the operation
+   */
+  /* default */ static MultivariatePolynomial<BigInteger> applyTerms(
+      final MultivariatePolynomial<BigInteger> poly,
+      final Function<Iterable<Monomial<BigInteger>>, MultivariatePolynomial<BigInteger>>
+          operation) {
+    return reduceTerms(poly, operation, (a, b) -> a.add(b));
+  }
+
+  /**
+   * Applies the given operation on the chunks of the terms of the given polynomial and merges the
+   * partial results, in parallel if the polynomial is large enough. The operation must not modify
+   * the terms. The merge operation may modify and return its first argument.
+   *
+   * <p>Each worker takes the chunks one by one and merges each result into its own accumulator as
+   * soon as it is obtained, so at most two partial results per worker are alive at once. The
+   * accumulators of the workers are merged at the end. As the chunks are not merged in their
+   * order, the merge operation must be commutative.
+   *
+   * @param <T> the type of the results
+   * @param poly the polynomial
+   * @param operation the operation on a sequence of the terms
+   * @param merge the associative and commutative operation to merge two partial results
+   * @return the merged result
+   */
+  /* default */ static <T> T reduceTerms(
+      final MultivariatePolynomial<BigInteger> poly,
+      final Function<Iterable<Monomial<BigInteger>>, T> operation,
+      final BinaryOperator<T> merge) {
+    final int nChunks = getChunkCount(poly);
+    if (nChunks <= 1) {
+      return operation.apply(poly);
+    }
+
+    final int n = poly.size();
+    final List<Monomial<BigInteger>> terms = new ArrayList<>(n);
+    for (final Monomial<BigInteger> term : poly) {
+      terms.add(term);
+    }
+
+    final AtomicInteger nextChunk = new AtomicInteger();
+    List<T> results =
+        IntStream.range(0, Math.min(nChunks, getParallelism()))
+            .parallel()
+            .mapToObj(
+                w -> {
+                  T accumulator = null;
+                  for (int i = nextChunk.getAndIncrement();
+                      i < nChunks;
+                      i = nextChunk.getAndIncrement()) {
+                    final T result =
+                        operation.apply(
+                            terms.subList(
+                                (int) ((long) i * n / nChunks),
+                                (int) ((long) (i + 1) * n / nChunks)));
+                    accumulator = accumulator == null ? result : merge.apply(accumulator, result);
+                  }
+                  return accumulator;
+                })
+            .filter(Objects::nonNull)
+            .collect(Collectors.toCollection(ArrayList::new));
+    while (results.size() > 1) {
+      final List<T> current = results;
+      results =
+          IntStream.range(0, (current.size() + 1) / 2)
+              .parallel()
+              .mapToObj(
+                  i ->
+                      2 * i + 1 < current.size()
+                          ? merge.apply(current.get(2 * i), current.get(2 * i + 1))
+                          : current.get(2 * i))
+              .collect(Collectors.toCollection(ArrayList::new));
+    }
+    return results.get(0);
+  }
+
+  /**
+   * Applies the given linear operation on the given polynomial, in parallel if the polynomial is
+   * large enough. Each chunk of the terms is copied into a polynomial within its own task. The
+   * operation must not modify its argument, though it may return it.
+   *
+   * @param poly the polynomial
+   * @param operation the operation, which must be linear in the terms
+   * @return the result of the operation
+   */
+  /* default */ static MultivariatePolynomial<BigInteger> apply(
+      final MultivariatePolynomial<BigInteger> poly,
+      final UnaryOperator<MultivariatePolynomial<BigInteger>> operation) {
+    if (getChunkCount(poly) <= 1) {
+      return operation.apply(poly);
+    }
+    return applyTerms(
+        poly,
+        terms -> {
+          final MultivariatePolynomial<BigInteger> chunk = poly.createZero();
+          for (final Monomial<BigInteger> term : terms) {
+            chunk.add(term);
+          }
+          return operation.apply(chunk);
+        });
+  }
+
+  /** Returns the number of the chunks for the given polynomial, or 1 for the sequential path. */
+  private static int getChunkCount(final MultivariatePolynomial<BigInteger> poly) {
+    final int n = poly.size();
+    final int nWorkers = getParallelism();
+    if (n < threshold || nWorkers <= 1) {
+      return 1;
+    }
+    return Math.min(n, nWorkers * CHUNKS_PER_WORKER);
+  }
+
+  /** Returns the parallelism of the fork-join pool on which the parallel streams run. */
+  private static int getParallelism() {
+    return ForkJoinTask.inForkJoinPool()
+        ? ForkJoinTask.getPool().getParallelism()
+        : ForkJoinPool.getCommonPoolParallelism();
+  }
+
+  /* default */ static MultivariatePolynomial<BigInteger> shift(
+      final MultivariatePolynomial<BigInteger> poly, final int variable, final BigInteger shift) {
+    return apply(poly, p -> p.shift(variable, shift));
+  }
+
+  /* default */ static MultivariatePolynomial<BigInteger> shift(
+      final MultivariatePolynomial<BigInteger> poly,
+      final int[] variables,
+      final BigInteger[] shifts) {
+    return apply(poly, p -> p.shift(variables, shifts));
+  }
+
+  /**
+   * Returns the value of the given polynomial with all the used variables set to the given values.
+   *
+   * <p>The powers of each value are tabulated once up to the degree of the variable, unless the
+   * degree exceeds the number of the terms, and the terms are accumulated directly into a single
+   * integer without any intermediate polynomials.
+   *
+   * @param poly the polynomial
+   * @param variables the variables of the polynomial
+   * @param indices the indices of the variables to be set
+   * @param values the values
+   * @return the value
+   * @throws IllegalArgumentException when a variable used in the polynomial is not given
+   */
+  /* default */ static BigInteger evaluateToScalar(
+      final MultivariatePolynomial<BigInteger> poly,
+      final VariableSet variables,
+      final int[] indices,
+      final BigInteger[] values) {
+    final int n = poly.nVariables;
+    final BigInteger[] fullValues = new BigInteger[n];
+    for (int k = 0; k < indices.length; k++) {
+      fullValues[indices[k]] = values[k];
+    }
+    final int[] degrees = poly.degrees();
+    final BigInteger[][] tables = new BigInteger[n][];
+    for (int j = 0; j < n; j++) {
+      if (degrees[j] == 0) {
+        continue;
+      }
+      if (fullValues[j] == null) {
+        throw new IllegalArgumentException(
+            String.format("No value given for %s", variables.getRawName(j)));
+      }
+      if (degrees[j] <= poly.size()) {
+        tables[j] = new BigInteger[degrees[j] + 1];
+        tables[j][0] = BigInteger.ONE;
+        for (int e = 1; e <= degrees[j]; e++) {
+          tables[j][e] = tables[j][e - 1].multiply(fullValues[j]);
+        }
+      }
+    }
+    return reduceTerms(poly, terms -> sumTerms(terms, fullValues, tables), BigInteger::add);
+  }
+
+  private static BigInteger sumTerms(
+      final Iterable<Monomial<BigInteger>> terms,
+      final BigInteger[] values,
+      final BigInteger[][] tables) {
+    BigInteger sum = BigInteger.ZERO;
+    for (final Monomial<BigInteger> term : terms) {
+      BigInteger t = term.coefficient;
+      final int[] exponents = term.exponents;
+      for (int j = 0; j < exponents.length && !t.isZero(); j++) {
+        final int e = exponents[j];
+        if (e > 0) {
+          t = t.multiply(tables[j] != null ? tables[j][e] : values[j].pow(e));
+        }
+      }
+      sum = sum.add(t);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,354 @@
+package com.github.tueda.donuts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A partial fraction decomposition of a rational function with respect to a variable. Immutable.
+ *
+ * <p>A rational function {@code f} is decomposed as {@code f = A + sum_i N_i / D_i^e_i}, where
+ * {@code A} is the polynomial part in the variable, {@code D_i} are pairwise coprime polynomials
+ * and each numerator {@code N_i} has a lower degree in the variable than {@code D_i}. The
+ * coefficients of {@code A} and {@code N_i} in the variable are rational functions of the other
+ * variables.
+ *
+ * @see RationalFunction#apart(Variable)
+ */
+public final class PartialFractions {
+  /** The variable. */
+  private final Variable variable;
+
+  /** The polynomial part in the variable. */
+  private final RationalFunction polynomialPart;
+
+  /** The numerators. */
+  private final RationalFunction[] numerators;
+
+  /** The denominator factors. */
+  private final Polynomial[] factors;
+
+  /** The exponents of the denominator factors. */
+  private final int[] exponents;
+
+  private PartialFractions(
+      final Variable variable,
+      final RationalFunction polynomialPart,
+      final RationalFunction[] numerators,
+      final Polynomial[] factors,
+      final int[] exponents) {
+    this.variable = variable;
+    this.polynomialPart = polynomialPart;
+    this.numerators = numerators;
+    this.factors = factors;
+    this.exponents = exponents;
+  }
+
+  /**
+   * Returns the partial fraction decomposition of the given rational function.
+   *
+   * <p>The denominator is decomposed into square-free factors, which are then refined into a
+   * coprime basis. The numerator for each power of a basis element is obtained by the extended
+   * Euclidean algorithm and the division in the variable, over the field of rational functions of
+   * the other variables.
+   *
+   * @param rat the rational function
+   * @param variable the variable
+   * @return the partial fraction decomposition
+   */
+  /* default */ static PartialFractions of(final RationalFunction rat, final Variable variable) {
+    final Polynomial denominator = rat.getDenominator();
+    if (denominator.degree(variable) == 0) {
+      return new PartialFractions(
+          variable, rat, new RationalFunction[0], new Polynomial[0], new int[0]);
+    }
+
+    // The denominator factors depending on the variable.
+    final Factorization sqf = denominator.squareFreeFactorization();
+    final List<Polynomial> candidates = new ArrayList<>();
+    final List<Integer> candidateExponents = new ArrayList<>();
+    for (int i = 0; i < sqf.size(); i++) {
+      if (sqf.getFactor(i).degree(variable) > 0) {
+        candidates.add(sqf.getFactor(i));
+        candidateExponents.add(sqf.getExponent(i));
+      }
+    }
+    final CoprimeBasis basis = CoprimeBasis.of(candidates.toArray(new Polynomial[0]));
+    final List<Polynomial> basisFactors = new ArrayList<>();
+    final List<Integer> basisExponents = new ArrayList<>();
+    for (int j = 0; j < basis.size(); j++) {
+      if (basis.get(j).degree(variable) == 0) {
+        continue;
+      }
+      int e = 0;
+      for (int i = 0; i < candidates.size(); i++) {
+        e =
+            Math.addExact(
+                e, Math.multiplyExact(basis.getExponents(i)[j], candidateExponents.get(i)));
+      }
+      if (e > 0) {
+        basisFactors.add(basis.get(j));
+        basisExponents.add(e);
+      }
+    }
+
+    final RationalFunction[] q = fromPolynomial(denominator, variable);
+    final RationalFunction[][] qr =
+        divideAndRemainder(fromPolynomial(rat.getNumerator(), variable), q);
+    final RationalFunction polynomialPart = toRationalFunction(qr[0], variable);
+    final RationalFunction[] remainder = qr[1];
+
+    final List<RationalFunction> newNumerators = new ArrayList<>();
+    final List<Polynomial> newFactors = new ArrayList<>();
+    final List<Integer> newExponents = new ArrayList<>();
+    for (int j = 0; j < basisFactors.size(); j++) {
+      final Polynomial b = basisFactors.get(j);
+      final int e = basisExponents.get(j);
+      final Polynomial d = b.pow(e);
+
+      // R_j = R * (Q / D_j)^(-1) mod D_j.
+      final RationalFunction[] dd = fromPolynomial(d, variable);
+      final RationalFunction[] cofactor =
+          divideAndRemainder(fromPolynomial(denominator.divideExact(d), variable), dd)[1];
+      RationalFunction[] rj =
+          divideAndRemainder(multiply(remainder, inverseMod(cofactor, dd)), dd)[1];
+
+      // Expand R_j in powers of b.
+      final RationalFunction[] bb = fromPolynomial(b, variable);
+      final RationalFunction[] terms = new RationalFunction[e + 1];
+      for (int m = e; m >= 1; m--) {
+        final RationalFunction[][] qr2 = divideAndRemainder(rj, bb);
+        terms[m] = toRationalFunction(qr2[1], variable);
+        rj = qr2[0];
+      }
+      assert rj.length == 0;
+      for (int m = 1; m <= e; m++) {
+        if (!terms[m].isZero()) {
+          newNumerators.add(terms[m]);
+          newFactors.add(b);
+          newExponents.add(m);
+        }
+      }
+    }
+
+    return new PartialFractions(
+        variable,
+        polynomialPart,
+        newNumerators.toArray(new RationalFunction[0]),
+        newFactors.toArray(new Polynomial[0]),
+        newExponents.stream().mapToInt(Integer::intValue).toArray());
+  }
+
+  /**
+   * Returns the variable with respect to which the decomposition is performed.
+   *
+   * @return the variable
+   */
+  public Variable getVariable() {
+    return variable;
+  }
+
+  /**
+   * Returns the polynomial part in the variable.
+   *
+   * @return the polynomial part
+   */
+  public RationalFunction getPolynomialPart() {
+    return polynomialPart;
+  }
+
+  /**
+   * Returns the number of the fractional terms.
+   *
+   * @return the number of the fractional terms
+   */
+  public int size() {
+    return numerators.length;
+  }
+
+  /**
+   * Returns the numerator of the fractional term at the specified position.
+   *
+   * @param index the index of the term
+   * @return the numerator
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public RationalFunction getNumerator(final int index) {
+    return numerators[index];
+  }
+
+  /**
+   * Returns the denominator factor of the fractional term at the specified position.
+   *
+   * @param index the index of the term
+   * @return the denominator factor
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public Polynomial getDenominatorFactor(final int index) {
+    return factors[index];
+  }
+
+  /**
+   * Returns the exponent of the denominator factor of the fractional term at the specified
+   * position.
+   *
+   * @param index the index of the term
+   * @return the exponent
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public int getExponent(final int index) {
+    return exponents[index];
+  }
+
+  /**
+   * Returns the fractional term at the specified position.
+   *
+   * @param index the index of the term
+   * @return the term
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public RationalFunction getTerm(final int index) {
+    return numerators[index].divide(factors[index].pow(exponents[index]));
+  }
+
+  /**
+   * Returns the sum of the polynomial part and the fractional terms.
+   *
+   * @return the rational function
+   */
+  public RationalFunction toRationalFunction() {
+    final RationalFunction[] terms = new RationalFunction[numerators.length + 1];
+    terms[0] = polynomialPart;
+    for (int i = 0; i < numerators.length; i++) {
+      terms[i + 1] = getTerm(i);
+    }
+    return RationalFunction.sumOf(terms);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    if (!polynomialPart.isZero() || numerators.length == 0) {
+      sb.append(polynomialPart);
+    }
+    for (int i = 0; i < numerators.length; i++) {
+      if (sb.length() > 0) {
+        sb.append('+');
+      }
+      sb.append('(').append(numerators[i]).append(")/(").append(factors[i]).append(')');
+      if (exponents[i] != 1) {
+        sb.append('^').append(exponents[i]);
+      }
+    }
+    return sb.toString();
+  }
+
+  // Univariate polynomials in the variable over the rational functions of the other variables,
+  // represented by their coefficients in the ascending order without trailing zeros.
+
+  private static RationalFunction[] fromPolynomial(final Polynomial poly, final Variable variable) {
+    final int degree = poly.isZero() ? -1 : poly.degree(variable);
+    final RationalFunction[] result = new RationalFunction[degree + 1];
+    for (int d = 0; d <= degree; d++) {
+      result[d] = new RationalFunction(poly.coefficientOf(variable, d));
+    }
+    return result;
+  }
+
+  private static RationalFunction toRationalFunction(
+      final RationalFunction[] poly, final Variable variable) {
+    if (poly.length == 0) {
+      return RationalFunction.ZERO;
+    }
+    final Polynomial x = new Polynomial(variable.getName());
+    final RationalFunction[] terms = new RationalFunction[poly.length];
+    for (int d = 0; d < poly.length; d++) {
+      terms[d] = poly[d].multiply(x.pow(d));
+    }
+    return RationalFunction.sumOf(terms);
+  }
+
+  private static RationalFunction[] trim(final RationalFunction[] poly) {
+    int n = poly.length;
+    while (n > 0 && poly[n - 1].isZero()) {
+      n--;
+    }
+    return n == poly.length ? poly : Arrays.copyOf(poly, n);
+  }
+
+  private static RationalFunction[] subtract(
+      final RationalFunction[] a, final RationalFunction[] b) {
+    final RationalFunction[] result = new RationalFunction[Math.max(a.length, b.length)];
+    for (int d = 0; d < result.length; d++) {
+      final RationalFunction x = d < a.length ? a[d] : RationalFunction.ZERO;
+      final RationalFunction y = d < b.length ? b[d] : RationalFunction.ZERO;
+      result[d] = x.subtract(y);
+    }
+    return trim(result);
+  }
+
+  private static RationalFunction[] multiply(
+      final RationalFunction[] a, final RationalFunction[] b) {
+    if (a.length == 0 || b.length == 0) {
+      return new RationalFunction[0];
+    }
+    final RationalFunction[] result = new RationalFunction[a.length + b.length - 1];
+    for (int d = 0; d < result.length; d++) {
+      final List<RationalFunction> terms = new ArrayList<>();
+      for (int i = Math.max(0, d - b.length + 1); i <= Math.min(d, a.length - 1); i++) {
+        terms.add(a[i].multiply(b[d - i]));
+      }
+      result[d] = RationalFunction.sumOf(terms);
+    }
+    return trim(result);
+  }
+
+  /** Returns {@code {quotient, remainder}}. */
+  private static RationalFunction[][] divideAndRemainder(
+      final RationalFunction[] a, final RationalFunction[] b) {
+    assert b.length > 0;
+    final int db = b.length - 1;
+    if (a.length <= db) {
+      return new RationalFunction[][] {new RationalFunction[0], a};
+    }
+    final RationalFunction[] q = new RationalFunction[a.length - db];
+    final RationalFunction[] r = Arrays.copyOf(a, a.length);
+    for (int k = a.length - 1; k >= db; k--) {
+      final RationalFunction c = r[k].divide(b[db]);
+      q[k - db] = c;
+      if (!c.isZero()) {
+        for (int i = 0; i < db; i++) {
+          r[k - db + i] = r[k - db + i].subtract(c.multiply(b[i]));
+        }
+      }
+      r[k] = RationalFunction.ZERO;
+    }
+    return new RationalFunction[][] {trim(q), trim(Arrays.copyOf(r, db))};
+  }
+
+  /** Returns the inverse of {@code a} modulo {@code m}, assuming they are coprime. */
+  private static RationalFunction[] inverseMod(
+      final RationalFunction[] a, final RationalFunction[] m) {
+    RationalFunction[] r0 = m;
+    RationalFunction[] r1 = a;
+    RationalFunction[] s0 = new RationalFunction[0];
+    RationalFunction[] s1 = new RationalFunction[] {RationalFunction.ONE};
+    while (r1.length > 0) {
+      final RationalFunction[][] qr = divideAndRemainder(r0, r1);
+      final RationalFunction[] s2 = subtract(s0, multiply(qr[0], s1));
+      r0 = r1;
+      r1 = qr[1];
+      s0 = s1;
+      s1 = s2;
+    }
+    if (r0.length != 1) {
+      throw new ArithmeticException("not coprime");
+    }
+    final RationalFunction c = r0[0];
+    final RationalFunction[] result = new RationalFunction[s0.length];
+    for (int d = 0; d < s0.length; d++) {
+      result[d] = s0[d].divide(c);
+    }
+    return result;
+  }
+}
@@ -2,14 +2,13 @@ package com.github.tueda.donuts;
 
 import cc.redberry.rings.Rings;
 import cc.redberry.rings.bigint.BigInteger;
-import cc.redberry.rings.poly.PolynomialFactorDecomposition;
 import cc.redberry.rings.poly.PolynomialMethods;
 import cc.redberry.rings.poly.multivar.Monomial;
 import cc.redberry.rings.poly.multivar.MonomialOrder;
 import cc.redberry.rings.poly.multivar.MultivariateDivision;
-import cc.redberry.rings.poly.multivar.MultivariateFactorization;
 import cc.redberry.rings.poly.multivar.MultivariateGCD;
 import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import cc.redberry.rings.poly.multivar.MultivariateSquareFreeFactorization;
 import com.github.tueda.donuts.util.IntArrayComparator;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
@@ -766,7 +765,11 @@ public final class Polynomial implements Serializable, Iterable<Polynomial>, Mul
    * @throws ArithmeticException when exact division is impossible
    */
   public Polynomial divideExact(final Polynomial divisor) {
-    return performBinaryOperation(divisor, MultivariateDivision::divideExact, false);
+    return PolynomialCache.compute(
+        PolynomialCache.Operation.DIVIDE_EXACT,
+        this,
+        divisor,
+        () -> performBinaryOperation(divisor, MultivariateDivision::divideExact, false));
   }
 
   /**
@@ -802,6 +805,53 @@ public final class Polynomial implements Serializable, Iterable<Polynomial>, Mul
     return new Polynomial(variables, PolynomialMethods.polyPow(raw, exponent));
   }
 
+  /**
+   * Returns the product of this polynomial and the other, truncated at the given total degree with
+   * respect to the given variables. The terms beyond the bound are never generated.
+   *
+   * @param other the polynomial to be multiplied
+   * @param variables the variables for the truncation
+   * @param maxDegree the maximum total degree
+   * @return {@code this * other} truncated
+   * @throws IllegalArgumentException when {@code maxDegree} is negative
+   */
+  public Polynomial multiplyTruncated(
+      final Polynomial other, final VariableSet variables, final int maxDegree) {
+    return TruncatedContext.of(variables, maxDegree).multiply(this, other);
+  }
+
+  /**
+   * Returns the product of this polynomial and the other, truncated at the given degree of each of
+   * the given variables. The terms beyond the bound are never generated.
+   *
+   * @param other the polynomial to be multiplied
+   * @param variables the variables for the truncation
+   * @param maxDegrees the maximum degrees of the variables
+   * @return {@code this * other} truncated
+   * @throws IllegalArgumentException when {@code variables} and {@code maxDegrees} have different
+   *     lengths, or any of {@code maxDegrees} is negative
+   */
+  @SuppressWarnings("PMD.UseVarargs")
+  public Polynomial multiplyTruncated(
+      final Polynomial other, final Variable[] variables, final int[] maxDegrees) {
+    return TruncatedContext.of(variables, maxDegrees).multiply(this, other);
+  }
+
+  /**
+   * Returns this polynomial raised to the given power, truncated at the given total degree with
+   * respect to the given variables.
+   *
+   * @param exponent the exponent
+   * @param variables the variables for the truncation
+   * @param maxDegree the maximum total degree
+   * @return {@code this ^ exponent} truncated
+   * @throws IllegalArgumentException when {@code exponent} or {@code maxDegree} is negative
+   */
+  public Polynomial powTruncated(
+      final int exponent, final VariableSet variables, final int maxDegree) {
+    return TruncatedContext.of(variables, maxDegree).pow(this, exponent);
+  }
+
   /**
    * Returns the sum of the given polynomials.
    *
@@ -950,7 +1000,11 @@ public final class Polynomial implements Serializable, Iterable<Polynomial>, Mul
    * @return {@code GCD(this, other)}
    */
   public Polynomial gcd(final Polynomial other) {
-    return performBinaryOperation(other, MultivariateGCD::PolynomialGCD, false);
+    return PolynomialCache.compute(
+        PolynomialCache.Operation.GCD,
+        this,
+        other,
+        () -> performBinaryOperation(other, VariableOrdering::gcd, false));
   }
 
   /**
@@ -986,7 +1040,7 @@ public final class Polynomial implements Serializable, Iterable<Polynomial>, Mul
     final List<MultivariatePolynomial<BigInteger>> polys =
         Stream.of(polynomials).map(p -> p.translate(newVariables).raw).collect(Collectors.toList());
 
-    return new Polynomial(newVariables, MultivariateGCD.PolynomialGCD(polys));
+    return new Polynomial(newVariables, VariableOrdering.gcd(polys));
   }
 
   /**
@@ -1016,7 +1070,11 @@ public final class Polynomial implements Serializable, Iterable<Polynomial>, Mul
    * @return {@code LCM(this, other)}
    */
   public Polynomial lcm(final Polynomial other) {
-    return performBinaryOperation(other, Polynomial::polynomialLcm, true);
+    return PolynomialCache.compute(
+        PolynomialCache.Operation.LCM,
+        this,
+        other,
+        () -> performBinaryOperation(other, Polynomial::polynomialLcm, true));
   }
 
   /**
@@ -1048,13 +1106,20 @@ public final class Polynomial implements Serializable, Iterable<Polynomial>, Mul
       // lcm(x) -> x
       return polynomials[0];
     }
+    if (polynomials.length == 2) {
+      return polynomials[0].lcm(polynomials[1]);
+    }
 
     final VariableSet newVariables = VariableSet.unionOf(polynomials);
 
-    final List<MultivariatePolynomial<BigInteger>> polys =
-        Stream.of(polynomials).map(p -> p.translate(newVariables).raw).collect(Collectors.toList());
+    if (Stream.of(polynomials).anyMatch(Polynomial::isZero)) {
+      // lcm(..., 0, ...) -> 0
+      return Polynomial.ZERO.translate(newVariables);
+    }
 
-    return new Polynomial(newVariables, Polynomial.polynomialLcm(polys));
+    // Instead of folding pairwise LCMs, which makes the intermediate LCMs grow, we compute the
+    // maximum exponents of the elements in the coprime basis.
+    return CoprimeBasis.of(polynomials).lcm();
   }
 
   /**
@@ -1079,6 +1144,57 @@ public final class Polynomial implements Serializable, Iterable<Polynomial>, Mul
     return lcmOf(polynomials.toArray(Polynomial[]::new));
   }
 
+  /**
+   * Returns a coprime basis of the given polynomials. The polynomials are refined into pairwise
+   * coprime factors by GCDs only, without factorization.
+   *
+   * @apiNote This version of the method with one argument is needed to prevent wrong overloading
+   *     with {@code Iterable<Polynomial>}.
+   * @param polynomials the polynomials for which the coprime basis is to be computed
+   * @return the coprime basis
+   * @throws IllegalArgumentException when any of the polynomials is zero
+   */
+  public static CoprimeBasis coprimeBasis(final Polynomial polynomials) {
+    return CoprimeBasis.of(polynomials);
+  }
+
+  /**
+   * Returns a coprime basis of the given polynomials. The polynomials are refined into pairwise
+   * coprime factors by GCDs only, without factorization.
+   *
+   * @param polynomials the polynomials for which the coprime basis is to be computed
+   * @return the coprime basis
+   * @throws IllegalArgumentException when any of the polynomials is zero
+   */
+  public static CoprimeBasis coprimeBasis(final Polynomial... polynomials) {
+    return CoprimeBasis.of(polynomials);
+  }
+
+  /**
+   * Returns a coprime basis of the given polynomials. The polynomials are refined into pairwise
+   * coprime factors by GCDs only, without factorization.
+   *
+   * @param polynomials the polynomials for which the coprime basis is to be computed
+   * @return the coprime basis
+   * @throws IllegalArgumentException when any of the polynomials is zero
+   */
+  public static CoprimeBasis coprimeBasis(final Iterable<Polynomial> polynomials) {
+    return coprimeBasis(
+        StreamSupport.stream(polynomials.spliterator(), false).toArray(Polynomial[]::new));
+  }
+
+  /**
+   * Returns a coprime basis of the given polynomials. The polynomials are refined into pairwise
+   * coprime factors by GCDs only, without factorization.
+   *
+   * @param polynomials the polynomials for which the coprime basis is to be computed
+   * @return the coprime basis
+   * @throws IllegalArgumentException when any of the polynomials is zero
+   */
+  public static CoprimeBasis coprimeBasis(final Stream<Polynomial> polynomials) {
+    return coprimeBasis(polynomials.toArray(Polynomial[]::new));
+  }
+
   private static MultivariatePolynomial<BigInteger> polynomialLcm(
       final MultivariatePolynomial<BigInteger> a, final MultivariatePolynomial<BigInteger> b) {
     if (a.isZero()) {
@@ -1097,77 +1213,72 @@ public final class Polynomial implements Serializable, Iterable<Polynomial>, Mul
       // LCM(a, 1) -> a
       return a;
     }
-    final MultivariatePolynomial<BigInteger> gcd = MultivariateGCD.PolynomialGCD(a, b);
+    final MultivariatePolynomial<BigInteger> gcd = VariableOrdering.gcd(a, b);
     // CATION: the following line changes `a`.
     return MultivariateDivision.divideExact(a.multiply(b), gcd);
   }
 
-  @SuppressWarnings("PMD.CompareObjectsWithEquals")
-  private static MultivariatePolynomial<BigInteger> polynomialLcm(
-      final Iterable<MultivariatePolynomial<BigInteger>> array) {
-    boolean first = true;
-    MultivariatePolynomial<BigInteger> lcm = null;
-    for (final MultivariatePolynomial<BigInteger> poly : array) {
-      if (first) {
-        lcm = poly.copy();
-        first = false;
-      } else {
-        lcm = polynomialLcm(lcm, poly);
-        if (lcm == poly) {
-          lcm = lcm.copy();
-        }
-      }
-    }
-    return lcm;
-  }
-
   /**
    * Performs the factorization of this polynomial. In the result, the overall constant factor
    * always comes first, if it exists. Each non-constant factor is normalized in such a way that its
    * leading term has a positive coefficient. A power of factors are expanded as a product of
    * duplicate factors.
    *
+   * @apiNote This method is kept for compatibility. As the array holds every repeated factor, its
+   *     length is the sum of the exponents, e.g., 100000 for {@code x^100000}. Use {@link
+   *     #factorization()}, which holds the distinct factors with their exponents, or its lazy view
+   *     {@link Factorization#expand()} instead.
    * @return the factors of this polynomial
+   * @see #factorization()
    */
   public Polynomial[] factors() {
+    return factorization().expand().toArray(new Polynomial[0]);
+  }
+
+  /**
+   * Performs the factorization of this polynomial. The result holds the distinct factors and their
+   * exponents, in the same order as {@link #factors()}.
+   *
+   * @return the factorization of this polynomial
+   */
+  public Factorization factorization() {
     if (isConstant()) {
-      return new Polynomial[] {this};
+      return Factorization.of(this);
     }
 
-    // Perform the factorization.
-
-    final PolynomialFactorDecomposition<MultivariatePolynomial<BigInteger>> decomposition =
-        MultivariateFactorization.FactorInZ(raw);
-
-    decomposition.setLcFrom(raw); // workaround for https://github.com/PoslavskySV/rings/issues/76
-
-    decomposition.canonical(); // sorting, positive signumOfLC
-
-    // Construct the result.
+    return PolynomialCache.computeFactorization(
+        this, () -> Factorization.of(this, FactorizationUtils.factorize(raw), false));
+  }
 
-    final List<Polynomial> factors = new ArrayList<>();
+  /**
+   * Performs the square-free factorization of this polynomial. The result is given in the same form
+   * as {@link #factors()}, except that each non-constant factor is square-free and the factors are
+   * pairwise coprime instead of irreducible.
+   *
+   * @apiNote As with {@link #factors()}, the array holds every repeated factor; use {@link
+   *     #squareFreeFactorization()} for the compact form.
+   * @return the square-free factors of this polynomial
+   * @see #squareFreeFactorization()
+   */
+  public Polynomial[] squareFreeFactors() {
+    return squareFreeFactorization().expand().toArray(new Polynomial[0]);
+  }
 
-    if (!decomposition.unit.isOne()) {
-      factors.add(new Polynomial(variables, decomposition.unit));
+  /**
+   * Performs the square-free factorization of this polynomial. The result holds the distinct
+   * square-free factors and their exponents, in the same order as {@link #squareFreeFactors()}.
+   *
+   * @return the square-free factorization of this polynomial
+   */
+  public Factorization squareFreeFactorization() {
+    if (isConstant()) {
+      return Factorization.of(this);
     }
 
-    for (int i = 0; i < decomposition.size(); i++) {
-      final MultivariatePolynomial<BigInteger> factor = decomposition.get(i);
-      Polynomial poly;
-      int exponent = decomposition.getExponent(i);
-      if (exponent == 1 && factor.isMonomial() && factor.isEffectiveUnivariate()) {
-        final int variable = factor.univariateVariable();
-        exponent = factor.degree(variable);
-        poly = new Polynomial(variables, factor.createMonomial(variable, 1));
-      } else {
-        poly = new Polynomial(variables, factor);
-      }
-      for (int j = 0; j < exponent; j++) {
-        factors.add(poly);
-      }
-    }
+    // Yun's algorithm, which requires only GCDs and derivatives.
 
-    return factors.toArray(new Polynomial[0]);
+    return Factorization.of(
+        this, MultivariateSquareFreeFactorization.SquareFreeFactorization(raw), true);
   }
 
   /**
@@ -1195,6 +1306,86 @@ public final class Polynomial implements Serializable, Iterable<Polynomial>, Mul
     return new Polynomial(newVariables, newRawPoly);
   }
 
+  /**
+   * Returns the result of the given substitutions performed simultaneously. Each left-hand side
+   * must be a non-constant monic monomial.
+   *
+   * <p>The right-hand sides are not substituted again. When left-hand sides overlap, the rules are
+   * tried in the iteration order of the map, each dividing out as many powers of its left-hand
+   * side as possible from what remains of a term; use a {@link java.util.LinkedHashMap} to
+   * control the priority. All the rules are applied in a single pass over the terms.
+   *
+   * @param rules the map from the left-hand sides to the right-hand sides
+   * @return the resultant polynomial
+   * @throws IllegalArgumentException when any of the left-hand sides is invalid
+   */
+  public Polynomial substitute(final Map<Polynomial, Polynomial> rules) {
+    final VariableSet minimalVariables = getMinimalVariables();
+    final List<Map.Entry<Polynomial, Polynomial>> relevantRules = new ArrayList<>(rules.size());
+    VariableSet newVariables = variables;
+    for (final Map.Entry<Polynomial, Polynomial> rule : rules.entrySet()) {
+      SubstitutionUtils.checkLhs(rule.getKey());
+      if (minimalVariables.intersects(rule.getKey().getMinimalVariables())) {
+        relevantRules.add(rule);
+        newVariables =
+            newVariables.union(rule.getKey().getVariables()).union(rule.getValue().getVariables());
+      }
+    }
+
+    if (relevantRules.isEmpty()) {
+      return this;
+    }
+
+    final List<Monomial<BigInteger>> rawLhs = new ArrayList<>(relevantRules.size());
+    final List<MultivariatePolynomial<BigInteger>> rawRhs = new ArrayList<>(relevantRules.size());
+    for (final Map.Entry<Polynomial, Polynomial> rule : relevantRules) {
+      rawLhs.add(rule.getKey().translate(newVariables).raw.first());
+      rawRhs.add(rule.getValue().translate(newVariables).raw);
+    }
+    return new Polynomial(
+        newVariables, SubstitutionUtils.substitute(translate(newVariables).raw, rawLhs, rawRhs));
+  }
+
+  /**
+   * Returns the sum of the images of the terms of this polynomial under the given function.
+   *
+   * <p>The images are added into an accumulator as soon as they are emitted, without creating a
+   * polynomial for each input term or keeping the images. For a huge polynomial, the terms are
+   * processed in chunks in parallel (see {@link ParallelTermKernels}); each worker keeps its own
+   * partial sum, so the peak memory consumption may reach about twice the parallelism times the
+   * size of the result.
+   *
+   * @param function the function, taking the coefficient and the exponents of a term in the order
+   *     of {@link #getVariables()}
+   * @return {@code sum_t function(t)}
+   */
+  public Polynomial flatMapTerms(final TermFunction function) {
+    return ParallelTermKernels.reduceTerms(
+        raw, terms -> flatMapTermsImpl(terms, function), (a, b) -> a.add(b));
+  }
+
+  private Polynomial flatMapTermsImpl(
+      final Iterable<Monomial<BigInteger>> terms, final TermFunction function) {
+    VariableSet newVariables = variables;
+    MultivariatePolynomial<BigInteger> newRaw = raw.createZero();
+    for (final Monomial<BigInteger> term : terms) {
+      Polynomial image = function.apply(term.coefficient, term.exponents.clone());
+      if (image.isZero()) {
+        continue;
+      }
+      if (!image.variables.equals(newVariables)) {
+        final VariableSet unionVariables = newVariables.union(image.variables);
+        if (!unionVariables.equals(newVariables)) {
+          newRaw = new Polynomial(newVariables, newRaw).translate(unionVariables).raw;
+          newVariables = unionVariables;
+        }
+        image = image.translate(newVariables);
+      }
+      newRaw.add(image.raw);
+    }
+    return new Polynomial(newVariables, newRaw);
+  }
+
   /**
    * Returns a copy of this polynomial with setting the given variable to the specified value.
    *
@@ -1273,6 +1464,42 @@ public final class Polynomial implements Serializable, Iterable<Polynomial>, Mul
     return new Polynomial(this.variables, raw.evaluate(indices, newValues));
   }
 
+  /**
+   * Returns the value of this polynomial with setting the given variables to the specified values.
+   * All the variables used in this polynomial must be given. The result is computed directly as an
+   * integer, without constructing intermediate polynomials.
+   *
+   * @param variables the variables to be set
+   * @param values the values
+   * @return the value of {@code this} with {@code variables -> values}
+   * @throws IllegalArgumentException when {@code variables} and {@code values} have different
+   *     lengths, or any of the variables used in this polynomial is not given
+   */
+  @SuppressWarnings("PMD.UseVarargs")
+  public BigInteger evaluateToInteger(final Variable[] variables, final int[] values) {
+    final Object[] result = this.variables.findIndicesForVariablesAndValues(variables, values);
+    return ParallelTermKernels.evaluateToScalar(
+        raw, this.variables, (int[]) result[0], (BigInteger[]) result[1]);
+  }
+
+  /**
+   * Returns the value of this polynomial with setting the given variables to the specified values.
+   * All the variables used in this polynomial must be given. The result is computed directly as an
+   * integer, without constructing intermediate polynomials.
+   *
+   * @param variables the variables to be set
+   * @param values the values
+   * @return the value of {@code this} with {@code variables -> values}
+   * @throws IllegalArgumentException when {@code variables} and {@code values} have different
+   *     lengths, or any of the variables used in this polynomial is not given
+   */
+  @SuppressWarnings("PMD.UseVarargs")
+  public BigInteger evaluateToInteger(final Variable[] variables, final BigInteger[] values) {
+    final Object[] result = this.variables.findIndicesForVariablesAndValues(variables, values);
+    return ParallelTermKernels.evaluateToScalar(
+        raw, this.variables, (int[]) result[0], (BigInteger[]) result[1]);
+  }
+
   /**
    * Returns the polynomial with setting the given variable to zero.
    *
@@ -1348,7 +1575,7 @@ public final class Polynomial implements Serializable, Iterable<Polynomial>, Mul
     if (i < 0) {
       return this;
     }
-    return new Polynomial(variables, raw.shift(i, BigInteger.valueOf(shift)));
+    return new Polynomial(variables, ParallelTermKernels.shift(raw, i, BigInteger.valueOf(shift)));
   }
 
   /**
@@ -1363,7 +1590,7 @@ public final class Polynomial implements Serializable, Iterable<Polynomial>, Mul
     if (i < 0) {
       return this;
     }
-    return new Polynomial(variables, raw.shift(i, shift));
+    return new Polynomial(variables, ParallelTermKernels.shift(raw, i, shift));
   }
 
   /**
@@ -1386,7 +1613,7 @@ public final class Polynomial implements Serializable, Iterable<Polynomial>, Mul
 
     final BigInteger[] newShifts = (BigInteger[]) result[1];
 
-    return new Polynomial(this.variables, raw.shift(indices, newShifts));
+    return new Polynomial(this.variables, ParallelTermKernels.shift(raw, indices, newShifts));
   }
 
   /**
@@ -1409,7 +1636,7 @@ public final class Polynomial implements Serializable, Iterable<Polynomial>, Mul
 
     final BigInteger[] newShifts = (BigInteger[]) result[1];
 
-    return new Polynomial(this.variables, raw.shift(indices, newShifts));
+    return new Polynomial(this.variables, ParallelTermKernels.shift(raw, indices, newShifts));
   }
 
   /**
@@ -0,0 +1,320 @@
+package com.github.tueda.donuts;
+
+import com.github.tueda.donuts.util.WeightedCache;
+import java.util.Arrays;
+import java.util.function.Supplier;
+import lombok.experimental.UtilityClass;
+
+/**
+ * This class controls the optional cache for expensive polynomial operations: {@link
+ * Polynomial#gcd}, {@link Polynomial#lcm}, {@link Polynomial#divideExact} and {@link
+ * Polynomial#factorization}. The cache is disabled by default.
+ *
+ * <p>Entries are keyed by the operands in their minimal variable sets, so results are shared among
+ * polynomials that differ only in unused variables. The weight of an entry is the number of terms
+ * in its operands and result.
+ */
+@SuppressWarnings("doclint:missing") // workaround for JDK-8271159
+@UtilityClass
+public class PolynomialCache {
+  /** The default maximum weight. */
+  public static final long DEFAULT_MAX_WEIGHT = 1L << 20;
+
+  /** The cache, or {@code null} when disabled. */
+  private static volatile WeightedCache<Key, Object> cache;
+
+  /** Cached operations. */
+  /* default */ enum Operation {
+    /** GCD. */
+    GCD,
+    /** LCM. */
+    LCM,
+    /** Exact division. */
+    DIVIDE_EXACT,
+    /** Factorization. */
+    FACTORS,
+  }
+
+  /** Enables the cache with the default maximum weight, discarding the current entries. */
+  public static void enable() {
+    enable(DEFAULT_MAX_WEIGHT);
+  }
+
+  /**
+   * Enables the cache with the given maximum weight, discarding the current entries.
+   *
+   * @param maxWeight the maximum total weight (the number of terms) of the cached entries
+   * @throws IllegalArgumentException when {@code maxWeight} is not positive
+   */
+  public static void enable(final long maxWeight) {
+    cache = new WeightedCache<>(maxWeight);
+  }
+
+  /** Disables the cache, discarding the current entries. */
+  public static void disable() {
+    cache = null;
+  }
+
+  /**
+   * Returns {@code true} if the cache is enabled.
+   *
+   * @return {@code true} if the cache is enabled
+   */
+  public static boolean isEnabled() {
+    return cache != null;
+  }
+
+  /** Removes all entries in the cache, if enabled. */
+  public static void clear() {
+    final WeightedCache<Key, Object> c = cache;
+    if (c != null) {
+      c.clear();
+    }
+  }
+
+  /**
+   * Returns the statistics of the cache.
+   *
+   * @return the statistics, all zero when the cache is disabled
+   */
+  public static Statistics getStatistics() {
+    final WeightedCache<Key, Object> c = cache;
+    if (c == null) {
+      return new Statistics(0, 0, 0, 0, 0, 0);
+    }
+    return new Statistics(
+        c.getHitCount(),
+        c.getMissCount(),
+        c.getEvictionCount(),
+        c.size(),
+        c.getWeight(),
+        c.getMaxWeight());
+  }
+
+  /** Statistics of the cache. Immutable. */
+  public static final class Statistics {
+    /** The number of hits. */
+    private final long hitCount;
+
+    /** The number of misses. */
+    private final long missCount;
+
+    /** The number of evicted entries. */
+    private final long evictionCount;
+
+    /** The number of entries. */
+    private final int size;
+
+    /** The total weight. */
+    private final long weight;
+
+    /** The maximum weight. */
+    private final long maxWeight;
+
+    /* default */ Statistics(
+        final long hitCount,
+        final long missCount,
+        final long evictionCount,
+        final int size,
+        final long weight,
+        final long maxWeight) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.size = size;
+      this.weight = weight;
+      this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the number of lookups that found a cached result.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups that found no cached result.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+      return missCount;
+    }
+
+    /**
+     * Returns the number of evicted entries.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+      return evictionCount;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int getSize() {
+      return size;
+    }
+
+    /**
+     * Returns the total weight of the entries.
+     *
+     * @return the total weight
+     */
+    public long getWeight() {
+      return weight;
+    }
+
+    /**
+     * Returns the maximum total weight of the entries.
+     *
+     * @return the maximum weight
+     */
+    public long getMaxWeight() {
+      return maxWeight;
+    }
+
+    /**
+     * Returns the ratio of hits to all lookups.
+     *
+     * @return the hit rate, or {@code 0} if no lookups have been made
+     */
+    public double getHitRate() {
+      final long total = hitCount + missCount;
+      return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "Statistics{hits=%s, misses=%s, evictions=%s, size=%s, weight=%s/%s}",
+          hitCount, missCount, evictionCount, size, weight, maxWeight);
+    }
+  }
+
+  /**
+   * Returns the result of the given binary operation, with looking up the cache.
+   *
+   * @param operation the operation
+   * @param a the first operand
+   * @param b the second operand
+   * @param function computes the result when it is not cached
+   * @return the result, in the union of the variables of the operands
+   */
+  /* default */ static Polynomial compute(
+      final Operation operation,
+      final Polynomial a,
+      final Polynomial b,
+      final Supplier<Polynomial> function) {
+    final WeightedCache<Key, Object> c = cache;
+    if (c == null) {
+      return function.get();
+    }
+
+    final Key key = new Key(operation, a, b);
+    final Polynomial cachedResult = (Polynomial) c.get(key);
+    if (cachedResult != null) {
+      return cachedResult.translate(a.getVariables().union(b.getVariables()));
+    }
+
+    final long start = System.nanoTime();
+    final Polynomial result = function.get();
+    c.put(key, result, key.weight + result.size(), System.nanoTime() - start);
+    return result;
+  }
+
+  /**
+   * Returns the factorization of the given polynomial, with looking up the cache.
+   *
+   * @param poly the polynomial to be factorized
+   * @param function computes the factorization when it is not cached
+   * @return the factorization, in the variables of {@code poly}
+   */
+  /* default */ static Factorization computeFactorization(
+      final Polynomial poly, final Supplier<Factorization> function) {
+    final WeightedCache<Key, Object> c = cache;
+    if (c == null) {
+      return function.get();
+    }
+
+    final Key key = new Key(Operation.FACTORS, poly);
+    final Factorization cachedResult = (Factorization) c.get(key);
+    if (cachedResult != null) {
+      return cachedResult.translate(poly.getVariables());
+    }
+
+    final long start = System.nanoTime();
+    final Factorization result = function.get();
+    final long resultWeight =
+        Arrays.stream(result.getFactors()).mapToLong(Polynomial::size).sum() + 1;
+    c.put(key, result, key.weight + resultWeight, System.nanoTime() - start);
+    return result;
+  }
+
+  /** A key for a cached operation. Immutable. */
+  private static final class Key {
+    /** The operation. */
+    private final Operation operation;
+
+    /** The operands, in their minimal variable sets. */
+    private final Polynomial[] operands;
+
+    /** The total number of terms in the operands. */
+    private final long weight;
+
+    /** The hash code. */
+    private final int hash;
+
+    /* default */ Key(final Operation operation, final Polynomial... operands) {
+      this.operation = operation;
+      this.operands =
+          Arrays.stream(operands)
+              .map(p -> p.translate(p.getMinimalVariables()))
+              .toArray(Polynomial[]::new);
+      this.weight = Arrays.stream(operands).mapToLong(Polynomial::size).sum();
+      int h = 0;
+      for (final Polynomial p : this.operands) {
+        h = isCommutative() ? h + p.hashCode() : 31 * h + p.hashCode();
+      }
+      this.hash = 31 * h + operation.hashCode();
+    }
+
+    private boolean isCommutative() {
+      return operation == Operation.GCD || operation == Operation.LCM;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      final Key aKey = (Key) other;
+      if (hash != aKey.hash || operation != aKey.operation) {
+        return false;
+      }
+      if (Arrays.equals(operands, aKey.operands)) {
+        return true;
+      }
+      // GCD and LCM are commutative.
+      return isCommutative()
+          && operands.length == 2
+          && aKey.operands.length == 2
+          && operands[0].equals(aKey.operands[1])
+          && operands[1].equals(aKey.operands[0]);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package com.github.tueda.donuts;
+
+import cc.redberry.rings.IntegersZp64;
+import cc.redberry.rings.Rational;
+import cc.redberry.rings.Rings;
+import cc.redberry.rings.bigint.BigInteger;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A compiled rational function for evaluations at many numeric points. Immutable and thread-safe.
+ *
+ * <p>The numerator and denominator are compiled into {@link Evaluator}s and evaluated separately;
+ * the divisions are performed only at the end for each point.
+ */
+public final class RationalEvaluator {
+  /** The evaluator of the numerator. */
+  private final Evaluator numerator;
+
+  /** The evaluator of the denominator. */
+  private final Evaluator denominator;
+
+  private RationalEvaluator(final Evaluator numerator, final Evaluator denominator) {
+    this.numerator = numerator;
+    this.denominator = denominator;
+  }
+
+  /**
+   * Returns the evaluator of the given rational function for points giving the values of the given
+   * variables. All the variables used in the rational function must be given.
+   *
+   * @param rat the rational function
+   * @param variables the variables, in the order of the values of the points
+   * @return the evaluator
+   * @throws IllegalArgumentException when {@code variables} has duplicates or lacks a variable used
+   *     in {@code rat}
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static RationalEvaluator of(final RationalFunction rat, final Variable... variables) {
+    return new RationalEvaluator(
+        Evaluator.of(rat.getNumerator(), variables), Evaluator.of(rat.getDenominator(), variables));
+  }
+
+  /**
+   * Returns the variables, in the order of the values of the points.
+   *
+   * @return the variables
+   */
+  public Variable[] getVariables() {
+    return numerator.getVariables();
+  }
+
+  /**
+   * Returns the values of the rational function at the given points.
+   *
+   * @param points the points, each of which gives the values of the variables
+   * @return the values
+   * @throws ArithmeticException when division by zero
+   * @throws IllegalArgumentException when any of the points has a wrong number of values
+   */
+  public List<Rational<BigInteger>> evaluate(final BigInteger[][] points) {
+    final BigInteger[] nums = numerator.evaluate(points);
+    final BigInteger[] dens = denominator.evaluate(points);
+    for (final BigInteger den : dens) {
+      if (den.isZero()) {
+        throw new ArithmeticException("division by zero");
+      }
+    }
+    final IntStream stream = IntStream.range(0, points.length);
+    return (points.length >= 2 ? stream.parallel() : stream)
+        .mapToObj(i -> new Rational<>(Rings.Z, nums[i], dens[i]))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Returns the values of the rational function modulo the given modulus at the given points. The
+   * modulus is usually a prime, but it may be composite if the denominator is invertible.
+   *
+   * @param points the points, each of which gives the values of the variables
+   * @param modulus the modulus, at least 2 and less than 2^62
+   * @return the values in the range from 0 to {@code modulus - 1}
+   * @throws ArithmeticException when the denominator is not invertible modulo {@code modulus}
+   * @throws IllegalArgumentException when any of the points has a wrong number of values, or
+   *     {@code modulus} is out of range
+   */
+  public long[] evaluateModP(final long[][] points, final long modulus) {
+    final long[] nums = numerator.evaluateModP(points, modulus);
+    final long[] dens = denominator.evaluateModP(points, modulus);
+    final IntegersZp64 ring = new IntegersZp64(modulus);
+    final long[] results = new long[points.length];
+    for (int i = 0; i < points.length; i++) {
+      if (dens[i] == 0) {
+        throw new ArithmeticException("division by zero");
+      }
+      if (gcd(dens[i], modulus) != 1) {
+        throw new ArithmeticException(
+            String.format("Non-invertible denominator modulo %s: %s", modulus, dens[i]));
+      }
+      results[i] = ring.multiply(nums[i], ring.reciprocal(dens[i]));
+    }
+    return results;
+  }
+
+  private static long gcd(final long a, final long b) {
+    long x = a;
+    long y = b;
+    while (y != 0) {
+      final long r = x % y;
+      x = y;
+      y = r;
+    }
+    return x;
+  }
+}
@@ -7,31 +7,36 @@ import cc.redberry.rings.bigint.BigInteger;
 import cc.redberry.rings.io.Coder;
 import cc.redberry.rings.poly.MultivariateRing;
 import cc.redberry.rings.poly.multivar.Monomial;
+import cc.redberry.rings.poly.multivar.MultivariateDivision;
 import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
 import java.io.InvalidObjectException;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.BinaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /** A multivariate rational function. Immutable. */
 public final class RationalFunction implements Serializable, Multivariate {
   private static final long serialVersionUID = 1L;
 
-  /** The limitation on the number of variables. */
-  private static final int MAX_VARIABLES = 300;
+  /** The cache of raw ring objects, keyed by the number of variables. */
+  private static final ConcurrentMap<Integer, MultivariateRing<MultivariatePolynomial<BigInteger>>>
+      RAW_RINGS = new ConcurrentHashMap<>();
 
-  /** The list of raw ring objects. */
-  private static final List<MultivariateRing<MultivariatePolynomial<BigInteger>>> RAW_RINGS =
-      new ArrayList<>();
-
-  /** The list of raw fraction field objects. */
-  private static final List<Rationals<MultivariatePolynomial<BigInteger>>> RAW_FIELDS =
-      new ArrayList<>();
+  /** The cache of raw fraction field objects, keyed by the number of variables. */
+  private static final ConcurrentMap<Integer, Rationals<MultivariatePolynomial<BigInteger>>>
+      RAW_FIELDS = new ConcurrentHashMap<>();
 
   /** Raw zero rational function. */
   /* default */ static final Rational<MultivariatePolynomial<BigInteger>> RAW_ZERO;
@@ -43,14 +48,7 @@ public final class RationalFunction implements Serializable, Multivariate {
   public static final RationalFunction ONE;
 
   static {
-    assert MAX_VARIABLES >= 0;
-
-    for (int i = 0; i <= MAX_VARIABLES; i++) {
-      RAW_RINGS.add(Rings.MultivariateRing(i, Rings.Z));
-      RAW_FIELDS.add(Rings.Frac(RAW_RINGS.get(i)));
-    }
-
-    RAW_ZERO = new Rational<>(RAW_RINGS.get(0), Polynomial.RAW_ZERO);
+    RAW_ZERO = new Rational<>(getRings(0), Polynomial.RAW_ZERO);
 
     ZERO = new RationalFunction();
     ONE = new RationalFunction(1);
@@ -192,22 +190,23 @@ public final class RationalFunction implements Serializable, Multivariate {
         || s.startsWith("java.util.ArrayDeque.removeFirst");
   }
 
-  private static void checkNumberOfVariables(final int nvars) {
-    if (nvars > MAX_VARIABLES) {
-      throw new ArithmeticException(
-          String.format("sorry, too many variables %s > %s", nvars, MAX_VARIABLES));
-    }
-  }
-
   /* default */ static MultivariateRing<MultivariatePolynomial<BigInteger>> getRings(
       final int nvars) {
-    checkNumberOfVariables(nvars);
-    return RAW_RINGS.get(nvars);
+    // The objects are created on demand, at most once per number of variables. The lock-free
+    // get() comes first because computeIfAbsent() locks the bin even for a present key in Java 8.
+    final MultivariateRing<MultivariatePolynomial<BigInteger>> ring = RAW_RINGS.get(nvars);
+    if (ring != null) {
+      return ring;
+    }
+    return RAW_RINGS.computeIfAbsent(nvars, n -> Rings.MultivariateRing(n, Rings.Z));
   }
 
   private static Rationals<MultivariatePolynomial<BigInteger>> getFields(final int nvars) {
-    checkNumberOfVariables(nvars);
-    return RAW_FIELDS.get(nvars);
+    final Rationals<MultivariatePolynomial<BigInteger>> field = RAW_FIELDS.get(nvars);
+    if (field != null) {
+      return field;
+    }
+    return RAW_FIELDS.computeIfAbsent(nvars, n -> Rings.Frac(getRings(n)));
   }
 
   private static Coder<Rational<MultivariatePolynomial<BigInteger>>, ?, ?> getCoder(
@@ -220,7 +219,6 @@ public final class RationalFunction implements Serializable, Multivariate {
   private RationalFunction(
       final VariableSet newVariables, final Rational<MultivariatePolynomial<BigInteger>> rawRat) {
     assert newVariables.size() == ((MultivariateRing<?>) rawRat.ring).nVariables();
-    checkNumberOfVariables(newVariables.size());
     variables = newVariables;
     raw = rawRat;
   }
@@ -533,7 +531,25 @@ public final class RationalFunction implements Serializable, Multivariate {
    * @return {@code this + other}
    */
   public RationalFunction add(final RationalFunction other) {
-    return performBinaryOperation(other, Rational<MultivariatePolynomial<BigInteger>>::add);
+    return addOrSubtract(other, false);
+  }
+
+  /**
+   * Returns the sum of this rational function and the given polynomial.
+   *
+   * @param other the polynomial to be added to this rational function
+   * @return {@code this + other}
+   */
+  public RationalFunction add(final Polynomial other) {
+    if (other.isZero()) {
+      return this;
+    }
+    final VariableSet newVariables = variables.union(other.getVariables());
+    return new RationalFunction(
+        newVariables,
+        translate(newVariables)
+            .raw
+            .add(other.translate(newVariables).getRawPolynomialWithoutCopy()));
   }
 
   /**
@@ -543,7 +559,80 @@ public final class RationalFunction implements Serializable, Multivariate {
    * @return {@code this - other}
    */
   public RationalFunction subtract(final RationalFunction other) {
-    return performBinaryOperation(other, Rational<MultivariatePolynomial<BigInteger>>::subtract);
+    return addOrSubtract(other, true);
+  }
+
+  /**
+   * Returns the difference of this rational function from the given polynomial.
+   *
+   * @param other the polynomial to be subtracted from this rational function
+   * @return {@code this - other}
+   */
+  public RationalFunction subtract(final Polynomial other) {
+    return add(other.negate());
+  }
+
+  /**
+   * Returns the sum or difference of this rational function and the other. The following cases
+   * avoid the general operation, which requires a GCD of the denominators and a cancellation GCD:
+   *
+   * <ul>
+   *   <li>When either operand is a polynomial, {@code p/q + r = (p + r*q)/q} needs no GCD.
+   *   <li>When the denominators are the same, only the cancellation of the sum of the numerators
+   *       against the denominator is needed.
+   *   <li>When the denominators are integers, only the integer content is cancelled.
+   * </ul>
+   */
+  private RationalFunction addOrSubtract(final RationalFunction other, final boolean subtract) {
+    if (other.isZero()) {
+      return this;
+    }
+    if (isZero()) {
+      return subtract ? other.negate() : other;
+    }
+
+    final VariableSet newVariables = variables.union(other.variables);
+    final Rational<MultivariatePolynomial<BigInteger>> a = translate(newVariables).raw;
+    final Rational<MultivariatePolynomial<BigInteger>> b = other.translate(newVariables).raw;
+
+    if (b.isIntegral()) {
+      return new RationalFunction(
+          newVariables, subtract ? a.subtract(b.numerator()) : a.add(b.numerator()));
+    }
+    if (a.isIntegral()) {
+      return new RationalFunction(newVariables, (subtract ? b.negate() : b).add(a.numerator()));
+    }
+
+    final MultivariatePolynomial<BigInteger> aDen = a.denominator();
+    final MultivariatePolynomial<BigInteger> bDen = b.denominator();
+
+    if (aDen.equals(bDen)) {
+      final MultivariatePolynomial<BigInteger> num =
+          subtract
+              ? a.numerator().copy().subtract(b.numerator())
+              : a.numerator().copy().add(b.numerator());
+      return new RationalFunction(newVariables, num, aDen);
+    }
+
+    if (aDen.isConstant() && bDen.isConstant()) {
+      final BigInteger aCoeff = aDen.cc();
+      final BigInteger bCoeff = bDen.cc();
+      final BigInteger lcm = aCoeff.divide(aCoeff.gcd(bCoeff)).multiply(bCoeff);
+      final MultivariatePolynomial<BigInteger> aNum =
+          a.numerator().copy().multiply(lcm.divide(aCoeff));
+      final MultivariatePolynomial<BigInteger> bNum =
+          b.numerator().copy().multiply(lcm.divide(bCoeff));
+      final MultivariatePolynomial<BigInteger> num =
+          subtract ? aNum.subtract(bNum) : aNum.add(bNum);
+      if (num.isZero()) {
+        return ZERO.translate(newVariables);
+      }
+      final BigInteger g = num.content().gcd(lcm);
+      return new RationalFunction(
+          newVariables, num.divideExact(g), aDen.createConstant(lcm.divide(g)));
+    }
+
+    return new RationalFunction(newVariables, subtract ? a.subtract(b) : a.add(b));
   }
 
   /**
@@ -556,6 +645,22 @@ public final class RationalFunction implements Serializable, Multivariate {
     return performBinaryOperation(other, Rational<MultivariatePolynomial<BigInteger>>::multiply);
   }
 
+  /**
+   * Returns the product of this rational function and the given polynomial. Only the GCD of the
+   * polynomial and the denominator is cancelled.
+   *
+   * @param other the polynomial to be multiplied by this rational function
+   * @return {@code this * other}
+   */
+  public RationalFunction multiply(final Polynomial other) {
+    final VariableSet newVariables = variables.union(other.getVariables());
+    return new RationalFunction(
+        newVariables,
+        translate(newVariables)
+            .raw
+            .multiply(other.translate(newVariables).getRawPolynomialWithoutCopy()));
+  }
+
   /**
    * Returns the quotient of this rational function divided by the given divisor.
    *
@@ -567,6 +672,26 @@ public final class RationalFunction implements Serializable, Multivariate {
     return performBinaryOperation(divisor, Rational<MultivariatePolynomial<BigInteger>>::divide);
   }
 
+  /**
+   * Returns the quotient of this rational function divided by the given polynomial. Only the GCD of
+   * the polynomial and the numerator is cancelled.
+   *
+   * @param divisor the divisor
+   * @return {@code this / divisor}
+   * @throws ArithmeticException when division by zero
+   */
+  public RationalFunction divide(final Polynomial divisor) {
+    if (divisor.isZero()) {
+      throw new ArithmeticException("division by zero");
+    }
+    final VariableSet newVariables = variables.union(divisor.getVariables());
+    return new RationalFunction(
+        newVariables,
+        translate(newVariables)
+            .raw
+            .divide(divisor.translate(newVariables).getRawPolynomialWithoutCopy()));
+  }
+
   /**
    * Returns this rational function raised to the given power.
    *
@@ -589,6 +714,209 @@ public final class RationalFunction implements Serializable, Multivariate {
     return new RationalFunction(variables, raw.pow(exponent));
   }
 
+  /**
+   * Returns the sum of the given rational functions.
+   *
+   * @apiNote This version of the method with one argument is needed to prevent wrong overloading
+   *     with {@code Iterable<RationalFunction>}.
+   * @param rationalFunctions the rational functions to be summed
+   * @return {@code rationalFunction1 + ... + rationalFunctionN}
+   */
+  public static RationalFunction sumOf(final RationalFunction rationalFunctions) {
+    return rationalFunctions;
+  }
+
+  /**
+   * Returns the sum of the given rational functions.
+   *
+   * <p>The terms with identical denominators are grouped and their numerators are summed as
+   * polynomials. The groups are then combined pairwise in a balanced tree, possibly in parallel,
+   * via the LCMs of the denominators without cancellation. The GCD of the resultant numerator and
+   * denominator is cancelled only once at the end.
+   *
+   * @param rationalFunctions the rational functions to be summed
+   * @return {@code rationalFunction1 + ... + rationalFunctionN}
+   */
+  public static RationalFunction sumOf(final RationalFunction... rationalFunctions) {
+    switch (rationalFunctions.length) {
+      case 0:
+        return RationalFunction.ZERO;
+      case 1:
+        return rationalFunctions[0];
+      case 2:
+        return rationalFunctions[0].add(rationalFunctions[1]);
+      default:
+        break;
+    }
+
+    // Group the numerators by the denominators.
+    final Map<Polynomial, List<Polynomial>> groups = new LinkedHashMap<>();
+    for (final RationalFunction r : rationalFunctions) {
+      if (!r.isZero()) {
+        groups.computeIfAbsent(r.getDenominator(), k -> new ArrayList<>()).add(r.getNumerator());
+      }
+    }
+
+    List<Polynomial[]> terms = new ArrayList<>(groups.size());
+    for (final Map.Entry<Polynomial, List<Polynomial>> e : groups.entrySet()) {
+      final Polynomial numerator = Polynomial.sumOf(e.getValue());
+      if (!numerator.isZero()) {
+        terms.add(new Polynomial[] {numerator, e.getKey()});
+      }
+    }
+
+    if (terms.isEmpty()) {
+      return RationalFunction.ZERO;
+    }
+
+    // Combine the groups in a balanced tree.
+    while (terms.size() > 1) {
+      final List<Polynomial[]> current = terms;
+      final int nPairs = current.size() / 2;
+      final IntStream pairs = IntStream.range(0, nPairs);
+      final List<Polynomial[]> next =
+          (nPairs >= 2 ? pairs.parallel() : pairs)
+              .mapToObj(i -> addWithoutCancellation(current.get(2 * i), current.get(2 * i + 1)))
+              .collect(Collectors.toCollection(ArrayList::new));
+      if (current.size() % 2 != 0) {
+        next.add(current.get(current.size() - 1));
+      }
+      terms = next;
+    }
+
+    final Polynomial[] result = terms.get(0);
+    return new RationalFunction(result[0], result[1]);
+  }
+
+  /** Returns {@code n1/d1 + n2/d2} over {@code LCM(d1, d2)} without cancellation. */
+  private static Polynomial[] addWithoutCancellation(final Polynomial[] a, final Polynomial[] b) {
+    if (a[1].equals(b[1])) {
+      return new Polynomial[] {a[0].add(b[0]), a[1]};
+    }
+    final Polynomial lcm = a[1].lcm(b[1]);
+    return new Polynomial[] {
+      a[0].multiply(lcm.divideExact(a[1])).add(b[0].multiply(lcm.divideExact(b[1]))), lcm
+    };
+  }
+
+  /**
+   * Returns the sum of the given rational functions.
+   *
+   * @param rationalFunctions the rational functions to be summed
+   * @return {@code rationalFunction1 + ... + rationalFunctionN}
+   */
+  public static RationalFunction sumOf(final Iterable<RationalFunction> rationalFunctions) {
+    return sumOf(
+        StreamSupport.stream(rationalFunctions.spliterator(), false)
+            .toArray(RationalFunction[]::new));
+  }
+
+  /**
+   * Returns the sum of the given rational functions.
+   *
+   * @param rationalFunctions the rational functions to be summed
+   * @return {@code rationalFunction1 + ... + rationalFunctionN}
+   */
+  public static RationalFunction sumOf(final Stream<RationalFunction> rationalFunctions) {
+    return sumOf(rationalFunctions.toArray(RationalFunction[]::new));
+  }
+
+  /**
+   * Returns the least common denominator of the given rational functions.
+   *
+   * @apiNote This version of the method with one argument is needed to prevent wrong overloading
+   *     with {@code Iterable<RationalFunction>}.
+   * @param rationalFunctions the rational functions
+   * @return {@code LCM(denominator1, ..., denominatorN)}
+   */
+  public static Polynomial commonDenominatorOf(final RationalFunction rationalFunctions) {
+    return rationalFunctions.getDenominator();
+  }
+
+  /**
+   * Returns the least common denominator of the given rational functions. The denominators are
+   * combined via their coprime basis (see {@link Polynomial#coprimeBasis(Polynomial...)}).
+   *
+   * @param rationalFunctions the rational functions
+   * @return {@code LCM(denominator1, ..., denominatorN)}, or {@code 1} when no rational function is
+   *     given
+   */
+  public static Polynomial commonDenominatorOf(final RationalFunction... rationalFunctions) {
+    if (rationalFunctions.length == 0) {
+      return Polynomial.ONE;
+    }
+    return Polynomial.lcmOf(
+        Stream.of(rationalFunctions)
+            .map(RationalFunction::getDenominator)
+            .toArray(Polynomial[]::new));
+  }
+
+  /**
+   * Returns the least common denominator of the given rational functions.
+   *
+   * @param rationalFunctions the rational functions
+   * @return {@code LCM(denominator1, ..., denominatorN)}, or {@code 1} when no rational function is
+   *     given
+   */
+  public static Polynomial commonDenominatorOf(final Iterable<RationalFunction> rationalFunctions) {
+    return commonDenominatorOf(
+        StreamSupport.stream(rationalFunctions.spliterator(), false)
+            .toArray(RationalFunction[]::new));
+  }
+
+  /**
+   * Returns the least common denominator of the given rational functions.
+   *
+   * @param rationalFunctions the rational functions
+   * @return {@code LCM(denominator1, ..., denominatorN)}, or {@code 1} when no rational function is
+   *     given
+   */
+  public static Polynomial commonDenominatorOf(final Stream<RationalFunction> rationalFunctions) {
+    return commonDenominatorOf(rationalFunctions.toArray(RationalFunction[]::new));
+  }
+
+  /**
+   * Performs the square-free factorization of the numerator and denominator of this rational
+   * function. The product of the returned factors equals this rational function. The overall
+   * constant factor always comes first, if it exists, followed by the square-free factors of the
+   * numerator and then the reciprocals of those of the denominator, each of which is given in the
+   * same form as {@link Polynomial#squareFreeFactors()}.
+   *
+   * @return the square-free factors of this rational function
+   */
+  public RationalFunction[] squareFreeFactors() {
+    if (isConstant()) {
+      return new RationalFunction[] {this};
+    }
+
+    final Polynomial[] numFactors = getNumerator().squareFreeFactors();
+    final Polynomial[] denFactors = getDenominator().squareFreeFactors();
+
+    final List<RationalFunction> factors = new ArrayList<>();
+
+    final Polynomial numUnit = numFactors[0].isConstant() ? numFactors[0] : Polynomial.ONE;
+    final Polynomial denUnit = denFactors[0].isConstant() ? denFactors[0] : Polynomial.ONE;
+    final RationalFunction unit = new RationalFunction(numUnit, denUnit);
+
+    if (!unit.isOne()) {
+      factors.add(unit.translate(variables));
+    }
+
+    for (final Polynomial factor : numFactors) {
+      if (!factor.isConstant()) {
+        factors.add(new RationalFunction(factor));
+      }
+    }
+
+    for (final Polynomial factor : denFactors) {
+      if (!factor.isConstant()) {
+        factors.add(new RationalFunction(Polynomial.ONE, factor));
+      }
+    }
+
+    return factors.toArray(new RationalFunction[0]);
+  }
+
   /**
    * Returns the result of the given substitution. The left-hand side must be a non-constant monic
    * monomial.
@@ -612,12 +940,49 @@ public final class RationalFunction implements Serializable, Multivariate {
         lhs.translate(newVariables).getRawPolynomialWithoutCopy().first();
     final Rational<MultivariatePolynomial<BigInteger>> rawRhs = rhs.translate(newVariables).raw;
 
-    final Rational<MultivariatePolynomial<BigInteger>> rawNum =
-        SubstitutionUtils.substitute(rawRat.numerator(), rawLhs, rawRhs);
-    final Rational<MultivariatePolynomial<BigInteger>> rawDen =
-        SubstitutionUtils.substitute(rawRat.denominator(), rawLhs, rawRhs);
+    return new RationalFunction(newVariables, SubstitutionUtils.substitute(rawRat, rawLhs, rawRhs));
+  }
 
-    return new RationalFunction(newVariables, rawNum.divide(rawDen));
+  /**
+   * Returns the result of the given substitutions performed simultaneously. Each left-hand side
+   * must be a non-constant monic monomial.
+   *
+   * <p>The right-hand sides are not substituted again. The priority of overlapping left-hand sides
+   * is the same as {@link Polynomial#substitute(Map)}. All the rules are applied in a single pass
+   * over the terms, and the cancellation is performed only once at the end.
+   *
+   * @param rules the map from the left-hand sides to the right-hand sides
+   * @return the resultant rational function
+   * @throws IllegalArgumentException when any of the left-hand sides is invalid
+   * @throws ArithmeticException when division by zero
+   */
+  public RationalFunction substitute(final Map<Polynomial, RationalFunction> rules) {
+    final VariableSet minimalVariables = getMinimalVariables();
+    final List<Map.Entry<Polynomial, RationalFunction>> relevantRules =
+        new ArrayList<>(rules.size());
+    VariableSet newVariables = variables;
+    for (final Map.Entry<Polynomial, RationalFunction> rule : rules.entrySet()) {
+      SubstitutionUtils.checkLhs(rule.getKey());
+      if (minimalVariables.intersects(rule.getKey().getMinimalVariables())) {
+        relevantRules.add(rule);
+        newVariables =
+            newVariables.union(rule.getKey().getVariables()).union(rule.getValue().getVariables());
+      }
+    }
+
+    if (relevantRules.isEmpty()) {
+      return this;
+    }
+
+    final List<Monomial<BigInteger>> rawLhs = new ArrayList<>(relevantRules.size());
+    final List<Rational<MultivariatePolynomial<BigInteger>>> rawRhs =
+        new ArrayList<>(relevantRules.size());
+    for (final Map.Entry<Polynomial, RationalFunction> rule : relevantRules) {
+      rawLhs.add(rule.getKey().translate(newVariables).getRawPolynomialWithoutCopy().first());
+      rawRhs.add(rule.getValue().translate(newVariables).raw);
+    }
+    return new RationalFunction(
+        newVariables, SubstitutionUtils.substitute(translate(newVariables).raw, rawLhs, rawRhs));
   }
 
   /**
@@ -717,6 +1082,55 @@ public final class RationalFunction implements Serializable, Multivariate {
         raw.denominator().evaluate(indices, newValues));
   }
 
+  /**
+   * Returns the value of this rational function with setting the given variables to the specified
+   * values. All the variables used in this rational function must be given. The numerator and
+   * denominator are evaluated directly as integers, without constructing intermediate polynomials.
+   *
+   * @param variables the variables to be set
+   * @param values the values
+   * @return the value of {@code this} with {@code variables -> values}
+   * @throws ArithmeticException when division by zero
+   * @throws IllegalArgumentException when {@code variables} and {@code values} have different
+   *     lengths, or any of the variables used in this rational function is not given
+   */
+  @SuppressWarnings("PMD.UseVarargs")
+  public Rational<BigInteger> evaluateToRational(final Variable[] variables, final int[] values) {
+    final Object[] result = this.variables.findIndicesForVariablesAndValues(variables, values);
+    return evaluateToRationalImpl((int[]) result[0], (BigInteger[]) result[1]);
+  }
+
+  /**
+   * Returns the value of this rational function with setting the given variables to the specified
+   * values. All the variables used in this rational function must be given. The numerator and
+   * denominator are evaluated directly as integers, without constructing intermediate polynomials.
+   *
+   * @param variables the variables to be set
+   * @param values the values
+   * @return the value of {@code this} with {@code variables -> values}
+   * @throws ArithmeticException when division by zero
+   * @throws IllegalArgumentException when {@code variables} and {@code values} have different
+   *     lengths, or any of the variables used in this rational function is not given
+   */
+  @SuppressWarnings("PMD.UseVarargs")
+  public Rational<BigInteger> evaluateToRational(
+      final Variable[] variables, final BigInteger[] values) {
+    final Object[] result = this.variables.findIndicesForVariablesAndValues(variables, values);
+    return evaluateToRationalImpl((int[]) result[0], (BigInteger[]) result[1]);
+  }
+
+  private Rational<BigInteger> evaluateToRationalImpl(
+      final int[] indices, final BigInteger[] values) {
+    final BigInteger den =
+        ParallelTermKernels.evaluateToScalar(raw.denominator(), variables, indices, values);
+    if (den.isZero()) {
+      throw new ArithmeticException("division by zero");
+    }
+    final BigInteger num =
+        ParallelTermKernels.evaluateToScalar(raw.numerator(), variables, indices, values);
+    return new Rational<>(Rings.Z, num, den);
+  }
+
   /**
    * Returns the rational function with setting the given variable to zero.
    *
@@ -808,7 +1222,9 @@ public final class RationalFunction implements Serializable, Multivariate {
     }
     final BigInteger newShift = BigInteger.valueOf(shift);
     return new RationalFunction(
-        variables, raw.numerator().shift(i, newShift), raw.denominator().shift(i, newShift));
+        variables,
+        ParallelTermKernels.shift(raw.numerator(), i, newShift),
+        ParallelTermKernels.shift(raw.denominator(), i, newShift));
   }
 
   /**
@@ -824,7 +1240,9 @@ public final class RationalFunction implements Serializable, Multivariate {
       return this;
     }
     return new RationalFunction(
-        variables, raw.numerator().shift(i, shift), raw.denominator().shift(i, shift));
+        variables,
+        ParallelTermKernels.shift(raw.numerator(), i, shift),
+        ParallelTermKernels.shift(raw.denominator(), i, shift));
   }
 
   /**
@@ -849,8 +1267,8 @@ public final class RationalFunction implements Serializable, Multivariate {
 
     return new RationalFunction(
         this.variables,
-        raw.numerator().shift(indices, newShifts),
-        raw.denominator().shift(indices, newShifts));
+        ParallelTermKernels.shift(raw.numerator(), indices, newShifts),
+        ParallelTermKernels.shift(raw.denominator(), indices, newShifts));
   }
 
   /**
@@ -875,8 +1293,31 @@ public final class RationalFunction implements Serializable, Multivariate {
 
     return new RationalFunction(
         this.variables,
-        raw.numerator().shift(indices, newShifts),
-        raw.denominator().shift(indices, newShifts));
+        ParallelTermKernels.shift(raw.numerator(), indices, newShifts),
+        ParallelTermKernels.shift(raw.denominator(), indices, newShifts));
+  }
+
+  /**
+   * Returns the series expansion of this rational function around zero in the given variable up to
+   * the specified order. The expansion may start with a negative power.
+   *
+   * @param variable the expansion variable
+   * @param order the maximum order
+   * @return the series expansion
+   */
+  public Series series(final Variable variable, final int order) {
+    return Series.of(this, variable, order);
+  }
+
+  /**
+   * Returns the partial fraction decomposition of this rational function with respect to the given
+   * variable.
+   *
+   * @param variable the variable
+   * @return the partial fraction decomposition
+   */
+  public PartialFractions apart(final Variable variable) {
+    return PartialFractions.of(this, variable);
   }
 
   /**
@@ -910,45 +1351,91 @@ public final class RationalFunction implements Serializable, Multivariate {
       return RationalFunction.ZERO;
     }
 
-    Rational<MultivariatePolynomial<BigInteger>> r = raw;
+    return derivativesImpl(i, order, order)[order];
+  }
 
-    for (int j = 0; j < order; j++) {
-      r = derivativeImpl(r, i);
-      if (r == null) {
-        return RationalFunction.ZERO;
-      }
+  /**
+   * Returns the partial derivatives up to the specified order with respect to the given variable.
+   * This is more efficient than computing each order separately.
+   *
+   * @param variable the variable
+   * @param maxOrder the maximum order
+   * @return the array of the derivatives, whose {@code k}-th element is the {@code k}-th
+   *     derivative
+   * @throws IllegalArgumentException when {@code maxOrder} is negative
+   */
+  public RationalFunction[] derivatives(final Variable variable, final int maxOrder) {
+    if (maxOrder < 0) {
+      throw new IllegalArgumentException(String.format("Negative order given: %s", maxOrder));
     }
 
-    return new RationalFunction(variables, r);
-  }
+    final int i = variables.indexOf(variable);
+    if (i < 0) {
+      final RationalFunction[] result = new RationalFunction[maxOrder + 1];
+      Arrays.fill(result, RationalFunction.ZERO);
+      result[0] = this;
+      return result;
+    }
 
-  private static Rational<MultivariatePolynomial<BigInteger>> derivativeImpl(
-      final Rational<MultivariatePolynomial<BigInteger>> r, final int variable) {
-    final MultivariatePolynomial<BigInteger> p = r.numerator();
-    final MultivariatePolynomial<BigInteger> q = r.denominator();
+    final RationalFunction[] result = derivativesImpl(i, 1, maxOrder);
+    result[0] = this;
+    return result;
+  }
 
-    final MultivariatePolynomial<BigInteger> p1 = p.derivative(variable);
+  /**
+   * Computes the derivatives from {@code minOrder} to {@code maxOrder}.
+   *
+   * <p>With {@code f = p/q}, {@code g = gcd(q, q')}, {@code h = q/g} and {@code s = q'/g}, the
+   * {@code k}-th derivative is written as {@code f^(k) = N_k / (q h^k)} with the recurrence {@code
+   * N_0 = p} and {@code N_(k+1) = N_k' h - N_k (s + k h')}. Only polynomial arithmetic is needed
+   * except the cancellation at the end, which is performed for each order independently.
+   */
+  private RationalFunction[] derivativesImpl(
+      final int variable, final int minOrder, final int maxOrder) {
+    final MultivariatePolynomial<BigInteger> q = raw.denominator();
     final MultivariatePolynomial<BigInteger> q1 = q.derivative(variable);
 
-    if (p1.isZero()) {
-      if (q1.isZero()) {
-        // p' == 0, q' == 0.
-        return null;
-      } else {
-        // p' == 0, q' != 0.
-        return new Rational<>(r.ring, q1.multiply(p).negate(), q.copy().multiply(q));
-      }
+    final MultivariatePolynomial<BigInteger> h;
+    final MultivariatePolynomial<BigInteger> s;
+    if (q1.isZero()) {
+      h = q.createOne();
+      s = q.createZero();
     } else {
-      if (q1.isZero()) {
-        // p' != 0, q' == 0.
-        return new Rational<>(r.ring, p1, q);
-      } else {
-        // p' != 0, q' != 0.
-        final Rational<MultivariatePolynomial<BigInteger>> term1 = new Rational<>(r.ring, p1, q);
-        final Rational<MultivariatePolynomial<BigInteger>> term2 =
-            new Rational<>(r.ring, q1.multiply(p).negate(), q.copy().multiply(q));
-        return term1.add(term2);
+      final MultivariatePolynomial<BigInteger> g = VariableOrdering.gcd(q, q1);
+      h = MultivariateDivision.divideExact(q, g);
+      s = MultivariateDivision.divideExact(q1, g);
+    }
+    final MultivariatePolynomial<BigInteger> h1 = h.derivative(variable);
+
+    final List<MultivariatePolynomial<BigInteger>> numerators = new ArrayList<>(maxOrder + 1);
+    final List<MultivariatePolynomial<BigInteger>> denominators = new ArrayList<>(maxOrder + 1);
+    MultivariatePolynomial<BigInteger> num = raw.numerator();
+    MultivariatePolynomial<BigInteger> den = q;
+    numerators.add(num);
+    denominators.add(den);
+    for (int k = 0; k < maxOrder; k++) {
+      if (!num.isZero()) {
+        final MultivariatePolynomial<BigInteger> factor =
+            s.copy().add(h1.copy().multiply(BigInteger.valueOf(k)));
+        num = num.derivative(variable).multiply(h).subtract(num.copy().multiply(factor));
+        if (!h.isOne()) {
+          den = den.copy().multiply(h);
+        }
       }
+      numerators.add(num);
+      denominators.add(den);
     }
+
+    final RationalFunction[] result = new RationalFunction[maxOrder + 1];
+    final IntStream orders = IntStream.rangeClosed(minOrder, maxOrder);
+    (maxOrder - minOrder >= 1 ? orders.parallel() : orders)
+        .forEach(
+            k ->
+                result[k] =
+                    numerators.get(k).isZero()
+                        ? RationalFunction.ZERO
+                        : new RationalFunction(
+                            variables, numerators.get(k), denominators.get(k)));
+    return result;
   }
 }
@@ -0,0 +1,71 @@
+package com.github.tueda.donuts;
+
+import java.util.function.Function;
+
+/**
+ * A rewrite rule for terms. Immutable.
+ *
+ * <p>A term matching the pattern is replaced by the right-hand side evaluated at the captured
+ * exponents, multiplied by the rest of the term, i.e., the coefficient and the powers of the
+ * variables not in the pattern. For example, the rule {@code x^n * y^m -> f(n, m)} maps {@code 3 *
+ * x^2 * y * z} to {@code 3 * f(2, 1) * z}.
+ *
+ * @see TermRewriter
+ */
+public final class RewriteRule {
+  /** The pattern. */
+  private final TermPattern pattern;
+
+  /** The right-hand side as a function of the captured exponents. */
+  private final Function<int[], Polynomial> rhs;
+
+  private RewriteRule(final TermPattern pattern, final Function<int[], Polynomial> rhs) {
+    this.pattern = pattern;
+    this.rhs = rhs;
+  }
+
+  /**
+   * Returns the rule with the right-hand side given as a function of the captured exponents.
+   *
+   * @param pattern the pattern
+   * @param rhs the function from the exponents in the order of the pattern variables to the
+   *     replacement; it is invoked once for each distinct set of exponents in a rewriting, possibly
+   *     from several threads at once, so it must be free of side effects
+   * @return the rule
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static RewriteRule of(final TermPattern pattern, final Function<int[], Polynomial> rhs) {
+    return new RewriteRule(pattern, rhs);
+  }
+
+  /**
+   * Returns the rule with a fixed right-hand side.
+   *
+   * @param pattern the pattern
+   * @param rhs the replacement
+   * @return the rule
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static RewriteRule of(final TermPattern pattern, final Polynomial rhs) {
+    return new RewriteRule(pattern, n -> rhs);
+  }
+
+  /**
+   * Returns the pattern.
+   *
+   * @return the pattern
+   */
+  public TermPattern getPattern() {
+    return pattern;
+  }
+
+  /**
+   * Returns the replacement for the given captured exponents.
+   *
+   * @param exponents the exponents in the order of the pattern variables
+   * @return the replacement
+   */
+  public Polynomial getRhs(final int... exponents) {
+    return rhs.apply(exponents.clone());
+  }
+}
@@ -0,0 +1,211 @@
+package com.github.tueda.donuts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A truncated Laurent series expansion of a rational function around zero. Immutable.
+ *
+ * <p>The coefficients of {@code x^k} for {@code k} from {@link #getMinOrder()} to {@link
+ * #getMaxOrder()} are kept as rational functions of the other variables.
+ *
+ * @see RationalFunction#series(Variable, int)
+ */
+public final class Series {
+  /** The expansion variable. */
+  private final Variable variable;
+
+  /** The lowest order. */
+  private final int minOrder;
+
+  /** The highest order. */
+  private final int maxOrder;
+
+  /** The coefficients from the lowest order to the highest order. */
+  private final RationalFunction[] coefficients;
+
+  private Series(
+      final Variable variable,
+      final int minOrder,
+      final int maxOrder,
+      final RationalFunction[] coefficients) {
+    this.variable = variable;
+    this.minOrder = minOrder;
+    this.maxOrder = maxOrder;
+    this.coefficients = coefficients;
+  }
+
+  /**
+   * Returns the series expansion of the given rational function.
+   *
+   * <p>With {@code f = x^(u-v) P(x) / Q(x)}, {@code P(0) != 0} and {@code Q(0) != 0}, the
+   * coefficients {@code c_k} of {@code P/Q} are obtained by the power series division {@code c_k =
+   * (p_k - sum_(j=1..k) q_j c_(k-j)) / q_0}. The division by {@code q_0} is deferred as {@code c_k
+   * = a_k / q_0^(k+1)}, so that the recurrence for {@code a_k} needs polynomial arithmetic only and
+   * only the coefficients up to the required order are touched.
+   *
+   * @param rat the rational function
+   * @param variable the expansion variable
+   * @param order the maximum order
+   * @return the series expansion
+   */
+  /* default */ static Series of(
+      final RationalFunction rat, final Variable variable, final int order) {
+    if (rat.isZero()) {
+      return new Series(variable, order + 1, order, new RationalFunction[0]);
+    }
+
+    final Polynomial num = rat.getNumerator();
+    final Polynomial den = rat.getDenominator();
+    final int u = lowestDegree(num, variable);
+    final int v = lowestDegree(den, variable);
+    final int lowest = u - v;
+    final int n = order - lowest + 1;
+    if (n <= 0) {
+      return new Series(variable, lowest, order, new RationalFunction[0]);
+    }
+
+    final Polynomial q0 = den.coefficientOf(variable, v);
+    final List<Polynomial> q = new ArrayList<>(n);
+    final List<Polynomial> q0Powers = new ArrayList<>(n + 1);
+    q0Powers.add(Polynomial.ONE);
+    for (int k = 0; k < n; k++) {
+      q.add(den.coefficientOf(variable, v + k));
+      q0Powers.add(q0Powers.get(k).multiply(q0));
+    }
+
+    // a_k = p_k q_0^k - sum_(j=1..k) q_j a_(k-j) q_0^(j-1).
+    final List<Polynomial> a = new ArrayList<>(n);
+    for (int k = 0; k < n; k++) {
+      final List<Polynomial> terms = new ArrayList<>(k + 1);
+      terms.add(num.coefficientOf(variable, u + k).multiply(q0Powers.get(k)));
+      for (int j = 1; j <= k; j++) {
+        if (!q.get(j).isZero() && !a.get(k - j).isZero()) {
+          terms.add(q.get(j).multiply(a.get(k - j)).multiply(q0Powers.get(j - 1)).negate());
+        }
+      }
+      a.add(Polynomial.sumOf(terms));
+    }
+
+    final RationalFunction[] newCoefficients = new RationalFunction[n];
+    final IntStream indices = IntStream.range(0, n);
+    (n >= 2 ? indices.parallel() : indices)
+        .forEach(k -> newCoefficients[k] = new RationalFunction(a.get(k), q0Powers.get(k + 1)));
+
+    return new Series(variable, lowest, order, newCoefficients);
+  }
+
+  private static int lowestDegree(final Polynomial poly, final Variable variable) {
+    int k = 0;
+    while (poly.coefficientOf(variable, k).isZero()) {
+      k++;
+    }
+    return k;
+  }
+
+  /**
+   * Returns the expansion variable.
+   *
+   * @return the expansion variable
+   */
+  public Variable getVariable() {
+    return variable;
+  }
+
+  /**
+   * Returns the lowest order of the series, i.e., the exponent of the leading term. It is greater
+   * than the maximum order if all the coefficients are zero up to the maximum order.
+   *
+   * @return the lowest order
+   */
+  public int getMinOrder() {
+    return minOrder;
+  }
+
+  /**
+   * Returns the maximum order up to which the series is expanded.
+   *
+   * @return the maximum order
+   */
+  public int getMaxOrder() {
+    return maxOrder;
+  }
+
+  /**
+   * Returns the coefficient of the given power of the expansion variable.
+   *
+   * @param order the exponent
+   * @return the coefficient
+   * @throws IllegalArgumentException when {@code order} exceeds the maximum order
+   */
+  public RationalFunction getCoefficient(final int order) {
+    if (order > maxOrder) {
+      throw new IllegalArgumentException(
+          String.format("order %s beyond the expansion %s", order, maxOrder));
+    }
+    if (order < minOrder) {
+      return RationalFunction.ZERO;
+    }
+    return coefficients[order - minOrder];
+  }
+
+  /**
+   * Returns the coefficients from the lowest order to the maximum order.
+   *
+   * @return the coefficients
+   */
+  public RationalFunction[] getCoefficients() {
+    return Arrays.copyOf(coefficients, coefficients.length);
+  }
+
+  /**
+   * Returns the truncated series as a rational function.
+   *
+   * @return the sum of the terms up to the maximum order
+   */
+  public RationalFunction toRationalFunction() {
+    final RationalFunction x = new RationalFunction(new Polynomial(variable.getName()));
+    final RationalFunction[] terms = new RationalFunction[coefficients.length];
+    for (int i = 0; i < coefficients.length; i++) {
+      terms[i] = coefficients[i].multiply(x.pow(minOrder + i));
+    }
+    return RationalFunction.sumOf(terms);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < coefficients.length; i++) {
+      if (coefficients[i].isZero()) {
+        continue;
+      }
+      if (sb.length() > 0) {
+        sb.append('+');
+      }
+      sb.append('(').append(coefficients[i]).append(')');
+      final int k = minOrder + i;
+      if (k != 0) {
+        sb.append('*');
+        appendPower(sb, k);
+      }
+    }
+    if (sb.length() > 0) {
+      sb.append('+');
+    }
+    sb.append("O(");
+    appendPower(sb, maxOrder + 1);
+    sb.append(')');
+    return sb.toString();
+  }
+
+  private void appendPower(final StringBuilder sb, final int exponent) {
+    sb.append(variable);
+    if (exponent < 0) {
+      sb.append("^(").append(exponent).append(')');
+    } else if (exponent != 1) {
+      sb.append('^').append(exponent);
+    }
+  }
+}
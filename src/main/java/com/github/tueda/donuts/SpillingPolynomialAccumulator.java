@@ -0,0 +1,556 @@
+package com.github.tueda.donuts;
+
+import cc.redberry.rings.bigint.BigInteger;
+import cc.redberry.rings.poly.multivar.Monomial;
+import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import com.github.tueda.donuts.util.IntArrayComparator;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * An accumulator summing polynomials whose total size may exceed the available memory.
+ *
+ * <p>The added terms are buffered in memory, where equal monomials are combined immediately. When
+ * the number of the buffered terms exceeds the budget, the buffer is sorted and written to a
+ * temporary file as a sorted run in a compact binary format. The final sum is obtained by a k-way
+ * merge of the runs and the buffer, cancelling equal monomials on the fly, either into a {@link
+ * Polynomial} or streamed term by term to a consumer, in which case only the merge frontier is kept
+ * in memory.
+ *
+ * <p>To bound the number of the open files, the runs are compacted level by level: a spilled run
+ * is at level 0, and whenever the newest runs include a fixed number of runs at the same level,
+ * they are merged into one run at the next level. Thus each term is rewritten only a logarithmic
+ * number of times.
+ *
+ * <p>The monomials are sorted in the lexicographic order of their exponents over the sorted
+ * variables. As the set of the variables only grows during the accumulation, this order is
+ * preserved when the runs written with fewer variables are read in the final variables.
+ *
+ * <p>This class is not thread-safe. The temporary files are deleted by {@link #close()}.
+ */
+public final class SpillingPolynomialAccumulator implements Closeable {
+  /** The default maximum number of the buffered terms. */
+  public static final int DEFAULT_MAX_BUFFERED_TERMS = 1 << 20;
+
+  /** The maximum number of the runs merged at once. */
+  private static final int MAX_MERGE_WIDTH = 64;
+
+  /** The order of the exponents. */
+  private static final Comparator<int[]> ORDER = new IntArrayComparator();
+
+  /** The maximum number of the buffered terms. */
+  private final int maxBufferedTerms;
+
+  /** The directory for the temporary files, or {@code null} for the default one. */
+  private final Path directory;
+
+  /** The variables of the accumulated terms so far. */
+  private VariableSet variables = VariableSet.EMPTY;
+
+  /** The buffered terms, in {@link #variables}. */
+  private MultivariatePolynomial<BigInteger> buffer = Polynomial.RAW_ZERO.createZero();
+
+  /** The spilled runs, from the oldest to the newest. */
+  private final List<Path> runs = new ArrayList<>();
+
+  /** The compaction levels of {@link #runs}, which never increase from the oldest run. */
+  private final List<Integer> runLevels = new ArrayList<>();
+
+  /** The merged runs no longer used, whose deletion is pending. */
+  private final List<Path> staleRuns = new ArrayList<>();
+
+  /** {@code true} if this accumulator has been closed. */
+  private boolean closed;
+
+  /** Constructs an accumulator with the default budget, spilling into the default directory. */
+  public SpillingPolynomialAccumulator() {
+    this(DEFAULT_MAX_BUFFERED_TERMS, null);
+  }
+
+  /**
+   * Constructs an accumulator with the given budget, spilling into the default directory.
+   *
+   * @param maxBufferedTerms the maximum number of the terms kept in memory
+   * @throws IllegalArgumentException when {@code maxBufferedTerms} is not positive
+   */
+  public SpillingPolynomialAccumulator(final int maxBufferedTerms) {
+    this(maxBufferedTerms, null);
+  }
+
+  /**
+   * Constructs an accumulator with the given budget, spilling into the given directory.
+   *
+   * @param maxBufferedTerms the maximum number of the terms kept in memory
+   * @param directory the directory for the temporary files, or {@code null} for the default one
+   * @throws IllegalArgumentException when {@code maxBufferedTerms} is not positive
+   */
+  public SpillingPolynomialAccumulator(final int maxBufferedTerms, final Path directory) {
+    if (maxBufferedTerms <= 0) {
+      throw new IllegalArgumentException(
+          String.format("Non-positive budget given: %s", maxBufferedTerms));
+    }
+    this.maxBufferedTerms = maxBufferedTerms;
+    this.directory = directory;
+  }
+
+  /**
+   * Adds the given polynomial to the sum.
+   *
+   * @param poly the polynomial to be added
+   * @throws IllegalStateException when this accumulator has been closed
+   * @throws UncheckedIOException when an I/O error occurs in spilling
+   */
+  public void add(final Polynomial poly) {
+    checkNotClosed();
+    if (poly.isZero()) {
+      return;
+    }
+    final VariableSet newVariables = variables.union(poly.getVariables());
+    if (!newVariables.equals(variables)) {
+      buffer =
+          Polynomial.createFromRaw(variables, buffer)
+              .translate(newVariables)
+              .getRawPolynomialWithoutCopy();
+      variables = newVariables;
+    }
+    buffer.add(poly.translate(variables).getRawPolynomialWithoutCopy());
+    if (buffer.size() > maxBufferedTerms) {
+      spill();
+    }
+  }
+
+  /**
+   * Subtracts the given polynomial from the sum.
+   *
+   * @param poly the polynomial to be subtracted
+   * @throws IllegalStateException when this accumulator has been closed
+   * @throws UncheckedIOException when an I/O error occurs in spilling
+   */
+  public void subtract(final Polynomial poly) {
+    add(poly.negate());
+  }
+
+  /**
+   * Returns the variables of the accumulated terms so far.
+   *
+   * @return the variables
+   */
+  public VariableSet getVariables() {
+    return variables;
+  }
+
+  /**
+   * Returns the number of the sorted runs currently on disk.
+   *
+   * @return the number of the runs
+   */
+  public int getRunCount() {
+    return runs.size();
+  }
+
+  /**
+   * Returns the sum of the accumulated polynomials. The accumulator can be used further.
+   *
+   * @return the sum
+   * @throws IllegalStateException when this accumulator has been closed
+   * @throws UncheckedIOException when an I/O error occurs in merging
+   */
+  public Polynomial toPolynomial() {
+    checkNotClosed();
+    if (runs.isEmpty()) {
+      return Polynomial.createFromRaw(variables, buffer.copy());
+    }
+    final MultivariatePolynomial<BigInteger> result = buffer.createZero();
+    forEachTerm((c, e) -> result.add(new Monomial<>(e, c)));
+    return Polynomial.createFromRaw(variables, result);
+  }
+
+  /**
+   * Performs the given action for each term of the sum, in the lexicographic order of the
+   * exponents. Only the nonzero terms are passed. The accumulator can be used further.
+   *
+   * @param action the action taking the coefficient and the exponents of a term, in the order of
+   *     {@link #getVariables()}
+   * @throws IllegalStateException when this accumulator has been closed
+   * @throws UncheckedIOException when an I/O error occurs in merging
+   */
+  public void forEachTerm(final BiConsumer<BigInteger, int[]> action) {
+    checkNotClosed();
+    try (Sources sources = new Sources(runs.size() + 1)) {
+      for (final Path run : runs) {
+        sources.add(new RunReader(run, variables));
+      }
+      sources.add(new BufferReader(buffer));
+      merge(sources.list, action::accept);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Deletes the temporary files and discards the accumulated terms.
+   *
+   * @throws UncheckedIOException when an I/O error occurs in deleting the files
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    buffer = Polynomial.RAW_ZERO.createZero();
+    staleRuns.addAll(runs);
+    runs.clear();
+    runLevels.clear();
+    try {
+      deleteStaleRuns();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void checkNotClosed() {
+    if (closed) {
+      throw new IllegalStateException("accumulator closed");
+    }
+  }
+
+  /**
+   * Writes the buffer to a new run. On failure, the buffer and the runs are left unchanged, so the
+   * accumulator remains consistent.
+   */
+  private void spill() {
+    try {
+      final List<TermSource> sources = new ArrayList<>(1);
+      sources.add(new BufferReader(buffer));
+      final Path run = writeRun(sources);
+      runs.add(run);
+      runLevels.add(0);
+      buffer = buffer.createZero();
+      compact();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Repeatedly merges the newest runs at the same level into one run at the next level. */
+  private void compact() throws IOException {
+    for (; ; ) {
+      final int n = runs.size();
+      if (n < MAX_MERGE_WIDTH) {
+        return;
+      }
+      final int level = runLevels.get(n - 1);
+      if (runLevels.get(n - MAX_MERGE_WIDTH) != level) {
+        return;
+      }
+      final List<Path> oldRuns = runs.subList(n - MAX_MERGE_WIDTH, n);
+      try (Sources sources = new Sources(MAX_MERGE_WIDTH)) {
+        for (final Path oldRun : oldRuns) {
+          sources.add(new RunReader(oldRun, variables));
+        }
+        final Path run = writeRun(sources.list);
+        // The old runs stay tracked until they are deleted.
+        staleRuns.addAll(oldRuns);
+        oldRuns.clear();
+        runLevels.subList(n - MAX_MERGE_WIDTH, n).clear();
+        runs.add(run);
+        runLevels.add(level + 1);
+      }
+      deleteStaleRuns();
+    }
+  }
+
+  /**
+   * Deletes the stale runs. The runs that fail to be deleted are kept for a later attempt, and the
+   * first failure is thrown with the others suppressed.
+   */
+  private void deleteStaleRuns() throws IOException {
+    IOException error = null;
+    for (final Iterator<Path> it = staleRuns.iterator(); it.hasNext(); ) {
+      try {
+        Files.deleteIfExists(it.next());
+        it.remove();
+      } catch (IOException e) {
+        if (error == null) {
+          error = e;
+        } else {
+          error.addSuppressed(e);
+        }
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Writes the merge of the given sources to a new run. The file is deleted if the writing fails.
+   */
+  private Path writeRun(final List<TermSource> sources) throws IOException {
+    final Path run = createRun();
+    try {
+      try (RunWriter writer = new RunWriter(run, variables)) {
+        merge(sources, writer::write);
+        writer.finish();
+      }
+    } catch (IOException | RuntimeException e) {
+      try {
+        Files.deleteIfExists(run);
+      } catch (IOException e2) {
+        e.addSuppressed(e2);
+      }
+      throw e;
+    }
+    return run;
+  }
+
+  private Path createRun() throws IOException {
+    return directory == null
+        ? Files.createTempFile("donuts-", ".run")
+        : Files.createTempFile(directory, "donuts-", ".run");
+  }
+
+  /** Performs the k-way merge of the given sources, cancelling equal monomials. */
+  private static void merge(final List<TermSource> sources, final TermAction action)
+      throws IOException {
+    final PriorityQueue<TermSource> queue =
+        new PriorityQueue<>(
+            Math.max(sources.size(), 1), (a, b) -> ORDER.compare(a.exponents, b.exponents));
+    for (final TermSource source : sources) {
+      if (source.next()) {
+        queue.add(source);
+      }
+    }
+    while (!queue.isEmpty()) {
+      final TermSource top = queue.poll();
+      final int[] exponents = top.exponents.clone();
+      BigInteger coefficient = top.coefficient;
+      if (top.next()) {
+        queue.add(top);
+      }
+      while (!queue.isEmpty() && Arrays.equals(queue.peek().exponents, exponents)) {
+        final TermSource other = queue.poll();
+        coefficient = coefficient.add(other.coefficient);
+        if (other.next()) {
+          queue.add(other);
+        }
+      }
+      if (!coefficient.isZero()) {
+        action.accept(coefficient, exponents);
+      }
+    }
+  }
+
+  /** An action on a term, which may throw {@link IOException}. */
+  @FunctionalInterface
+  private interface TermAction {
+    void accept(BigInteger coefficient, int[] exponents) throws IOException;
+  }
+
+  /** A sorted sequence of terms. */
+  private abstract static class TermSource {
+    /** The exponents of the current term, in the final variables. */
+    protected int[] exponents;
+
+    /** The coefficient of the current term. */
+    protected BigInteger coefficient;
+
+    /** Advances to the next term, returning {@code false} if exhausted. */
+    /* default */ abstract boolean next() throws IOException;
+
+    /** Releases the resources. */
+    /* default */ void close() throws IOException {
+      // Nothing to do by default.
+    }
+  }
+
+  /**
+   * The sources of a merge, closed together. All the sources are closed even if some fail, and the
+   * later failures are suppressed by the first one.
+   */
+  private static final class Sources implements Closeable {
+    /** The sources. */
+    /* default */ final List<TermSource> list;
+
+    /* default */ Sources(final int capacity) {
+      list = new ArrayList<>(capacity);
+    }
+
+    /* default */ void add(final TermSource source) {
+      list.add(source);
+    }
+
+    @Override
+    public void close() throws IOException {
+      IOException error = null;
+      for (final TermSource source : list) {
+        try {
+          source.close();
+        } catch (IOException e) {
+          if (error == null) {
+            error = e;
+          } else {
+            error.addSuppressed(e);
+          }
+        }
+      }
+      if (error != null) {
+        throw error;
+      }
+    }
+  }
+
+  /** The terms of an in-memory polynomial, sorted. */
+  private static final class BufferReader extends TermSource {
+    /** The sorted terms. */
+    private final List<Monomial<BigInteger>> terms;
+
+    /** The position of the next term. */
+    private int position;
+
+    /* default */ BufferReader(final MultivariatePolynomial<BigInteger> poly) {
+      super();
+      terms = new ArrayList<>(poly.size());
+      for (final Monomial<BigInteger> term : poly) {
+        terms.add(term);
+      }
+      terms.sort((a, b) -> ORDER.compare(a.exponents, b.exponents));
+    }
+
+    @Override
+    /* default */ boolean next() {
+      if (position >= terms.size()) {
+        return false;
+      }
+      final Monomial<BigInteger> term = terms.get(position++);
+      exponents = term.exponents;
+      coefficient = term.coefficient;
+      return true;
+    }
+  }
+
+  /**
+   * Writer of a run file.
+   *
+   * <p>The format is: the number of the variables and their names, followed by the terms, each
+   * being a flag byte (1 for a term, 0 for the end), the exponents as variable-length unsigned
+   * integers, and the two's-complement bytes of the coefficient prefixed by their length. The end
+   * marker is written only by {@link #finish()}, so an incomplete run cannot be read as complete.
+   */
+  private static final class RunWriter implements Closeable {
+    /** The output stream. */
+    private final DataOutputStream out;
+
+    /* default */ RunWriter(final Path path, final VariableSet variables) throws IOException {
+      out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+      try {
+        out.writeInt(variables.size());
+        for (final String name : variables.getRawTable()) {
+          out.writeUTF(name);
+        }
+      } catch (IOException e) {
+        out.close();
+        throw e;
+      }
+    }
+
+    /* default */ void write(final BigInteger coefficient, final int[] exponents)
+        throws IOException {
+      out.writeByte(1);
+      for (final int e : exponents) {
+        writeVarInt(e);
+      }
+      final byte[] bytes = coefficient.toByteArray();
+      writeVarInt(bytes.length);
+      out.write(bytes);
+    }
+
+    private void writeVarInt(final int value) throws IOException {
+      int v = value;
+      while ((v & ~0x7F) != 0) {
+        out.writeByte((v & 0x7F) | 0x80);
+        v >>>= 7;
+      }
+      out.writeByte(v);
+    }
+
+    /* default */ void finish() throws IOException {
+      out.writeByte(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  /** Reader of a run file, translating the exponents to the final variables. */
+  private static final class RunReader extends TermSource {
+    /** The input stream. */
+    private final DataInputStream in;
+
+    /** The positions of the variables of the run in the final variables. */
+    private final int[] mapping;
+
+    /* default */ RunReader(final Path path, final VariableSet variables) throws IOException {
+      super();
+      in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+      try {
+        mapping = new int[in.readInt()];
+        for (int i = 0; i < mapping.length; i++) {
+          mapping[i] = variables.indexOf(in.readUTF());
+          assert mapping[i] >= 0;
+        }
+      } catch (IOException e) {
+        in.close();
+        throw e;
+      }
+      exponents = new int[variables.size()];
+    }
+
+    @Override
+    /* default */ boolean next() throws IOException {
+      if (in.readByte() == 0) {
+        return false;
+      }
+      for (final int i : mapping) {
+        exponents[i] = readVarInt();
+      }
+      final byte[] bytes = new byte[readVarInt()];
+      in.readFully(bytes);
+      coefficient = new BigInteger(bytes);
+      return true;
+    }
+
+    private int readVarInt() throws IOException {
+      int value = 0;
+      for (int shift = 0; ; shift += 7) {
+        final int b = in.readUnsignedByte();
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    }
+
+    @Override
+    /* default */ void close() throws IOException {
+      in.close();
+    }
+  }
+}
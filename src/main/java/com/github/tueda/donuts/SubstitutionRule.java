@@ -0,0 +1,288 @@
+package com.github.tueda.donuts;
+
+import cc.redberry.rings.bigint.BigInteger;
+import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import com.github.tueda.donuts.util.WeightedCache;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A substitution rule compiled for repeated use. Thread-safe.
+ *
+ * <p>The powers of the right-hand side computed in a substitution are kept in a bounded concurrent
+ * cache shared by all the subsequent substitutions, so applying the same rule to many inputs
+ * computes each power only once. The powers are cached in the raw form already translated to the
+ * variables of the inputs, so a hit costs only a copy for inputs with the same variables.
+ *
+ * @see Polynomial#substitute(Polynomial, Polynomial)
+ * @see RationalFunction#substitute(Polynomial, RationalFunction)
+ */
+public final class SubstitutionRule {
+  /** The default maximum weight of the cache of the powers. */
+  public static final long DEFAULT_MAX_CACHE_WEIGHT = 1L << 20;
+
+  /** The left-hand side, in the variables of the rule. */
+  private final Polynomial lhs;
+
+  /** The numerator of the right-hand side, in the variables of the rule. */
+  private final Polynomial rhsNumerator;
+
+  /** The denominator of the right-hand side, in the variables of the rule. */
+  private final Polynomial rhsDenominator;
+
+  /** The minimal variables of the left-hand side. */
+  private final VariableSet lhsMinimalVariables;
+
+  /** The cache of the powers of the numerator of the right-hand side. */
+  private final WeightedCache<PowerKey, MultivariatePolynomial<BigInteger>> numeratorPowers;
+
+  /** The cache of the powers of the denominator of the right-hand side. */
+  private final WeightedCache<PowerKey, MultivariatePolynomial<BigInteger>> denominatorPowers;
+
+  private SubstitutionRule(
+      final Polynomial lhs, final RationalFunction rhs, final long maxCacheWeight) {
+    SubstitutionUtils.checkLhs(lhs);
+    final VariableSet ruleVariables = lhs.getVariables().union(rhs.getVariables());
+    this.lhs = lhs.translate(ruleVariables);
+    this.rhsNumerator = rhs.getNumerator().translate(ruleVariables);
+    this.rhsDenominator = rhs.getDenominator().translate(ruleVariables);
+    this.lhsMinimalVariables = lhs.getMinimalVariables();
+    this.numeratorPowers = new WeightedCache<>(maxCacheWeight);
+    this.denominatorPowers = new WeightedCache<>(maxCacheWeight);
+  }
+
+  /**
+   * Returns the compiled rule of the given substitution. The left-hand side must be a non-constant
+   * monic monomial.
+   *
+   * @param lhs the left-hand side
+   * @param rhs the right-hand side
+   * @return the rule
+   * @throws IllegalArgumentException when {@code lhs} is invalid
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static SubstitutionRule of(final Polynomial lhs, final Polynomial rhs) {
+    return new SubstitutionRule(lhs, new RationalFunction(rhs), DEFAULT_MAX_CACHE_WEIGHT);
+  }
+
+  /**
+   * Returns the compiled rule of the given substitution. The left-hand side must be a non-constant
+   * monic monomial.
+   *
+   * @param lhs the left-hand side
+   * @param rhs the right-hand side
+   * @return the rule
+   * @throws IllegalArgumentException when {@code lhs} is invalid
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static SubstitutionRule of(final Polynomial lhs, final RationalFunction rhs) {
+    return new SubstitutionRule(lhs, rhs, DEFAULT_MAX_CACHE_WEIGHT);
+  }
+
+  /**
+   * Returns the compiled rule of the given substitution with the given cache size. The left-hand
+   * side must be a non-constant monic monomial.
+   *
+   * @param lhs the left-hand side
+   * @param rhs the right-hand side
+   * @param maxCacheWeight the maximum total number of terms of the cached powers, for each of the
+   *     numerator and denominator of the right-hand side
+   * @return the rule
+   * @throws IllegalArgumentException when {@code lhs} is invalid or {@code maxCacheWeight} is not
+   *     positive
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static SubstitutionRule of(
+      final Polynomial lhs, final RationalFunction rhs, final long maxCacheWeight) {
+    return new SubstitutionRule(lhs, rhs, maxCacheWeight);
+  }
+
+  /**
+   * Returns the left-hand side.
+   *
+   * @return the left-hand side
+   */
+  public Polynomial getLhs() {
+    return lhs;
+  }
+
+  /**
+   * Returns the right-hand side.
+   *
+   * @return the right-hand side
+   */
+  public RationalFunction getRhs() {
+    return new RationalFunction(rhsNumerator, rhsDenominator);
+  }
+
+  /**
+   * Returns {@code true} if the right-hand side is a polynomial.
+   *
+   * @return {@code true} if the rule can be applied to polynomials giving polynomials
+   */
+  public boolean isPolynomial() {
+    return rhsDenominator.isOne();
+  }
+
+  /**
+   * Returns the result of this substitution.
+   *
+   * @param poly the input polynomial
+   * @return the resultant polynomial
+   * @throws IllegalStateException when the right-hand side is not a polynomial
+   */
+  public Polynomial applyTo(final Polynomial poly) {
+    if (!isPolynomial()) {
+      throw new IllegalStateException("not a polynomial rule");
+    }
+
+    if (!poly.getMinimalVariables().intersects(lhsMinimalVariables)) {
+      return poly;
+    }
+
+    final VariableSet newVariables = poly.getVariables().union(lhs.getVariables());
+    final MultivariatePolynomial<BigInteger> newRawPoly =
+        SubstitutionUtils.substitute(
+            poly.translate(newVariables).getRawPolynomialWithoutCopy(),
+            lhs.translate(newVariables).getRawPolynomialWithoutCopy().first(),
+            new CachedPowers(rhsNumerator, numeratorPowers, newVariables));
+    return Polynomial.createFromRaw(newVariables, newRawPoly);
+  }
+
+  /**
+   * Returns the result of this substitution.
+   *
+   * @param rat the input rational function
+   * @return the resultant rational function
+   * @throws ArithmeticException when division by zero
+   */
+  public RationalFunction applyTo(final RationalFunction rat) {
+    if (!rat.getMinimalVariables().intersects(lhsMinimalVariables)) {
+      return rat;
+    }
+
+    final VariableSet newVariables = rat.getVariables().union(lhs.getVariables());
+    return RationalFunction.createFromRaw(
+        newVariables,
+        SubstitutionUtils.substitute(
+            rat.translate(newVariables).getRawRationalWithoutCopy(),
+            lhs.translate(newVariables).getRawPolynomialWithoutCopy().first(),
+            new CachedPowers(rhsNumerator, numeratorPowers, newVariables),
+            new CachedPowers(rhsDenominator, denominatorPowers, newVariables)));
+  }
+
+  /**
+   * Returns the results of this substitution for the given polynomials, processed in parallel.
+   *
+   * @param polynomials the input polynomials
+   * @return the resultant polynomials in the same order as the inputs
+   * @throws IllegalStateException when the right-hand side is not a polynomial
+   */
+  public List<Polynomial> applyToAllPolynomials(final Collection<Polynomial> polynomials) {
+    if (!isPolynomial()) {
+      throw new IllegalStateException("not a polynomial rule");
+    }
+    final Stream<Polynomial> stream = polynomials.stream();
+    return (polynomials.size() >= 2 ? stream.parallel() : stream)
+        .map(this::applyTo)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Returns the results of this substitution for the given rational functions, processed in
+   * parallel.
+   *
+   * @param rationalFunctions the input rational functions
+   * @return the resultant rational functions in the same order as the inputs
+   * @throws ArithmeticException when division by zero
+   */
+  public List<RationalFunction> applyToAll(final Collection<RationalFunction> rationalFunctions) {
+    final Stream<RationalFunction> stream = rationalFunctions.stream();
+    return (rationalFunctions.size() >= 2 ? stream.parallel() : stream)
+        .map(this::applyTo)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public String toString() {
+    return lhs + " -> " + getRhs();
+  }
+
+  /** A key of a cached power: the variables of the result and the exponent. Immutable. */
+  private static final class PowerKey {
+    /** The variables of the result. */
+    private final VariableSet variables;
+
+    /** The exponent. */
+    private final int exponent;
+
+    /* default */ PowerKey(final VariableSet variables, final int exponent) {
+      this.variables = variables;
+      this.exponent = exponent;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof PowerKey)) {
+        return false;
+      }
+      final PowerKey aKey = (PowerKey) other;
+      return exponent == aKey.exponent && variables.equals(aKey.variables);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * variables.hashCode() + exponent;
+    }
+  }
+
+  /** Powers of a polynomial from a shared cache, in a variable set. */
+  private static final class CachedPowers implements SubstitutionUtils.Powers {
+    /** The base, in {@link #variables}. */
+    private final Polynomial base;
+
+    /** The shared cache. */
+    private final WeightedCache<PowerKey, MultivariatePolynomial<BigInteger>> cache;
+
+    /** The variable set of the results. */
+    private final VariableSet variables;
+
+    /* default */ CachedPowers(
+        final Polynomial base,
+        final WeightedCache<PowerKey, MultivariatePolynomial<BigInteger>> cache,
+        final VariableSet variables) {
+      this.base = base.translate(variables);
+      this.cache = cache;
+      this.variables = variables;
+    }
+
+    @Override
+    public MultivariatePolynomial<BigInteger> pow(final int exponent) {
+      if (exponent == 0) {
+        return base.getRawPolynomialWithoutCopy().createOne();
+      }
+      if (exponent == 1) {
+        return base.getRawPolynomial();
+      }
+      final PowerKey key = new PowerKey(variables, exponent);
+      MultivariatePolynomial<BigInteger> result = cache.get(key);
+      if (result == null) {
+        final long start = System.nanoTime();
+        final MultivariatePolynomial<BigInteger> previous =
+            cache.get(new PowerKey(variables, exponent - 1));
+        result =
+            previous != null
+                ? previous.copy().multiply(base.getRawPolynomialWithoutCopy())
+                : base.pow(exponent).getRawPolynomial();
+        cache.put(key, result, result.size(), System.nanoTime() - start);
+      }
+      // The cached object must not be modified by the caller.
+      return result.copy();
+    }
+  }
+}
@@ -2,12 +2,17 @@ package com.github.tueda.donuts;
 
 import cc.redberry.rings.Rational;
 import cc.redberry.rings.bigint.BigInteger;
-import cc.redberry.rings.poly.MultivariateRing;
 import cc.redberry.rings.poly.PolynomialMethods;
 import cc.redberry.rings.poly.multivar.DegreeVector;
 import cc.redberry.rings.poly.multivar.Monomial;
 import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
-import com.github.tueda.donuts.util.IndexToObjectMap;
+import com.github.tueda.donuts.util.IntArrayComparator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import lombok.experimental.UtilityClass;
 
 /** This class consists of static utility methods for substitutions. */
@@ -38,9 +43,32 @@ public class SubstitutionUtils {
       final MultivariatePolynomial<BigInteger> poly,
       final Monomial<BigInteger> lhs,
       final MultivariatePolynomial<BigInteger> rhs) {
+    return substitute(poly, lhs, new PolynomialPowers(rhs));
+  }
+
+  /**
+   * Returns the result of the given substitution with the powers of the RHS.
+   *
+   * @param poly the input polynomial
+   * @param lhs the left-hand side
+   * @param powers the powers of the right-hand side
+   * @return the resultant polynomial
+   */
+  /* default */ static MultivariatePolynomial<BigInteger> substitute(
+      final MultivariatePolynomial<BigInteger> poly,
+      final Monomial<BigInteger> lhs,
+      final Powers powers) {
+    return ParallelTermKernels.applyTerms(
+        poly, terms -> substituteTerms(poly, terms, lhs, powers));
+  }
+
+  private static MultivariatePolynomial<BigInteger> substituteTerms(
+      final MultivariatePolynomial<BigInteger> poly,
+      final Iterable<Monomial<BigInteger>> terms,
+      final Monomial<BigInteger> lhs,
+      final Powers powers) {
     final MultivariatePolynomial<BigInteger> result = poly.createZero();
-    final PolynomialPowers powers = new PolynomialPowers(rhs);
-    for (final Monomial<BigInteger> term : poly) {
+    for (final Monomial<BigInteger> term : terms) {
       int n = 0;
       DegreeVector dv = term;
       while (dv.dvDivisibleBy(lhs)) {
@@ -59,6 +87,10 @@ public class SubstitutionUtils {
   /**
    * Returns the result of the given substitution.
    *
+   * <p>The terms are grouped by the power {@code n} of the LHS, and the result is combined over
+   * the common denominator {@code den(rhs)^maxN} with polynomial arithmetic. The cancellation is
+   * performed only once at the end.
+   *
    * @param poly the input polynomial
    * @param lhs the left-hand side
    * @param rhs the right-hand side
@@ -68,13 +100,268 @@ public class SubstitutionUtils {
       final MultivariatePolynomial<BigInteger> poly,
       final Monomial<BigInteger> lhs,
       final Rational<MultivariatePolynomial<BigInteger>> rhs) {
+    return substitute(
+        poly, lhs, new PolynomialPowers(rhs.numerator()), new PolynomialPowers(rhs.denominator()));
+  }
+
+  /**
+   * Returns the result of the given substitution with the powers of the RHS numerator and
+   * denominator.
+   *
+   * @param poly the input polynomial
+   * @param lhs the left-hand side
+   * @param numPowers the powers of the numerator of the right-hand side
+   * @param denPowers the powers of the denominator of the right-hand side
+   * @return the resultant polynomial
+   */
+  /* default */ static Rational<MultivariatePolynomial<BigInteger>> substitute(
+      final MultivariatePolynomial<BigInteger> poly,
+      final Monomial<BigInteger> lhs,
+      final Powers numPowers,
+      final Powers denPowers) {
+    final List<MultivariatePolynomial<BigInteger>> groups = groupByPower(poly, lhs);
+    final int degree = groups.size() - 1;
+    return new Rational<>(
+        RationalFunction.getRings(poly.nVariables),
+        combine(groups, degree, numPowers, denPowers),
+        denPowers.pow(degree));
+  }
+
+  /**
+   * Returns the result of the given substitution into a rational function.
+   *
+   * <p>Both the numerator and denominator are combined over powers of {@code den(rhs)} with
+   * polynomial arithmetic, and the cancellation is performed only once at the end.
+   *
+   * @param rat the input rational function
+   * @param lhs the left-hand side
+   * @param rhs the right-hand side
+   * @return the resultant rational function
+   * @throws ArithmeticException when division by zero
+   */
+  public static Rational<MultivariatePolynomial<BigInteger>> substitute(
+      final Rational<MultivariatePolynomial<BigInteger>> rat,
+      final Monomial<BigInteger> lhs,
+      final Rational<MultivariatePolynomial<BigInteger>> rhs) {
+    return substitute(
+        rat, lhs, new PolynomialPowers(rhs.numerator()), new PolynomialPowers(rhs.denominator()));
+  }
+
+  /**
+   * Returns the result of the given substitution into a rational function with the powers of the
+   * RHS numerator and denominator.
+   *
+   * @param rat the input rational function
+   * @param lhs the left-hand side
+   * @param numPowers the powers of the numerator of the right-hand side
+   * @param denPowers the powers of the denominator of the right-hand side
+   * @return the resultant rational function
+   * @throws ArithmeticException when division by zero
+   */
+  /* default */ static Rational<MultivariatePolynomial<BigInteger>> substitute(
+      final Rational<MultivariatePolynomial<BigInteger>> rat,
+      final Monomial<BigInteger> lhs,
+      final Powers numPowers,
+      final Powers denPowers) {
+    final List<MultivariatePolynomial<BigInteger>> numGroups = groupByPower(rat.numerator(), lhs);
+    final List<MultivariatePolynomial<BigInteger>> denGroups =
+        groupByPower(rat.denominator(), lhs);
+    final int numDegree = numGroups.size() - 1;
+    final int denDegree = denGroups.size() - 1;
+
+    // (P / b^numDegree) / (Q / b^denDegree)
+    final MultivariatePolynomial<BigInteger> newNum =
+        combine(numGroups, numDegree, numPowers, denPowers);
+    final MultivariatePolynomial<BigInteger> newDen =
+        combine(denGroups, denDegree, numPowers, denPowers);
+    if (newDen.isZero()) {
+      throw new ArithmeticException("division by zero");
+    }
+    if (numDegree > denDegree) {
+      newDen.multiply(denPowers.pow(numDegree - denDegree));
+    } else if (numDegree < denDegree) {
+      newNum.multiply(denPowers.pow(denDegree - numDegree));
+    }
+    return new Rational<>(RationalFunction.getRings(newNum.nVariables), newNum, newDen);
+  }
+
+  /**
+   * Returns the result of the given simultaneous substitutions.
+   *
+   * <p>Each term is visited once. The rules are tried in the given order, each dividing out as
+   * many powers of its LHS as possible from what remains of the term, so an earlier rule takes
+   * priority over a later overlapping one. The terms are grouped by the resultant vector of the
+   * powers, and the powers of the RHSs are computed once per group.
+   *
+   * @param poly the input polynomial
+   * @param lhs the left-hand sides
+   * @param rhs the right-hand sides
+   * @return the resultant polynomial
+   */
+  public static MultivariatePolynomial<BigInteger> substitute(
+      final MultivariatePolynomial<BigInteger> poly,
+      final List<Monomial<BigInteger>> lhs,
+      final List<MultivariatePolynomial<BigInteger>> rhs) {
+    final List<Powers> powers = new ArrayList<>(rhs.size());
+    for (final MultivariatePolynomial<BigInteger> r : rhs) {
+      powers.add(new PolynomialPowers(r));
+    }
+    return ParallelTermKernels.applyTerms(
+        poly, terms -> substituteTerms(poly, terms, lhs, powers));
+  }
+
+  private static MultivariatePolynomial<BigInteger> substituteTerms(
+      final MultivariatePolynomial<BigInteger> poly,
+      final Iterable<Monomial<BigInteger>> terms,
+      final List<Monomial<BigInteger>> lhs,
+      final List<Powers> powers) {
+    final MultivariatePolynomial<BigInteger> result = poly.createZero();
+    for (final Map.Entry<int[], MultivariatePolynomial<BigInteger>> entry :
+        groupByPowers(poly, terms, lhs).entrySet()) {
+      final int[] n = entry.getKey();
+      final MultivariatePolynomial<BigInteger> group = entry.getValue();
+      for (int i = 0; i < n.length; i++) {
+        if (n[i] > 0) {
+          group.multiply(powers.get(i).pow(n[i]));
+        }
+      }
+      result.add(group);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the result of the given simultaneous substitutions into a rational function.
+   *
+   * <p>The priority of the rules is the same as {@link #substitute(MultivariatePolynomial, List,
+   * List)}. Both the numerator and denominator are combined over products of powers of the RHS
+   * denominators with polynomial arithmetic, and the cancellation is performed only once at the
+   * end.
+   *
+   * @param rat the input rational function
+   * @param lhs the left-hand sides
+   * @param rhs the right-hand sides
+   * @return the resultant rational function
+   * @throws ArithmeticException when division by zero
+   */
+  public static Rational<MultivariatePolynomial<BigInteger>> substitute(
+      final Rational<MultivariatePolynomial<BigInteger>> rat,
+      final List<Monomial<BigInteger>> lhs,
+      final List<Rational<MultivariatePolynomial<BigInteger>>> rhs) {
+    final int m = rhs.size();
+    final List<Powers> numPowers = new ArrayList<>(m);
+    final List<Powers> denPowers = new ArrayList<>(m);
+    for (final Rational<MultivariatePolynomial<BigInteger>> r : rhs) {
+      numPowers.add(new PolynomialPowers(r.numerator()));
+      denPowers.add(new PolynomialPowers(r.denominator()));
+    }
+    final Map<int[], MultivariatePolynomial<BigInteger>> numGroups =
+        groupByPowers(rat.numerator(), lhs);
+    final Map<int[], MultivariatePolynomial<BigInteger>> denGroups =
+        groupByPowers(rat.denominator(), lhs);
+    final int[] numDegrees = maxPowers(numGroups, m);
+    final int[] denDegrees = maxPowers(denGroups, m);
+
+    // (P / prod_i b_i^numDegree_i) / (Q / prod_i b_i^denDegree_i)
+    final MultivariatePolynomial<BigInteger> newNum =
+        combine(numGroups, numDegrees, numPowers, denPowers, rat.numerator());
+    final MultivariatePolynomial<BigInteger> newDen =
+        combine(denGroups, denDegrees, numPowers, denPowers, rat.denominator());
+    if (newDen.isZero()) {
+      throw new ArithmeticException("division by zero");
+    }
+    for (int i = 0; i < m; i++) {
+      if (numDegrees[i] > denDegrees[i]) {
+        newDen.multiply(denPowers.get(i).pow(numDegrees[i] - denDegrees[i]));
+      } else if (numDegrees[i] < denDegrees[i]) {
+        newNum.multiply(denPowers.get(i).pow(denDegrees[i] - numDegrees[i]));
+      }
+    }
+    return new Rational<>(RationalFunction.getRings(newNum.nVariables), newNum, newDen);
+  }
+
+  /**
+   * Groups the terms of the given polynomial by the powers of the LHSs.
+   *
+   * @return the map from the vectors of the powers to the coefficients with the LHSs divided out
+   */
+  private static Map<int[], MultivariatePolynomial<BigInteger>> groupByPowers(
+      final MultivariatePolynomial<BigInteger> poly, final List<Monomial<BigInteger>> lhs) {
+    return groupByPowers(poly, poly, lhs);
+  }
+
+  private static Map<int[], MultivariatePolynomial<BigInteger>> groupByPowers(
+      final MultivariatePolynomial<BigInteger> poly,
+      final Iterable<Monomial<BigInteger>> terms,
+      final List<Monomial<BigInteger>> lhs) {
+    final Map<int[], MultivariatePolynomial<BigInteger>> groups =
+        new TreeMap<>(new IntArrayComparator());
+    for (final Monomial<BigInteger> term : terms) {
+      final int[] n = new int[lhs.size()];
+      DegreeVector dv = term;
+      boolean divided = false;
+      for (int i = 0; i < n.length; i++) {
+        final Monomial<BigInteger> l = lhs.get(i);
+        while (dv.dvDivisibleBy(l)) {
+          dv = dv.dvDivideExact(l);
+          n[i]++;
+          divided = true;
+        }
+      }
+      groups
+          .computeIfAbsent(n, k -> poly.createZero())
+          .add(divided ? new Monomial<>(dv, term.coefficient) : term);
+    }
+    return groups;
+  }
 
-    final MultivariateRing<MultivariatePolynomial<BigInteger>> ring =
-        RationalFunction.getRings(poly.nVariables);
-    Rational<MultivariatePolynomial<BigInteger>> result =
-        Rational.<MultivariatePolynomial<BigInteger>>zero(ring);
-    final MultivariatePolynomial<BigInteger> spectators = poly.createZero();
-    final RationalPowers powers = new RationalPowers(rhs);
+  private static int[] maxPowers(
+      final Map<int[], MultivariatePolynomial<BigInteger>> groups, final int size) {
+    final int[] result = new int[size];
+    for (final int[] n : groups.keySet()) {
+      for (int i = 0; i < size; i++) {
+        result[i] = Math.max(result[i], n[i]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns {@code sum_n c_n prod_i a_i^n_i b_i^(degree_i-n_i)}, where {@code c_n} are the given
+   * groups, {@code a_i} and {@code b_i} are the bases of the given powers.
+   */
+  private static MultivariatePolynomial<BigInteger> combine(
+      final Map<int[], MultivariatePolynomial<BigInteger>> groups,
+      final int[] degrees,
+      final List<Powers> numPowers,
+      final List<Powers> denPowers,
+      final MultivariatePolynomial<BigInteger> factory) {
+    final MultivariatePolynomial<BigInteger> result = factory.createZero();
+    for (final Map.Entry<int[], MultivariatePolynomial<BigInteger>> entry : groups.entrySet()) {
+      final int[] n = entry.getKey();
+      final MultivariatePolynomial<BigInteger> group = entry.getValue();
+      for (int i = 0; i < n.length; i++) {
+        if (n[i] > 0) {
+          group.multiply(numPowers.get(i).pow(n[i]));
+        }
+        if (n[i] < degrees[i]) {
+          group.multiply(denPowers.get(i).pow(degrees[i] - n[i]));
+        }
+      }
+      result.add(group);
+    }
+    return result;
+  }
+
+  /**
+   * Groups the terms of the given polynomial by the power of the LHS.
+   *
+   * @return the list of the coefficients of {@code lhs^n} with the LHS divided out, indexed by
+   *     {@code n}; {@code null} for an absent power
+   */
+  private static List<MultivariatePolynomial<BigInteger>> groupByPower(
+      final MultivariatePolynomial<BigInteger> poly, final Monomial<BigInteger> lhs) {
+    final List<MultivariatePolynomial<BigInteger>> groups = new ArrayList<>();
     for (final Monomial<BigInteger> term : poly) {
       int n = 0;
       DegreeVector dv = term;
@@ -82,88 +369,94 @@ public class SubstitutionUtils {
         dv = dv.dvDivideExact(lhs);
         n++;
       }
-      if (n == 0) {
-        spectators.add(term);
-      } else {
-        result =
-            result.add(
-                powers
-                    .pow(n)
-                    .multiply(poly.createOne().multiply(new Monomial<>(dv, term.coefficient))));
+      while (groups.size() <= n) {
+        groups.add(null);
+      }
+      MultivariatePolynomial<BigInteger> group = groups.get(n);
+      if (group == null) {
+        group = poly.createZero();
+        groups.set(n, group);
       }
+      group.add(n == 0 ? term : new Monomial<>(dv, term.coefficient));
     }
-    if (spectators.isZero()) {
-      return result;
-    } else {
-      return result.add(spectators);
+    if (groups.isEmpty()) {
+      groups.add(null);
     }
+    return groups;
   }
 
-  /** Cache powers of a raw polynomial object. */
-  private static class PolynomialPowers {
-    /** The base. */
-    private final MultivariatePolynomial<BigInteger> base;
-
-    /** The cache for powers. */
-    private final IndexToObjectMap<MultivariatePolynomial<BigInteger>> cache;
-
-    /**
-     * Constructs a precomputed cache for powers of the given polynomial.
-     *
-     * @param base the base polynomial
-     */
-    public PolynomialPowers(final MultivariatePolynomial<BigInteger> base) {
-      this.base = base;
-      this.cache = new IndexToObjectMap<>();
+  /**
+   * Returns {@code sum_n c_n a^n b^(degree-n)}, where {@code c_n} are the given groups, {@code a}
+   * and {@code b} are the bases of the given powers.
+   */
+  private static MultivariatePolynomial<BigInteger> combine(
+      final List<MultivariatePolynomial<BigInteger>> groups,
+      final int degree,
+      final Powers numPowers,
+      final Powers denPowers) {
+    MultivariatePolynomial<BigInteger> result = null;
+    for (int n = 0; n < groups.size(); n++) {
+      final MultivariatePolynomial<BigInteger> group = groups.get(n);
+      if (group == null) {
+        continue;
+      }
+      if (n > 0) {
+        group.multiply(numPowers.pow(n));
+      }
+      if (n < degree) {
+        group.multiply(denPowers.pow(degree - n));
+      }
+      if (result == null) {
+        result = group;
+      } else {
+        result.add(group);
+      }
     }
+    return result != null ? result : numPowers.pow(0).createZero();
+  }
 
+  /** Powers of a raw polynomial object. Implementations must be thread-safe. */
+  /* default */ interface Powers {
     /**
-     * Returns the power of the polynomial.
+     * Returns the power of the polynomial, which may be modified by the caller.
      *
      * @param exponent the exponent
      * @return the result
      */
-    public MultivariatePolynomial<BigInteger> pow(final int exponent) {
-      MultivariatePolynomial<BigInteger> result = cache.get(exponent);
-      if (result == null) {
-        result = PolynomialMethods.polyPow(base, exponent, true);
-        cache.put(exponent, result);
-      }
-      return result.copy();
-    }
+    MultivariatePolynomial<BigInteger> pow(int exponent);
   }
 
-  /** Cache powers of a raw rational function object. */
-  private static class RationalPowers {
+  /** Cache powers of a raw polynomial object. */
+  private static class PolynomialPowers implements Powers {
     /** The base. */
-    private final Rational<MultivariatePolynomial<BigInteger>> base;
+    private final MultivariatePolynomial<BigInteger> base;
 
-    /** The cache for powers. */
-    private final IndexToObjectMap<Rational<MultivariatePolynomial<BigInteger>>> cache;
+    /** The cache for powers, each computed only once even when requested concurrently. */
+    private final ConcurrentMap<Integer, MultivariatePolynomial<BigInteger>> cache;
 
     /**
-     * Constructs a precomputed cache for powers of the given rational function.
+     * Constructs a precomputed cache for powers of the given polynomial.
      *
-     * @param base the base rational function
+     * @param base the base polynomial
      */
-    public RationalPowers(final Rational<MultivariatePolynomial<BigInteger>> base) {
+    public PolynomialPowers(final MultivariatePolynomial<BigInteger> base) {
       this.base = base;
-      this.cache = new IndexToObjectMap<>();
+      this.cache = new ConcurrentHashMap<>();
     }
 
     /**
-     * Returns the power of the rational function.
+     * Returns the power of the polynomial.
      *
      * @param exponent the exponent
      * @return the result
      */
-    public Rational<MultivariatePolynomial<BigInteger>> pow(final int exponent) {
-      Rational<MultivariatePolynomial<BigInteger>> result = cache.get(exponent);
-      if (result == null) {
-        result = base.pow(exponent);
-        cache.put(exponent, result);
-      }
-      return result;
+    @Override
+    public MultivariatePolynomial<BigInteger> pow(final int exponent) {
+      // Only the callers requesting the same exponent wait for its computation; the copy is made
+      // outside the lock.
+      return cache
+          .computeIfAbsent(exponent, e -> PolynomialMethods.polyPow(base, e, true))
+          .copy();
     }
   }
 }
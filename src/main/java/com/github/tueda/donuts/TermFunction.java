@@ -0,0 +1,21 @@
+package com.github.tueda.donuts;
+
+import cc.redberry.rings.bigint.BigInteger;
+
+/**
+ * A function mapping a term of a polynomial to a polynomial.
+ *
+ * @see Polynomial#flatMapTerms(TermFunction)
+ */
+@FunctionalInterface
+public interface TermFunction {
+  /**
+   * Returns the image of the given term. The function may be invoked concurrently on different
+   * terms, so it must be free of side effects.
+   *
+   * @param coefficient the coefficient of the term
+   * @param exponents the exponents of the term, in the order of the variables of the polynomial
+   * @return the image
+   */
+  Polynomial apply(BigInteger coefficient, int[] exponents);
+}
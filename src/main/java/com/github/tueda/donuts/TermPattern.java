@@ -0,0 +1,176 @@
+package com.github.tueda.donuts;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * A pattern matching terms by the exponents of a set of variables. Immutable.
+ *
+ * <p>A pattern {@code x^n * y^m} captures the whole exponents {@code n} and {@code m} of the
+ * variables in a term. Each exponent must lie in its range, by default from 1 to unbounded, and
+ * the captured exponents must satisfy the optional condition. The other variables in the term are
+ * not restricted.
+ *
+ * @see RewriteRule
+ */
+public final class TermPattern {
+  /** The unbounded maximum exponent. */
+  public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+  /** The variables. */
+  private final Variable[] variables;
+
+  /** The minimum exponents. */
+  private final int[] minExponents;
+
+  /** The maximum exponents. */
+  private final int[] maxExponents;
+
+  /** The condition on the captured exponents, or {@code null}. */
+  private final Predicate<int[]> condition;
+
+  private TermPattern(
+      final Variable[] variables,
+      final int[] minExponents,
+      final int[] maxExponents,
+      final Predicate<int[]> condition) {
+    this.variables = variables;
+    this.minExponents = minExponents;
+    this.maxExponents = maxExponents;
+    this.condition = condition;
+  }
+
+  /**
+   * Returns the pattern capturing the exponents of the given variables, each in the range from 1
+   * to unbounded.
+   *
+   * @param variables the variables
+   * @return the pattern
+   * @throws IllegalArgumentException when {@code variables} is empty or has duplicates
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static TermPattern of(final Variable... variables) {
+    if (variables.length == 0) {
+      throw new IllegalArgumentException("no variables given");
+    }
+    if (new VariableSet(variables).size() != variables.length) {
+      throw new IllegalArgumentException("duplicate variables given");
+    }
+    final int[] minExponents = new int[variables.length];
+    final int[] maxExponents = new int[variables.length];
+    Arrays.fill(minExponents, 1);
+    Arrays.fill(maxExponents, UNBOUNDED);
+    return new TermPattern(variables.clone(), minExponents, maxExponents, null);
+  }
+
+  /**
+   * Returns a copy of this pattern with the given range of the exponent of the given variable. A
+   * zero minimum allows the variable to be absent in the term.
+   *
+   * @param variable the variable
+   * @param minExponent the minimum exponent
+   * @param maxExponent the maximum exponent, or {@link #UNBOUNDED}
+   * @return the new pattern
+   * @throws IllegalArgumentException when {@code variable} is not in this pattern, or the range is
+   *     invalid
+   */
+  public TermPattern withRange(
+      final Variable variable, final int minExponent, final int maxExponent) {
+    final int i = Arrays.asList(variables).indexOf(variable);
+    if (i < 0) {
+      throw new IllegalArgumentException(String.format("variable not in pattern: %s", variable));
+    }
+    if (minExponent < 0 || minExponent > maxExponent) {
+      throw new IllegalArgumentException(
+          String.format("invalid range given: %s to %s", minExponent, maxExponent));
+    }
+    final int[] newMinExponents = minExponents.clone();
+    final int[] newMaxExponents = maxExponents.clone();
+    newMinExponents[i] = minExponent;
+    newMaxExponents[i] = maxExponent;
+    return new TermPattern(variables, newMinExponents, newMaxExponents, condition);
+  }
+
+  /**
+   * Returns a copy of this pattern with the given condition on the captured exponents, combined
+   * with the existing condition if any.
+   *
+   * @param newCondition the condition, taking the exponents in the order of the variables
+   * @return the new pattern
+   */
+  public TermPattern where(final Predicate<int[]> newCondition) {
+    return new TermPattern(
+        variables,
+        minExponents,
+        maxExponents,
+        condition == null ? newCondition : condition.and(newCondition));
+  }
+
+  /**
+   * Returns the variables of this pattern.
+   *
+   * @return the variables
+   */
+  public Variable[] getVariables() {
+    return variables.clone();
+  }
+
+  /**
+   * Returns {@code true} if the variable at the given position in this pattern must be present in
+   * a matching term.
+   */
+  /* default */ boolean isRequired(final int index) {
+    return minExponents[index] > 0;
+  }
+
+  /**
+   * Returns the captured exponents if the given term matches this pattern.
+   *
+   * @param term the term
+   * @return the exponents of the variables, or {@code null} if not matched
+   * @throws IllegalArgumentException when {@code term} is not a monomial
+   */
+  public int[] match(final Polynomial term) {
+    if (!term.isMonomial()) {
+      throw new IllegalArgumentException("not a monomial");
+    }
+    final int[] exponents = new int[variables.length];
+    for (int i = 0; i < variables.length; i++) {
+      exponents[i] = term.degree(variables[i]);
+    }
+    return matches(exponents) ? exponents : null;
+  }
+
+  /**
+   * Returns {@code true} if the given exponents of the variables match this pattern.
+   *
+   * @param exponents the exponents in the order of the variables
+   * @return {@code true} if matched
+   */
+  /* default */ boolean matches(final int[] exponents) {
+    for (int i = 0; i < variables.length; i++) {
+      if (exponents[i] < minExponents[i] || exponents[i] > maxExponents[i]) {
+        return false;
+      }
+    }
+    return condition == null || condition.test(exponents.clone());
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < variables.length; i++) {
+      if (i > 0) {
+        sb.append('*');
+      }
+      sb.append(variables[i]).append("^[").append(minExponents[i]).append(',');
+      if (maxExponents[i] == UNBOUNDED) {
+        sb.append("inf");
+      } else {
+        sb.append(maxExponents[i]);
+      }
+      sb.append(']');
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,284 @@
+package com.github.tueda.donuts;
+
+import cc.redberry.rings.bigint.BigInteger;
+import cc.redberry.rings.poly.multivar.Monomial;
+import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * A compiled set of rewrite rules for terms. Immutable.
+ *
+ * <p>Each term is rewritten by the first rule (in the given order) whose pattern matches it; the
+ * terms matching no rule are kept as they are. The results of the rules are not rewritten again.
+ * The rules are indexed by a variable required by their patterns, so each term is tested only
+ * against the rules whose required variable appears in the term.
+ *
+ * <p>The rewriting is performed in two passes over the terms, both on the chunks of the terms in
+ * parallel for a huge polynomial (see {@link ParallelTermKernels}). The first pass collects the
+ * distinct matches, for which the right-hand sides are evaluated only once each, which determines
+ * the variables of the result. The second pass matches the terms again and accumulates the
+ * rewritten terms into a single polynomial.
+ */
+public final class TermRewriter {
+  /** The rules. */
+  private final RewriteRule[] rules;
+
+  /** The indices of the rules keyed by their first required variable, in ascending order. */
+  private final Map<Variable, int[]> index;
+
+  /** The indices of the rules without any required variables, in ascending order. */
+  private final int[] unindexed;
+
+  private TermRewriter(final RewriteRule[] rules) {
+    this.rules = rules;
+    final Map<Variable, List<Integer>> map = new LinkedHashMap<>();
+    final List<Integer> rest = new ArrayList<>();
+    for (int r = 0; r < rules.length; r++) {
+      final TermPattern pattern = rules[r].getPattern();
+      final Variable[] patternVariables = pattern.getVariables();
+      Variable key = null;
+      for (int k = 0; k < patternVariables.length && key == null; k++) {
+        if (pattern.isRequired(k)) {
+          key = patternVariables[k];
+        }
+      }
+      if (key == null) {
+        rest.add(r);
+      } else {
+        map.computeIfAbsent(key, v -> new ArrayList<>()).add(r);
+      }
+    }
+    index = new HashMap<>();
+    map.forEach((v, list) -> index.put(v, list.stream().mapToInt(Integer::intValue).toArray()));
+    unindexed = rest.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * Returns the rewriter with the given rules.
+   *
+   * @param rules the rules, in the order of the priority
+   * @return the rewriter
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static TermRewriter of(final RewriteRule... rules) {
+    return new TermRewriter(rules.clone());
+  }
+
+  /**
+   * Returns the rewriter with the given rules.
+   *
+   * @param rules the rules, in the order of the priority
+   * @return the rewriter
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static TermRewriter of(final Iterable<RewriteRule> rules) {
+    return new TermRewriter(
+        StreamSupport.stream(rules.spliterator(), false).toArray(RewriteRule[]::new));
+  }
+
+  /**
+   * Returns the number of the rules.
+   *
+   * @return the number of the rules
+   */
+  public int size() {
+    return rules.length;
+  }
+
+  /**
+   * Returns the rule at the specified position.
+   *
+   * @param index the index of the rule
+   * @return the rule
+   * @throws IndexOutOfBoundsException when {@code index} is out of range
+   */
+  public RewriteRule getRule(final int index) {
+    return rules[index];
+  }
+
+  /**
+   * Returns the given polynomial with its terms rewritten. The polynomial is returned as it is if
+   * no terms match the rules.
+   *
+   * @param poly the polynomial
+   * @return the rewritten polynomial
+   */
+  public Polynomial rewrite(final Polynomial poly) {
+    final VariableSet variables = poly.getVariables();
+    final Compiled compiled = new Compiled(variables);
+
+    // First pass: collect the distinct matches.
+    final Set<Match> matches =
+        ParallelTermKernels.reduceTerms(
+            poly.getRawPolynomialWithoutCopy(),
+            terms -> collectMatches(terms, compiled),
+            TermRewriter::union);
+    if (matches.isEmpty()) {
+      return poly;
+    }
+
+    // Evaluate the right-hand sides, once for each distinct match.
+    final Map<Match, Polynomial> replacements =
+        (matches.size() >= 2 ? matches.parallelStream() : matches.stream())
+            .collect(Collectors.toMap(m -> m, m -> rules[m.rule].getRhs(m.exponents)));
+
+    // Second pass: rewrite the terms in the variables including those of the replacements.
+    final VariableSet newVariables =
+        variables.union(VariableSet.unionOf(replacements.values().stream().map(p -> p)));
+    final Map<Match, MultivariatePolynomial<BigInteger>> rawReplacements = new HashMap<>();
+    replacements.forEach(
+        (m, p) -> rawReplacements.put(m, p.translate(newVariables).getRawPolynomialWithoutCopy()));
+    final Compiled newCompiled = new Compiled(newVariables);
+    final MultivariatePolynomial<BigInteger> newRaw =
+        poly.translate(newVariables).getRawPolynomialWithoutCopy();
+    return Polynomial.createFromRaw(
+        newVariables,
+        ParallelTermKernels.applyTerms(
+            newRaw, terms -> rewriteTerms(newRaw, terms, newCompiled, rawReplacements)));
+  }
+
+  private static Set<Match> collectMatches(
+      final Iterable<Monomial<BigInteger>> terms, final Compiled compiled) {
+    final Set<Match> matches = new HashSet<>();
+    for (final Monomial<BigInteger> term : terms) {
+      final Match match = compiled.match(term.exponents);
+      if (match != null) {
+        matches.add(match);
+      }
+    }
+    return matches;
+  }
+
+  private static Set<Match> union(final Set<Match> a, final Set<Match> b) {
+    if (a.size() < b.size()) {
+      b.addAll(a);
+      return b;
+    }
+    a.addAll(b);
+    return a;
+  }
+
+  private static MultivariatePolynomial<BigInteger> rewriteTerms(
+      final MultivariatePolynomial<BigInteger> poly,
+      final Iterable<Monomial<BigInteger>> terms,
+      final Compiled compiled,
+      final Map<Match, MultivariatePolynomial<BigInteger>> replacements) {
+    final MultivariatePolynomial<BigInteger> result = poly.createZero();
+    for (final Monomial<BigInteger> term : terms) {
+      final Match match = compiled.match(term.exponents);
+      if (match == null) {
+        result.add(term);
+        continue;
+      }
+      final MultivariatePolynomial<BigInteger> rhs = replacements.get(match);
+      if (rhs.isZero()) {
+        continue;
+      }
+      final int[] rest = term.exponents.clone();
+      for (final int i : compiled.patternIndices[match.rule]) {
+        if (i >= 0) {
+          rest[i] = 0;
+        }
+      }
+      result.add(rhs.copy().multiply(new Monomial<>(rest, term.coefficient)));
+    }
+    return result;
+  }
+
+  /** A rule and its captured exponents. Immutable. */
+  private static final class Match {
+    /** The index of the rule. */
+    private final int rule;
+
+    /** The captured exponents. */
+    private final int[] exponents;
+
+    /** The hash code. */
+    private final int hash;
+
+    /* default */ Match(final int rule, final int[] exponents) {
+      this.rule = rule;
+      this.exponents = exponents;
+      this.hash = 31 * rule + Arrays.hashCode(exponents);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Match)) {
+        return false;
+      }
+      final Match aMatch = (Match) other;
+      return rule == aMatch.rule && Arrays.equals(exponents, aMatch.exponents);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /** The rules compiled for a variable set. */
+  private final class Compiled {
+    /** The positions of the pattern variables in the variable set, or -1 if absent. */
+    private final int[][] patternIndices;
+
+    /** The indices of the rules keyed by the positions of the variables. */
+    private final int[][] byVariable;
+
+    /* default */ Compiled(final VariableSet variables) {
+      patternIndices = new int[rules.length][];
+      for (int r = 0; r < rules.length; r++) {
+        final Variable[] patternVariables = rules[r].getPattern().getVariables();
+        patternIndices[r] = new int[patternVariables.length];
+        for (int k = 0; k < patternVariables.length; k++) {
+          patternIndices[r][k] = variables.indexOf(patternVariables[k]);
+        }
+      }
+      byVariable = new int[variables.size()][];
+      int i = 0;
+      for (final Variable v : variables) {
+        byVariable[i++] = index.getOrDefault(v, new int[0]);
+      }
+    }
+
+    /** Returns the first matching rule for the given exponents of a term, or {@code null}. */
+    /* default */ Match match(final int[] exponents) {
+      Match best = null;
+      for (int i = 0; i < exponents.length; i++) {
+        if (exponents[i] > 0) {
+          best = matchAmong(byVariable[i], exponents, best);
+        }
+      }
+      return matchAmong(unindexed, exponents, best);
+    }
+
+    private Match matchAmong(final int[] candidates, final int[] exponents, final Match best) {
+      for (final int r : candidates) {
+        if (best != null && r >= best.rule) {
+          break;
+        }
+        final int[] indices = patternIndices[r];
+        final int[] captured = new int[indices.length];
+        for (int k = 0; k < indices.length; k++) {
+          captured[k] = indices[k] >= 0 ? exponents[indices[k]] : 0;
+        }
+        if (rules[r].getPattern().matches(captured)) {
+          return new Match(r, captured);
+        }
+      }
+      return best;
+    }
+  }
+}
@@ -0,0 +1,294 @@
+package com.github.tueda.donuts;
+
+import cc.redberry.rings.bigint.BigInteger;
+import cc.redberry.rings.poly.multivar.Monomial;
+import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A context of truncated polynomial arithmetic. Immutable.
+ *
+ * <p>The truncation is specified either by the maximum total degree with respect to a set of
+ * variables, or by the maximum degree of each variable. All the arithmetic operations in this
+ * context drop the terms beyond the bound. Products never generate such terms in the first place.
+ *
+ * <p>The context is an explicit object passed to each operation; it does not change the behavior
+ * of the arithmetic methods of {@link Polynomial} itself.
+ */
+public final class TruncatedContext {
+  /** The variables for the truncation. */
+  private final Variable[] variables;
+
+  /** The maximum degree of each variable, or {@code null} for the total-degree truncation. */
+  private final int[] maxDegrees;
+
+  /** The maximum total degree with respect to the variables. */
+  private final int maxTotalDegree;
+
+  private TruncatedContext(
+      final Variable[] variables, final int[] maxDegrees, final int maxTotalDegree) {
+    this.variables = variables;
+    this.maxDegrees = maxDegrees;
+    this.maxTotalDegree = maxTotalDegree;
+  }
+
+  /**
+   * Returns the context truncating the total degree with respect to the given variables.
+   *
+   * @param variables the variables
+   * @param maxDegree the maximum total degree
+   * @return the context
+   * @throws IllegalArgumentException when {@code maxDegree} is negative
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static TruncatedContext of(final VariableSet variables, final int maxDegree) {
+    if (maxDegree < 0) {
+      throw new IllegalArgumentException(String.format("Negative degree given: %s", maxDegree));
+    }
+    return new TruncatedContext(variables.toArray(new Variable[0]), null, maxDegree);
+  }
+
+  /**
+   * Returns the context truncating the degree of each of the given variables.
+   *
+   * @param variables the variables
+   * @param maxDegrees the maximum degrees of the variables
+   * @return the context
+   * @throws IllegalArgumentException when {@code variables} and {@code maxDegrees} have different
+   *     lengths, {@code variables} contains duplicates, or any of {@code maxDegrees} is negative
+   */
+  @SuppressWarnings({"PMD.ShortMethodName", "PMD.UseVarargs"})
+  public static TruncatedContext of(final Variable[] variables, final int[] maxDegrees) {
+    if (variables.length != maxDegrees.length) {
+      throw new IllegalArgumentException("sizes of variables and degrees unmatch");
+    }
+    if (new VariableSet(variables).size() != variables.length) {
+      throw new IllegalArgumentException("duplicate variables given");
+    }
+    long total = 0;
+    for (final int d : maxDegrees) {
+      if (d < 0) {
+        throw new IllegalArgumentException(String.format("Negative degree given: %s", d));
+      }
+      total += d;
+    }
+    return new TruncatedContext(
+        variables.clone(), maxDegrees.clone(), (int) Math.min(total, Integer.MAX_VALUE));
+  }
+
+  /**
+   * Returns the given polynomial with the terms beyond the bound dropped.
+   *
+   * @param poly the polynomial
+   * @return the truncated polynomial
+   */
+  public Polynomial truncate(final Polynomial poly) {
+    final VariableSet polyVariables = poly.getVariables();
+    final int[] indices = indicesIn(polyVariables);
+    final MultivariatePolynomial<BigInteger> raw = poly.getRawPolynomialWithoutCopy();
+    final MultivariatePolynomial<BigInteger> result = raw.createZero();
+    boolean dropped = false;
+    for (final Monomial<BigInteger> term : raw) {
+      if (withinBound(term.exponents, indices)) {
+        result.add(term);
+      } else {
+        dropped = true;
+      }
+    }
+    return dropped ? Polynomial.createFromRaw(polyVariables, result) : poly;
+  }
+
+  /**
+   * Returns the truncated sum of the given polynomials.
+   *
+   * @param a the first polynomial
+   * @param b the second polynomial
+   * @return {@code a + b} truncated
+   */
+  public Polynomial add(final Polynomial a, final Polynomial b) {
+    return truncate(a).add(truncate(b));
+  }
+
+  /**
+   * Returns the truncated difference of the given polynomials.
+   *
+   * @param a the first polynomial
+   * @param b the second polynomial
+   * @return {@code a - b} truncated
+   */
+  public Polynomial subtract(final Polynomial a, final Polynomial b) {
+    return truncate(a).subtract(truncate(b));
+  }
+
+  /**
+   * Returns the truncated product of the given polynomials.
+   *
+   * @param a the first polynomial
+   * @param b the second polynomial
+   * @return {@code a * b} truncated
+   */
+  public Polynomial multiply(final Polynomial a, final Polynomial b) {
+    final VariableSet newVariables = a.getVariables().union(b.getVariables());
+    final int[] indices = indicesIn(newVariables);
+    final MultivariatePolynomial<BigInteger> rawA =
+        a.translate(newVariables).getRawPolynomialWithoutCopy();
+    final MultivariatePolynomial<BigInteger> rawB =
+        b.translate(newVariables).getRawPolynomialWithoutCopy();
+
+    // Sort the terms of b by the degree, for the early termination.
+    final List<Monomial<BigInteger>> termsB = new ArrayList<>(rawB.size());
+    for (final Monomial<BigInteger> term : rawB) {
+      if (withinBound(term.exponents, indices)) {
+        termsB.add(term);
+      }
+    }
+    termsB.sort(Comparator.comparingInt(t -> degree(t.exponents, indices)));
+    final int[] degreesB = termsB.stream().mapToInt(t -> degree(t.exponents, indices)).toArray();
+
+    final int n = newVariables.size();
+    final MultivariatePolynomial<BigInteger> result = rawA.createZero();
+    for (final Monomial<BigInteger> ta : rawA) {
+      final int da = degree(ta.exponents, indices);
+      if (da > maxTotalDegree) {
+        continue;
+      }
+      for (int k = 0; k < termsB.size(); k++) {
+        if (da + degreesB[k] > maxTotalDegree) {
+          break;
+        }
+        final Monomial<BigInteger> tb = termsB.get(k);
+        if (maxDegrees != null && !withinDegrees(ta.exponents, tb.exponents, indices)) {
+          continue;
+        }
+        final int[] exponents = new int[n];
+        for (int i = 0; i < n; i++) {
+          exponents[i] = ta.exponents[i] + tb.exponents[i];
+        }
+        result.add(new Monomial<>(exponents, ta.coefficient.multiply(tb.coefficient)));
+      }
+    }
+    return Polynomial.createFromRaw(newVariables, result);
+  }
+
+  /**
+   * Returns the truncated power of the given polynomial.
+   *
+   * @param poly the polynomial
+   * @param exponent the exponent
+   * @return {@code poly ^ exponent} truncated
+   * @throws IllegalArgumentException when {@code exponent} is negative
+   */
+  public Polynomial pow(final Polynomial poly, final int exponent) {
+    if (exponent < 0) {
+      throw new IllegalArgumentException(String.format("Negative exponent given: %s", exponent));
+    }
+    Polynomial result = truncate(Polynomial.ONE);
+    Polynomial base = truncate(poly);
+    int e = exponent;
+    while (e > 0) {
+      if ((e & 1) != 0) {
+        result = multiply(result, base);
+      }
+      e >>= 1;
+      if (e > 0) {
+        base = multiply(base, base);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the truncated sum of the given polynomials.
+   *
+   * @param polynomials the polynomials to be summed
+   * @return {@code polynomial1 + ... + polynomialN} truncated
+   */
+  public Polynomial sumOf(final Polynomial... polynomials) {
+    return Polynomial.sumOf(Stream.of(polynomials).map(this::truncate));
+  }
+
+  /**
+   * Returns the truncated sum of the given polynomials.
+   *
+   * @param polynomials the polynomials to be summed
+   * @return {@code polynomial1 + ... + polynomialN} truncated
+   */
+  public Polynomial sumOf(final Iterable<Polynomial> polynomials) {
+    return sumOf(StreamSupport.stream(polynomials.spliterator(), false).toArray(Polynomial[]::new));
+  }
+
+  /**
+   * Returns the truncated product of the given polynomials.
+   *
+   * @param polynomials the polynomials to be multiplied
+   * @return {@code polynomial1 * ... * polynomialN} truncated
+   */
+  public Polynomial productOf(final Polynomial... polynomials) {
+    Polynomial result = truncate(Polynomial.ONE);
+    for (final Polynomial p : polynomials) {
+      result = multiply(result, p);
+      if (result.isZero()) {
+        break;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the truncated product of the given polynomials.
+   *
+   * @param polynomials the polynomials to be multiplied
+   * @return {@code polynomial1 * ... * polynomialN} truncated
+   */
+  public Polynomial productOf(final Iterable<Polynomial> polynomials) {
+    return productOf(
+        StreamSupport.stream(polynomials.spliterator(), false).toArray(Polynomial[]::new));
+  }
+
+  /** Returns the indices of the truncation variables in the given set, or -1 if absent. */
+  private int[] indicesIn(final VariableSet set) {
+    final int[] indices = new int[variables.length];
+    for (int k = 0; k < variables.length; k++) {
+      indices[k] = set.indexOf(variables[k]);
+    }
+    return indices;
+  }
+
+  private static int degree(final int[] exponents, final int[] indices) {
+    int d = 0;
+    for (final int i : indices) {
+      if (i >= 0) {
+        d += exponents[i];
+      }
+    }
+    return d;
+  }
+
+  private boolean withinBound(final int[] exponents, final int[] indices) {
+    if (degree(exponents, indices) > maxTotalDegree) {
+      return false;
+    }
+    if (maxDegrees != null) {
+      for (int k = 0; k < indices.length; k++) {
+        if (indices[k] >= 0 && exponents[indices[k]] > maxDegrees[k]) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private boolean withinDegrees(final int[] a, final int[] b, final int[] indices) {
+    for (int k = 0; k < indices.length; k++) {
+      final int i = indices[k];
+      if (i >= 0 && a[i] + b[i] > maxDegrees[k]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,208 @@
+package com.github.tueda.donuts;
+
+import cc.redberry.rings.bigint.BigInteger;
+import cc.redberry.rings.poly.PolynomialFactorDecomposition;
+import cc.redberry.rings.poly.multivar.Monomial;
+import cc.redberry.rings.poly.multivar.MultivariateFactorization;
+import cc.redberry.rings.poly.multivar.MultivariateGCD;
+import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A permutation of variables of raw polynomials for GCD and factorization. Immutable.
+ *
+ * <p>The cost of multivariate GCDs and factorization depends on the order of variables, while the
+ * order in {@link VariableSet} is fixed by the names. This class drops unused variables and sorts
+ * the others by their maximum degrees and then by the numbers of terms in which they appear, both
+ * in the ascending order, before the polynomials are passed to Rings.
+ */
+/* default */ final class VariableOrdering {
+  /** The number of the variables in the original polynomials. */
+  private final int nVariables;
+
+  /** The number of the used variables. */
+  private final int nUsedVariables;
+
+  /** The mapping from the original variables to the reordered ones. */
+  private final int[] forward;
+
+  /** The mapping from the reordered variables to the original ones. */
+  private final int[] backward;
+
+  /** {@code true} if the permutation is trivial. */
+  private final boolean identity;
+
+  private VariableOrdering(final int nVariables, final int[] order, final int nUsedVariables) {
+    this.nVariables = nVariables;
+    this.nUsedVariables = nUsedVariables;
+    this.backward = order;
+    this.forward = new int[nVariables];
+    boolean isIdentity = nUsedVariables == nVariables;
+    for (int i = 0; i < nVariables; i++) {
+      forward[order[i]] = i;
+      if (order[i] != i) {
+        isIdentity = false;
+      }
+    }
+    this.identity = isIdentity;
+  }
+
+  /**
+   * Returns the variable ordering suitable for the given polynomials.
+   *
+   * @param polys the polynomials, sharing the same number of variables
+   * @return the variable ordering
+   */
+  /* default */ static VariableOrdering of(final List<MultivariatePolynomial<BigInteger>> polys) {
+    final int n = polys.get(0).nVariables;
+    final int[] degrees = new int[n];
+    final long[] occurrences = new long[n];
+    for (final MultivariatePolynomial<BigInteger> p : polys) {
+      for (final Monomial<BigInteger> term : p) {
+        for (int i = 0; i < n; i++) {
+          final int e = term.exponents[i];
+          if (e > 0) {
+            degrees[i] = Math.max(degrees[i], e);
+            occurrences[i]++;
+          }
+        }
+      }
+    }
+
+    final int[] order =
+        IntStream.range(0, n)
+            .boxed()
+            .sorted(
+                Comparator.<Integer>comparingInt(i -> degrees[i] == 0 ? 1 : 0)
+                    .thenComparingInt(i -> degrees[i])
+                    .thenComparingLong(i -> occurrences[i])
+                    .thenComparingInt(i -> i))
+            .mapToInt(Integer::intValue)
+            .toArray();
+    final int nUsed = (int) Arrays.stream(degrees).filter(d -> d > 0).count();
+
+    return new VariableOrdering(n, order, nUsed);
+  }
+
+  /**
+   * Returns {@code true} if the permutation is trivial.
+   *
+   * @return {@code true} if the permutation is trivial
+   */
+  /* default */ boolean isIdentity() {
+    return identity;
+  }
+
+  /**
+   * Returns the given polynomial with the variables reordered.
+   *
+   * @param poly the polynomial in the original variables
+   * @return the polynomial in the reordered variables
+   */
+  /* default */ MultivariatePolynomial<BigInteger> apply(
+      final MultivariatePolynomial<BigInteger> poly) {
+    if (identity) {
+      return poly;
+    }
+    return poly.mapVariables(forward).setNVariables(nUsedVariables);
+  }
+
+  /**
+   * Returns the given polynomial with the variables restored to the original order.
+   *
+   * @param poly the polynomial in the reordered variables
+   * @return the polynomial in the original variables
+   */
+  /* default */ MultivariatePolynomial<BigInteger> restore(
+      final MultivariatePolynomial<BigInteger> poly) {
+    if (identity) {
+      return poly;
+    }
+    return poly.setNVariables(nVariables).mapVariables(backward);
+  }
+
+  /**
+   * Returns the GCD of the given polynomials, computed with the variables reordered.
+   *
+   * @param a the first polynomial
+   * @param b the second polynomial
+   * @return the GCD
+   */
+  /* default */ static MultivariatePolynomial<BigInteger> gcd(
+      final MultivariatePolynomial<BigInteger> a, final MultivariatePolynomial<BigInteger> b) {
+    return of(Arrays.asList(a, b)).applyGcd(a, b);
+  }
+
+  /**
+   * Returns the GCD of the given polynomials, computed with the variables reordered by this
+   * ordering.
+   *
+   * @param a the first polynomial
+   * @param b the second polynomial
+   * @return the GCD
+   */
+  /* default */ MultivariatePolynomial<BigInteger> applyGcd(
+      final MultivariatePolynomial<BigInteger> a, final MultivariatePolynomial<BigInteger> b) {
+    if (identity) {
+      return MultivariateGCD.PolynomialGCD(a, b);
+    }
+    return restoreGcd(MultivariateGCD.PolynomialGCD(apply(a), apply(b)));
+  }
+
+  /**
+   * Returns the GCD of the given polynomials, computed with the variables reordered.
+   *
+   * @param polys the polynomials, at least one
+   * @return the GCD
+   */
+  /* default */ static MultivariatePolynomial<BigInteger> gcd(
+      final List<MultivariatePolynomial<BigInteger>> polys) {
+    final VariableOrdering ordering = of(polys);
+    if (ordering.isIdentity()) {
+      return MultivariateGCD.PolynomialGCD(polys);
+    }
+    return ordering.restoreGcd(
+        MultivariateGCD.PolynomialGCD(
+            polys.stream().map(ordering::apply).collect(Collectors.toList())));
+  }
+
+  /**
+   * Returns the given GCD with the variables restored. The sign of the leading coefficient, which
+   * depends on the order of variables, is kept.
+   */
+  private MultivariatePolynomial<BigInteger> restoreGcd(
+      final MultivariatePolynomial<BigInteger> gcd) {
+    final MultivariatePolynomial<BigInteger> result = restore(gcd);
+    if (result.signumOfLC() != gcd.signumOfLC()) {
+      result.negate();
+    }
+    return result;
+  }
+
+  /**
+   * Returns the factorization of the given polynomial, computed with the variables reordered.
+   *
+   * @param poly the polynomial
+   * @return the factor decomposition
+   */
+  /* default */ static PolynomialFactorDecomposition<MultivariatePolynomial<BigInteger>> factorInZ(
+      final MultivariatePolynomial<BigInteger> poly) {
+    final VariableOrdering ordering = of(Collections.singletonList(poly));
+    if (ordering.isIdentity()) {
+      return MultivariateFactorization.FactorInZ(poly);
+    }
+    final PolynomialFactorDecomposition<MultivariatePolynomial<BigInteger>> d =
+        MultivariateFactorization.FactorInZ(ordering.apply(poly));
+    final PolynomialFactorDecomposition<MultivariatePolynomial<BigInteger>> result =
+        PolynomialFactorDecomposition.unit(ordering.restore(d.unit));
+    for (int i = 0; i < d.size(); i++) {
+      result.addFactor(ordering.restore(d.get(i)), d.getExponent(i));
+    }
+    return result;
+  }
+}
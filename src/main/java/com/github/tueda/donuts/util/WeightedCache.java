@@ -0,0 +1,211 @@
+package com.github.tueda.donuts.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded concurrent cache. Each entry has a weight (the size of the entry) and a cost (how
+ * expensive it was to compute the value). When the total weight exceeds the limit, entries are
+ * evicted by the GreedyDual-Size policy: cheap, large and rarely used entries go first.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of cached values
+ */
+public final class WeightedCache<K, V> {
+  /** The table to store entries. */
+  private final Map<K, Entry<V>> table = new ConcurrentHashMap<>();
+
+  /** The maximum total weight. */
+  private final long maxWeight;
+
+  /** The current total weight. */
+  private final AtomicLong weight = new AtomicLong();
+
+  /** The number of hits. */
+  private final LongAdder hitCount = new LongAdder();
+
+  /** The number of misses. */
+  private final LongAdder missCount = new LongAdder();
+
+  /** The number of evicted entries. */
+  private final LongAdder evictionCount = new LongAdder();
+
+  /** The lock for eviction. */
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  /** The inflation value of the GreedyDual-Size policy. */
+  private volatile double inflation;
+
+  /**
+   * Constructs a cache.
+   *
+   * @param maxWeight the maximum total weight of entries
+   * @throws IllegalArgumentException when {@code maxWeight} is not positive
+   */
+  public WeightedCache(final long maxWeight) {
+    if (maxWeight <= 0) {
+      throw new IllegalArgumentException(String.format("Non-positive weight given: %s", maxWeight));
+    }
+    this.maxWeight = maxWeight;
+  }
+
+  /** An entry in the cache. */
+  private static final class Entry<V> {
+    /** The value. */
+    private final V value;
+
+    /** The weight. */
+    private final long weight;
+
+    /** The cost per weight. */
+    private final double density;
+
+    /** The priority for the eviction. */
+    private volatile double priority;
+
+    /* default */ Entry(final V value, final long weight, final double density, final double base) {
+      this.value = value;
+      this.weight = weight;
+      this.density = density;
+      this.priority = base + density;
+    }
+  }
+
+  /**
+   * Returns the value associated with the given key, or {@code null} if the cache has no entry for
+   * the key.
+   *
+   * @param key the key
+   * @return the cached value, or {@code null}
+   */
+  public V get(final K key) {
+    final Entry<V> entry = table.get(key);
+    if (entry == null) {
+      missCount.increment();
+      return null;
+    }
+    hitCount.increment();
+    entry.priority = inflation + entry.density;
+    return entry.value;
+  }
+
+  /**
+   * Stores the given value in the cache. The entry may be evicted immediately when it is too heavy.
+   *
+   * @param key the key
+   * @param value the value
+   * @param entryWeight the weight of the entry, must be positive
+   * @param cost the cost to compute the value, e.g., in nanoseconds
+   */
+  public void put(final K key, final V value, final long entryWeight, final long cost) {
+    final long w = Math.max(entryWeight, 1);
+    if (w > maxWeight) {
+      return;
+    }
+    final Entry<V> entry = new Entry<>(value, w, (double) Math.max(cost, 1) / w, inflation);
+    final Entry<V> oldEntry = table.put(key, entry);
+    weight.addAndGet(oldEntry == null ? w : w - oldEntry.weight);
+    if (weight.get() > maxWeight) {
+      evict();
+    }
+  }
+
+  /** Removes all entries. The statistics are not reset. */
+  public void clear() {
+    for (final K key : table.keySet()) {
+      final Entry<V> entry = table.remove(key);
+      if (entry != null) {
+        weight.addAndGet(-entry.weight);
+      }
+    }
+  }
+
+  private void evict() {
+    if (!evictionLock.tryLock()) {
+      // Another thread is evicting entries.
+      return;
+    }
+    try {
+      // Make some room to avoid evicting entries every time a new entry comes.
+      final long targetWeight = maxWeight - maxWeight / 8;
+      if (weight.get() <= targetWeight) {
+        return;
+      }
+      final List<Map.Entry<K, Entry<V>>> entries = new ArrayList<>(table.entrySet());
+      entries.sort(Comparator.comparingDouble(e -> e.getValue().priority));
+      for (final Map.Entry<K, Entry<V>> e : entries) {
+        if (weight.get() <= targetWeight) {
+          break;
+        }
+        final Entry<V> entry = e.getValue();
+        if (table.remove(e.getKey(), entry)) {
+          weight.addAndGet(-entry.weight);
+          evictionCount.increment();
+          inflation = Math.max(inflation, entry.priority);
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of entries in the cache.
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return table.size();
+  }
+
+  /**
+   * Returns the current total weight of the entries.
+   *
+   * @return the total weight
+   */
+  public long getWeight() {
+    return weight.get();
+  }
+
+  /**
+   * Returns the maximum total weight of the entries.
+   *
+   * @return the maximum weight
+   */
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  /**
+   * Returns the number of lookups that found a cached value.
+   *
+   * @return the number of hits
+   */
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * Returns the number of lookups that found no cached value.
+   *
+   * @return the number of misses
+   */
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * Returns the number of entries that have been evicted.
+   *
+   * @return the number of evictions
+   */
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+}
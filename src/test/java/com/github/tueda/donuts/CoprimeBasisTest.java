@@ -0,0 +1,92 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+public class CoprimeBasisTest {
+  @Test
+  public void coprimeBasis() {
+    checkCoprimeBasis(
+        new String[] {"(1+x)^2*(1+y)", "-3*(1+x)*(2+y)", "2*x^3*(1+y)^2"},
+        new String[] {"x", "1+x", "1+y", "2+y"});
+    checkCoprimeBasis(
+        new String[] {"(1+x)*(1+y)", "(1+x)*(2+y)"}, new String[] {"1+x", "1+y", "2+y"});
+    checkCoprimeBasis(new String[] {"1-x^2", "1-x"}, new String[] {"-1+x", "1+x"});
+    checkCoprimeBasis(
+        new String[] {"(1+x)^3*(1+y)^2", "(1+x)*(1+y)", "(1+x)^2*(1+y)^3"},
+        new String[] {"1+x", "1+y"});
+    checkCoprimeBasis(
+        new String[] {"(1+x)*(1+y)", "(1+x)^2*(1+y)^2"}, new String[] {"(1+x)*(1+y)"});
+    checkCoprimeBasis(new String[] {"1", "-5", "x*y"}, new String[] {"x", "y"});
+    checkCoprimeBasis(new String[] {}, new String[] {});
+  }
+
+  @Test
+  public void exponents() {
+    CoprimeBasis b = Polynomial.coprimeBasis(Polynomial.of("-4*x^2*(1+y)^3", "6*(1+y)"));
+    assertThat(b.getNumberOfPolynomials()).isEqualTo(2);
+    assertThat(b.getBasis()).isEqualTo(Polynomial.of("x", "1+y"));
+    assertThat(b.getExponents(0)).isEqualTo(new int[] {2, 3});
+    assertThat(b.getExponents(1)).isEqualTo(new int[] {0, 1});
+    assertThat(b.getUnit(0)).isEqualTo(Polynomial.of("-4"));
+    assertThat(b.getUnit(1)).isEqualTo(Polynomial.of("6"));
+  }
+
+  @Test
+  public void knownCoprime() {
+    // 1-x and 1+x are known to be coprime; 1-x^2 is refined against them.
+    CoprimeBasis b = CoprimeBasis.of(2, Polynomial.of("1-x", "1+x", "1-x^2", "x*(1+x)"));
+    assertThat(b.getBasis()).isEqualTo(Polynomial.of("x", "-1+x", "1+x"));
+    assertThat(b.getExponents(2)).isEqualTo(new int[] {0, 1, 1});
+    assertThat(b.getExponents(3)).isEqualTo(new int[] {1, 0, 1});
+    assertThat(b.getUnit(0)).isEqualTo(Polynomial.of("-1"));
+  }
+
+  @Test
+  public void zero() {
+    assertThrows(
+        IllegalArgumentException.class, () -> Polynomial.coprimeBasis(Polynomial.of("x", "0")));
+  }
+
+  @Test
+  public void auxiliaryMethods() {
+    Polynomial[] pp = Polynomial.of("(1+x)^2", "(1+x)*(1+y)");
+    Polynomial[] answer = Polynomial.of("1+x", "1+y");
+    assertThat(Polynomial.coprimeBasis(pp[0]).getBasis()).isEqualTo(Polynomial.of("1+x"));
+    assertThat(Arrays.asList(Polynomial.coprimeBasis(Arrays.asList(pp)).getBasis()))
+        .containsExactly((Object[]) answer);
+    assertThat(Arrays.asList(Polynomial.coprimeBasis(Arrays.stream(pp)).getBasis()))
+        .containsExactly((Object[]) answer);
+  }
+
+  void checkCoprimeBasis(String[] polys_str, String[] basis_str) {
+    Polynomial[] polys = Polynomial.of(polys_str);
+    CoprimeBasis b = Polynomial.coprimeBasis(polys);
+    Polynomial[] basis = b.getBasis();
+
+    // The basis may be given in any order.
+    assertThat(Arrays.asList(basis)).containsExactly((Object[]) Polynomial.of(basis_str));
+
+    // The basis elements are pairwise coprime and normalized.
+    for (int i = 0; i < basis.length; i++) {
+      assertThat(basis[i].signum()).isGreaterThan(0);
+      for (int j = i + 1; j < basis.length; j++) {
+        assertThat(basis[i].gcd(basis[j]).isConstant()).isTrue();
+      }
+    }
+
+    // Each input is reconstructed from the basis.
+    assertThat(b.getNumberOfPolynomials()).isEqualTo(polys.length);
+    for (int i = 0; i < polys.length; i++) {
+      int[] exponents = b.getExponents(i);
+      Polynomial p = b.getUnit(i);
+      for (int j = 0; j < basis.length; j++) {
+        p = p.multiply(basis[j].pow(exponents[j]));
+      }
+      assertThat(p).isEqualTo(polys[i]);
+    }
+  }
+}
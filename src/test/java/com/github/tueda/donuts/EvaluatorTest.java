@@ -0,0 +1,96 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import cc.redberry.rings.bigint.BigInteger;
+import org.junit.jupiter.api.Test;
+
+public class EvaluatorTest {
+  @Test
+  public void evaluate() {
+    Polynomial a = Polynomial.of("(1+x)^4*(2-y)^3*(3+z)^2-7*x*z^50+x^1000*y");
+    Variable[] variables = Variable.of("a", "z", "y", "x");
+    Evaluator evaluator = Evaluator.of(a, variables);
+    assertThat(evaluator.getVariables()).isEqualTo(variables);
+
+    int n = 1000;
+    long[][] points = new long[n][];
+    BigInteger[][] bigPoints = new BigInteger[n][];
+    for (int i = 0; i < n; i++) {
+      points[i] = new long[] {i, i % 3 - 1, i % 5 - 2, i % 2 == 0 ? 0 : -1};
+      bigPoints[i] = new BigInteger[4];
+      for (int j = 0; j < 4; j++) {
+        bigPoints[i][j] = BigInteger.valueOf(points[i][j]);
+      }
+    }
+
+    BigInteger[] values = evaluator.evaluate(bigPoints);
+    for (int i = 0; i < n; i++) {
+      assertThat(values[i]).isEqualTo(a.evaluateToInteger(variables, bigPoints[i]));
+    }
+
+    long[] longValues = evaluator.evaluate(points);
+    for (int i = 0; i < n; i++) {
+      assertThat(BigInteger.valueOf(longValues[i])).isEqualTo(values[i]);
+    }
+
+    long p = 1_000_000_007L;
+    long[] modValues = evaluator.evaluateModP(points, p);
+    for (int i = 0; i < n; i++) {
+      assertThat(BigInteger.valueOf(modValues[i]))
+          .isEqualTo(values[i].mod(BigInteger.valueOf(p)));
+    }
+  }
+
+  @Test
+  public void overflow() {
+    long big = 1L << 40;
+
+    {
+      Evaluator evaluator = Evaluator.of(Polynomial.of("x^5-y^5+x-y"), Variable.of("x", "y"));
+      // The powers overflow, but the value fits in a long.
+      assertThat(evaluator.evaluate(new long[][] {{big, big}})).isEqualTo(new long[] {0});
+      assertThrows(ArithmeticException.class, () -> evaluator.evaluate(new long[][] {{big, 0}}));
+
+      // A block with a large point falls back to BigInteger for all of its points.
+      long[][] points = new long[300][];
+      for (int i = 0; i < points.length; i++) {
+        points[i] = i == 100 ? new long[] {big, big} : new long[] {i, i % 7};
+      }
+      long[] values = evaluator.evaluate(points);
+      for (int i = 0; i < points.length; i++) {
+        long x = points[i][0];
+        long y = points[i][1];
+        long expected = i == 100 ? 0 : x * x * x * x * x - y * y * y * y * y + x - y;
+        assertThat(values[i]).isEqualTo(expected);
+      }
+    }
+
+    {
+      Polynomial a = Polynomial.of("x^5-y^5+12345678901234567890123*z");
+      Variable[] variables = Variable.of("x", "y", "z");
+      Evaluator evaluator = Evaluator.of(a, variables);
+      assertThat(evaluator.evaluate(new long[][] {{big, big, 0}})).isEqualTo(new long[] {0});
+      assertThrows(ArithmeticException.class, () -> evaluator.evaluate(new long[][] {{0, 0, 1}}));
+
+      long p = (1L << 61) - 1;
+      long[] modValues = evaluator.evaluateModP(new long[][] {{big, -1, 1}}, p);
+      BigInteger[] point = {BigInteger.valueOf(big), BigInteger.valueOf(-1), BigInteger.ONE};
+      BigInteger expected = a.evaluateToInteger(variables, point).mod(BigInteger.valueOf(p));
+      assertThat(BigInteger.valueOf(modValues[0])).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void invalidUsages() {
+    Polynomial a = Polynomial.of("x+y");
+    assertThrows(IllegalArgumentException.class, () -> Evaluator.of(a, Variable.of("x", "z")));
+    assertThrows(IllegalArgumentException.class, () -> Evaluator.of(a, Variable.of("x", "x")));
+
+    Evaluator evaluator = Evaluator.of(a, Variable.of("x", "y"));
+    assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(new long[][] {{1}}));
+    assertThrows(
+        IllegalArgumentException.class, () -> evaluator.evaluateModP(new long[][] {{1, 2}}, 1));
+  }
+}
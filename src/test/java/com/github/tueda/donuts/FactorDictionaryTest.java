@@ -0,0 +1,94 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class FactorDictionaryTest {
+  @Test
+  public void addAndGet() {
+    FactorDictionary dict = new FactorDictionary();
+    assertThat(dict.size()).isEqualTo(0);
+    assertThat(dict.sum()).isEqualTo(RationalFunction.ZERO);
+
+    RationalFunction r1 = RationalFunction.of("(1+x)/(1-y)^2/(2+z)");
+    RationalFunction r2 = RationalFunction.of("y/(1-y)/(2+z)^3");
+    RationalFunction r3 = RationalFunction.of("-3/(2*(2+z))^2");
+    RationalFunction r4 = RationalFunction.of("x^2+y");
+    RationalFunction r5 = RationalFunction.of("(1+x)/(1-y)^2/(2+z)");
+
+    assertThat(dict.add(r1)).isEqualTo(0);
+    assertThat(dict.add(r2)).isEqualTo(1);
+    assertThat(dict.add(r3)).isEqualTo(2);
+    assertThat(dict.add(r4)).isEqualTo(3);
+    assertThat(dict.add(r5)).isEqualTo(4);
+    assertThat(dict.size()).isEqualTo(5);
+
+    // 1-y (up to the sign), 2+z and the integer constant 4.
+    assertThat(dict.getFactorCount()).isEqualTo(3);
+
+    assertThat(dict.get(0)).isEqualTo(r1);
+    assertThat(dict.get(1)).isEqualTo(r2);
+    assertThat(dict.get(2)).isEqualTo(r3);
+    assertThat(dict.get(3)).isEqualTo(r4);
+    assertThat(dict.get(4)).isEqualTo(r5);
+    // Cached.
+    assertThat(dict.get(4)).isEqualTo(r5);
+    assertThat(dict.getNumerator(3)).isEqualTo(Polynomial.of("x^2+y"));
+    assertThat(dict.getDenominator(3)).isEqualTo(Polynomial.ONE);
+
+    assertThrows(IndexOutOfBoundsException.class, () -> dict.get(5));
+    assertThrows(IndexOutOfBoundsException.class, () -> dict.getFactor(3));
+  }
+
+  @Test
+  public void sum() {
+    FactorDictionary dict = new FactorDictionary(10);
+    RationalFunction[] rr = {
+      RationalFunction.of("(1+x)/(1-y)^2/(2+z)"),
+      RationalFunction.of("y/(1-y)/(2+z)^3"),
+      RationalFunction.of("-3/(2*(2+z))^2"),
+      RationalFunction.of("x^2+y"),
+      RationalFunction.of("(1+y)/(1-y)^2"),
+      RationalFunction.of("(-1-y)/(1-y)^2"),
+    };
+    for (RationalFunction r : rr) {
+      dict.add(r);
+    }
+
+    assertThat(dict.sum()).isEqualTo(RationalFunction.sumOf(rr));
+    assertThat(dict.sumOf(1, 2)).isEqualTo(rr[1].add(rr[2]));
+    assertThat(dict.sumOf(4, 5)).isEqualTo(RationalFunction.ZERO);
+    assertThat(dict.sumOf(3)).isEqualTo(rr[3]);
+    assertThat(dict.sumOf()).isEqualTo(RationalFunction.ZERO);
+
+    Polynomial[] pp = dict.toCommonDenominator(0, 1, 3);
+    assertThat(pp.length).isEqualTo(4);
+    Polynomial den = pp[3];
+    assertThat(den.factorization().toPolynomial()).isEqualTo(den);
+    assertThat(new RationalFunction(pp[0], den)).isEqualTo(rr[0]);
+    assertThat(new RationalFunction(pp[1], den)).isEqualTo(rr[1]);
+    assertThat(new RationalFunction(pp[2], den)).isEqualTo(rr[3]);
+    assertThat(den).isEqualTo(Polynomial.of("(1-y)^2*(2+z)^3"));
+  }
+
+  @Test
+  public void boundedMemory() {
+    FactorDictionary dict = new FactorDictionary(16);
+    int n = 40;
+    for (int i = 0; i < n; i++) {
+      dict.add(RationalFunction.of("x/(1+x)^" + (i + 1) + "/(2-y)"));
+      assertThat(dict.getCachedWeight()).isAtMost(2 * 16);
+    }
+    // 1+x and 2-y, up to the sign.
+    assertThat(dict.getFactorCount()).isEqualTo(2);
+    for (int i = 0; i < n; i++) {
+      assertThat(dict.get(i)).isEqualTo(RationalFunction.of("x/(1+x)^" + (i + 1) + "/(2-y)"));
+      assertThat(dict.getCachedWeight()).isAtMost(2 * 16);
+    }
+    // Repeated denominators are still encoded correctly.
+    assertThat(dict.add(RationalFunction.of("1/(1+x)/(2-y)"))).isEqualTo(n);
+    assertThat(dict.get(n)).isEqualTo(RationalFunction.of("1/(1+x)/(2-y)"));
+  }
+}
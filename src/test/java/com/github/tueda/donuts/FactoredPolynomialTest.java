@@ -0,0 +1,76 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class FactoredPolynomialTest {
+  @Test
+  public void arithmetic() {
+    Polynomial[] pp = Polynomial.of("2+2*x", "1-y", "x+y", "3");
+
+    FactoredPolynomial a = new FactoredPolynomial(pp[0]);
+    FactoredPolynomial b = new FactoredPolynomial(pp[1]);
+    FactoredPolynomial c = new FactoredPolynomial(pp[2]);
+    FactoredPolynomial d = new FactoredPolynomial(pp[3]);
+
+    // The content and sign go to the unit.
+    assertThat(a.getUnit()).isEqualTo(new Polynomial(2));
+    assertThat(a.getFactor(0)).isEqualTo(new Polynomial("1+x"));
+    assertThat(b.getUnit()).isEqualTo(new Polynomial(-1));
+    assertThat(b.getFactor(0)).isEqualTo(new Polynomial("-1+y"));
+    assertThat(d.size()).isEqualTo(0);
+
+    FactoredPolynomial abc = a.multiply(b).multiply(c).multiply(a);
+    assertThat(abc.size()).isEqualTo(3);
+    assertThat(abc.getExponent(0)).isEqualTo(2);
+    assertThat(abc.toPolynomial()).isEqualTo(pp[0].pow(2).multiply(pp[1]).multiply(pp[2]));
+
+    assertThat(abc.pow(3).toPolynomial()).isEqualTo(abc.toPolynomial().pow(3));
+    assertThat(abc.pow(3).getExponent(0)).isEqualTo(6);
+    assertThat(abc.pow(0)).isEqualTo(new FactoredPolynomial(Polynomial.ONE));
+    assertThrows(IllegalArgumentException.class, () -> abc.pow(-1));
+
+    // Exact division by known factors.
+    FactoredPolynomial q = abc.divideExact(a.multiply(c));
+    assertThat(q.size()).isEqualTo(2);
+    assertThat(q.toPolynomial()).isEqualTo(pp[0].multiply(pp[1]));
+
+    // Fallback to the expanded forms.
+    FactoredPolynomial r = abc.divideExact(new FactoredPolynomial(new Polynomial("1+2*x+x^2")));
+    assertThat(r.toPolynomial()).isEqualTo(new Polynomial("4*(1-y)*(x+y)"));
+    assertThrows(ArithmeticException.class, () -> abc.divideExact(d.multiply(d)));
+
+    // The common factors are kept in the sum.
+    FactoredPolynomial s = abc.add(a.multiply(d));
+    assertThat(s.toPolynomial()).isEqualTo(abc.toPolynomial().add(pp[0].multiply(pp[3])));
+    assertThat(s.getFactor(s.size() - 1)).isEqualTo(new Polynomial("1+x"));
+
+    assertThat(abc.subtract(abc).isZero()).isTrue();
+    assertThat(abc.subtract(abc).size()).isEqualTo(0);
+    assertThat(abc.negate().toPolynomial()).isEqualTo(abc.toPolynomial().negate());
+    assertThat(abc.multiply(new FactoredPolynomial(Polynomial.ZERO)).isZero()).isTrue();
+  }
+
+  @Test
+  public void fromFactorization() {
+    Polynomial p = new Polynomial("-2*(1+x)^2*(1-y)");
+    FactoredPolynomial a = new FactoredPolynomial(p.factorization());
+    assertThat(a.toPolynomial()).isEqualTo(p);
+    assertThat(a.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void equalsAndToString() {
+    FactoredPolynomial a = new FactoredPolynomial(new Polynomial("1+x")).pow(2);
+    FactoredPolynomial b = new FactoredPolynomial(new Polynomial("1+2*x+x^2"));
+    assertThat(a).isEqualTo(b);
+    assertThat(a.hashCode()).isEqualTo(b.hashCode());
+    assertThat(a).isNotEqualTo(new FactoredPolynomial(new Polynomial("1+x")));
+
+    assertThat(a.toString()).isEqualTo("(1+x)^2");
+    assertThat(a.negate().toString()).isEqualTo("-1*(1+x)^2");
+    assertThat(new FactoredPolynomial(new Polynomial(5)).toString()).isEqualTo("5");
+  }
+}
@@ -0,0 +1,110 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class FactoredRationalFunctionTest {
+  @Test
+  public void arithmetic() {
+    RationalFunction[] rr =
+        RationalFunction.of(
+            "1/(1+x)", "x/(1+x)^2", "(1+y)/((1+x)*(2+y))", "-3/(2+y)", "x+y", "2/(1-x^2)");
+
+    RationalFunction sum = RationalFunction.ZERO;
+    FactoredRationalFunction factoredSum = new FactoredRationalFunction(Polynomial.ZERO);
+    RationalFunction product = RationalFunction.ONE;
+    FactoredRationalFunction factoredProduct = new FactoredRationalFunction(Polynomial.ONE);
+    for (RationalFunction r : rr) {
+      sum = sum.add(r);
+      factoredSum = factoredSum.add(new FactoredRationalFunction(r));
+      product = product.multiply(r);
+      factoredProduct = factoredProduct.multiply(new FactoredRationalFunction(r));
+    }
+    assertThat(factoredSum.toRationalFunction()).isEqualTo(sum);
+    assertThat(factoredProduct.toRationalFunction()).isEqualTo(product);
+
+    FactoredRationalFunction a = new FactoredRationalFunction(rr[2]);
+    FactoredRationalFunction b = new FactoredRationalFunction(rr[5]);
+    assertThat(a.subtract(b).toRationalFunction()).isEqualTo(rr[2].subtract(rr[5]));
+    assertThat(a.divide(b).toRationalFunction()).isEqualTo(rr[2].divide(rr[5]));
+    assertThat(a.negate().toRationalFunction()).isEqualTo(rr[2].negate());
+    assertThat(a.pow(-3).toRationalFunction()).isEqualTo(rr[2].pow(-3));
+    assertThat(a.pow(0).toRationalFunction()).isEqualTo(RationalFunction.ONE);
+    assertThat(a.subtract(a).isZero()).isTrue();
+
+    FactoredRationalFunction zero = new FactoredRationalFunction(Polynomial.ZERO);
+    assertThrows(ArithmeticException.class, () -> a.divide(zero));
+    assertThrows(ArithmeticException.class, () -> zero.pow(-1));
+  }
+
+  @Test
+  public void exponentArithmetic() {
+    FactoredRationalFunction b = new FactoredRationalFunction(new Polynomial("1+x"));
+    FactoredRationalFunction a = new FactoredRationalFunction(new Polynomial("x")).divide(b.pow(2));
+    assertThat(a.toRationalFunction()).isEqualTo(new RationalFunction("x/(1+x)^2"));
+
+    // (1+x) cancels without any GCD.
+    FactoredRationalFunction c = a.multiply(b).multiply(b);
+    assertThat(c.size()).isEqualTo(1);
+    assertThat(c.toRationalFunction()).isEqualTo(new RationalFunction("x"));
+
+    FactoredRationalFunction d = a.pow(2).divide(b);
+    assertThat(d.getDenominator().toPolynomial()).isEqualTo(new Polynomial("(1+x)^5"));
+    assertThat(d.getNumerator().toPolynomial()).isEqualTo(new Polynomial("x^2"));
+  }
+
+  @Test
+  public void additionWithCommonFactors() {
+    FactoredRationalFunction a = new FactoredRationalFunction(RationalFunction.of("1/(1-x)"));
+    FactoredRationalFunction b = new FactoredRationalFunction(RationalFunction.of("x/(1-x)"));
+
+    // (1-x)/(1-x) cancels.
+    FactoredRationalFunction c = a.subtract(b);
+    assertThat(c.size()).isEqualTo(0);
+    assertThat(c.toRationalFunction()).isEqualTo(RationalFunction.ONE);
+
+    // The denominators are combined over the coprime basis {1+x, -1+x}.
+    FactoredRationalFunction d =
+        new FactoredRationalFunction(RationalFunction.of("1/(1-x^2)"))
+            .add(new FactoredRationalFunction(RationalFunction.of("1/(1+x)")));
+    assertThat(d.toRationalFunction()).isEqualTo(RationalFunction.of("(2-x)/(1-x^2)"));
+    assertThat(d.getDenominator().size()).isEqualTo(2);
+  }
+
+  @Test
+  public void repeatedAddition() {
+    // The basis kept from the previous sums is refined by the new denominators.
+    String[] terms = {"1/(1-x^2)", "1/(1+x)", "x/(1-x)^2", "1/(1-x^4)", "y/(1+x)", "1/(x*y)"};
+    FactoredRationalFunction sum = new FactoredRationalFunction(Polynomial.ZERO);
+    RationalFunction expected = RationalFunction.ZERO;
+    for (String t : terms) {
+      sum = sum.add(new FactoredRationalFunction(RationalFunction.of(t)));
+      expected = expected.add(RationalFunction.of(t));
+      assertThat(sum.toRationalFunction()).isEqualTo(expected);
+    }
+    for (String t : terms) {
+      sum = sum.subtract(new FactoredRationalFunction(RationalFunction.of(t)));
+    }
+    assertThat(sum.isZero()).isTrue();
+  }
+
+  @Test
+  public void equalsAndToString() {
+    FactoredRationalFunction a =
+        new FactoredRationalFunction(
+            new FactoredPolynomial(new Polynomial("2*(1+x)")),
+            new FactoredPolynomial(new Polynomial("4*(1+y)")));
+    FactoredRationalFunction b = new FactoredRationalFunction(RationalFunction.of("(1+x)/(2+2*y)"));
+    assertThat(a).isEqualTo(b);
+    assertThat(a.hashCode()).isEqualTo(b.hashCode());
+    assertThat(a.toString()).isEqualTo("(1/2)*(1+x)*(1+y)^-1");
+
+    assertThrows(
+        ArithmeticException.class,
+        () ->
+            new FactoredRationalFunction(
+                new FactoredPolynomial(Polynomial.ONE), new FactoredPolynomial(Polynomial.ZERO)));
+  }
+}
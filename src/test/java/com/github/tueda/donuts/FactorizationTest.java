@@ -0,0 +1,97 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class FactorizationTest {
+  @Test
+  public void factorization() {
+    Polynomial p = Polynomial.of("-2*x^3*(1+x)^2*(1+y)");
+    Factorization f = p.factorization();
+
+    assertThat(f.getVariables()).isEqualTo(p.getVariables());
+    assertThat(f.getUnit()).isEqualTo(Polynomial.of("-2"));
+    assertThat(f.size()).isEqualTo(3);
+    assertThat(Arrays.asList(f.getFactors()))
+        .containsExactly((Object[]) Polynomial.of("x", "1+x", "1+y"));
+    for (int i = 0; i < f.size(); i++) {
+      assertThat(f.getFactor(i)).isEqualTo(f.getFactors()[i]);
+      assertThat(f.getExponent(i)).isEqualTo(f.getExponents()[i]);
+      if (f.getFactor(i).equals(Polynomial.of("x"))) {
+        assertThat(f.getExponent(i)).isEqualTo(3);
+      }
+      if (f.getFactor(i).equals(Polynomial.of("1+x"))) {
+        assertThat(f.getExponent(i)).isEqualTo(2);
+      }
+    }
+
+    assertThat(f.expand()).containsExactlyElementsIn(p.factors()).inOrder();
+    assertThat(f.toPolynomial()).isEqualTo(p);
+  }
+
+  @Test
+  public void constant() {
+    for (String s : new String[] {"0", "1", "-3"}) {
+      Polynomial p = Polynomial.of(s);
+      Factorization f = p.factorization();
+      assertThat(f.getUnit()).isEqualTo(p);
+      assertThat(f.size()).isEqualTo(0);
+      assertThat(f.expand()).containsExactly(p);
+      assertThat(f.toPolynomial()).isEqualTo(p);
+    }
+  }
+
+  @Test
+  public void highMultiplicity() {
+    Polynomial x = Polynomial.of("x");
+    Polynomial p = x.pow(100000);
+    Factorization f = p.factorization();
+    assertThat(f.size()).isEqualTo(1);
+    assertThat(f.getFactor(0)).isEqualTo(x);
+    assertThat(f.getExponent(0)).isEqualTo(100000);
+
+    List<Polynomial> list = f.expand();
+    assertThat(list.size()).isEqualTo(100000);
+    assertThat(list.get(0)).isEqualTo(x);
+    assertThat(list.get(99999)).isEqualTo(x);
+    assertThrows(IndexOutOfBoundsException.class, () -> list.get(100000));
+    assertThrows(UnsupportedOperationException.class, () -> list.set(0, x));
+  }
+
+  @Test
+  public void multiply() {
+    Factorization f1 = Polynomial.of("3*x^2*(1+x)").factorization();
+    Factorization f2 = Polynomial.of("-2*(1+x)^3*(1+y)").factorization();
+    Factorization f = f1.multiply(f2);
+
+    assertThat(f.getVariables()).isEqualTo(VariableSet.of("x", "y"));
+    assertThat(f.getUnit()).isEqualTo(Polynomial.of("-6"));
+    assertThat(f.size()).isEqualTo(3);
+    assertThat(f.toPolynomial()).isEqualTo(Polynomial.of("-6*x^2*(1+x)^4*(1+y)"));
+    for (int i = 0; i < f.size(); i++) {
+      if (f.getFactor(i).equals(Polynomial.of("1+x"))) {
+        assertThat(f.getExponent(i)).isEqualTo(4);
+      }
+    }
+  }
+
+  @Test
+  public void squareFreeFactorization() {
+    Polynomial p = Polynomial.of("5*(1+x)^2*(2+y)^2*(1+x+y)");
+    Factorization f = p.squareFreeFactorization();
+    assertThat(f.getUnit()).isEqualTo(Polynomial.of("5"));
+    assertThat(f.toPolynomial()).isEqualTo(p);
+    assertThat(f.expand()).containsExactlyElementsIn(p.squareFreeFactors()).inOrder();
+  }
+
+  @Test
+  public void testToString() {
+    assertThat(Polynomial.of("-2").factorization().toString()).isEqualTo("-2");
+    assertThat(Polynomial.of("x^2").factorization().toString()).isEqualTo("(x)^2");
+    assertThat(Polynomial.of("-x^2*y").factorization().toString()).isEqualTo("-1*(y)*(x)^2");
+  }
+}
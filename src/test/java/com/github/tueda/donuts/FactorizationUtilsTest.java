@@ -0,0 +1,48 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import cc.redberry.rings.bigint.BigInteger;
+import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class FactorizationUtilsTest {
+  @Test
+  public void separate() {
+    checkSeparate("1+x+x^2*y", 1);
+    checkSeparate("(1+x)*(1+x+y)", 1);
+    checkSeparate("(1+x)*(2+y)", 2);
+    checkSeparate("(1+x+x^2*y)*(2-z^3+w*z)*(3+u)^2", 3);
+    checkSeparate("-(1-x)*(1+y)*(1+z)*(1+w)", 4);
+  }
+
+  void checkSeparate(String poly_str, int numBlocks) {
+    Polynomial p = Polynomial.of(poly_str);
+    MultivariatePolynomial<BigInteger> raw = p.getRawPolynomialWithoutCopy();
+    List<MultivariatePolynomial<BigInteger>> blocks = FactorizationUtils.separate(raw);
+    assertThat(blocks).hasSize(numBlocks);
+
+    MultivariatePolynomial<BigInteger> product = raw.createOne();
+    for (MultivariatePolynomial<BigInteger> b : blocks) {
+      product.multiply(b);
+    }
+    if (product.signumOfLC() != raw.signumOfLC()) {
+      product.negate();
+    }
+    assertThat(product).isEqualTo(raw);
+  }
+
+  @Test
+  public void factors() {
+    Polynomial p = Polynomial.of("-6*x^2*z*(1+x+y)^2*(1-x-y)*(2+z)^3*(1+z+z^2)*(1+w^2)");
+    Polynomial[] answer =
+        Polynomial.of(
+            "6", "z", "x", "x", "1+x+y", "1+x+y", "-1+x+y", "2+z", "2+z", "2+z", "1+z+z^2",
+            "1+w^2");
+    assertThat(Arrays.asList(p.factors())).containsExactly((Object[]) answer);
+    assertThat(p.factors()[0]).isEqualTo(answer[0]);
+    assertThat(p.factorization().toPolynomial()).isEqualTo(p);
+  }
+}
@@ -32,6 +32,7 @@ public class ImmutabilityTest {
     checkPolynomialBinaryOp((p1, p2) -> Polynomial.lcmOf(p1, p2));
     checkPolynomialMultaryOp((pp) -> Polynomial.lcmOf(pp));
     checkPolynomialUnaryOp(p -> p.factors()[0]);
+    checkPolynomialUnaryOp(p -> p.squareFreeFactors()[0]);
     checkPolynomialUnaryOp(p -> p.substitute(Polynomial.of("x"), Polynomial.of("x^2+y")));
     checkPolynomialUnaryOp(p -> p.evaluate(Variable.of("x"), 42));
     checkPolynomialUnaryOp(p -> p.evaluate(Variable.of("x", "y"), ints(42, 81)));
@@ -0,0 +1,86 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class LazyRationalFunctionTest {
+  @Test
+  public void arithmetic() {
+    RationalFunction[] rr =
+        RationalFunction.of("1/(1+x)", "x/(1+x)^2", "(1+y)/((1+x)*(2+y))", "-3/(2+y)", "x+y");
+
+    RationalFunction sum = RationalFunction.ZERO;
+    LazyRationalFunction lazySum = new LazyRationalFunction();
+    RationalFunction product = RationalFunction.ONE;
+    LazyRationalFunction lazyProduct = new LazyRationalFunction(Polynomial.ONE);
+    for (RationalFunction r : rr) {
+      sum = sum.add(r);
+      lazySum = lazySum.add(new LazyRationalFunction(r));
+      product = product.multiply(r);
+      lazyProduct = lazyProduct.multiply(new LazyRationalFunction(r));
+    }
+    assertThat(lazySum.normalize()).isEqualTo(sum);
+    assertThat(lazyProduct.normalize()).isEqualTo(product);
+
+    // The denominators are kept as given, without GCDs.
+    assertThat(lazySum.getDenominatorFactors())
+        .isEqualTo(
+            new Polynomial[] {
+              rr[0].getDenominator(),
+              rr[1].getDenominator(),
+              rr[2].getDenominator(),
+              rr[3].getDenominator()
+            });
+
+    // Identical denominators are combined.
+    LazyRationalFunction twice =
+        new LazyRationalFunction(rr[2]).add(new LazyRationalFunction(rr[2]));
+    assertThat(twice.getDenominatorFactors()).isEqualTo(new Polynomial[] {rr[2].getDenominator()});
+
+    LazyRationalFunction a = new LazyRationalFunction(rr[2]);
+    LazyRationalFunction b = new LazyRationalFunction(rr[3]);
+    assertThat(a.subtract(b).normalize()).isEqualTo(rr[2].subtract(rr[3]));
+    assertThat(a.divide(b).normalize()).isEqualTo(rr[2].divide(rr[3]));
+    assertThat(a.negate().normalize()).isEqualTo(rr[2].negate());
+    assertThat(a.subtract(a).isZero()).isTrue();
+
+    assertThrows(ArithmeticException.class, () -> a.divide(new LazyRationalFunction()));
+  }
+
+  @Test
+  public void normalization() {
+    LazyRationalFunction a = new LazyRationalFunction(RationalFunction.of("1/(1-x)"));
+    LazyRationalFunction b = new LazyRationalFunction(RationalFunction.of("x/(1-x)"));
+    LazyRationalFunction c = a.subtract(b);
+
+    // (1-x)/(1-x) is not cancelled until needed.
+    assertThat(c.size()).isEqualTo(4);
+    assertThat(c).isEqualTo(new LazyRationalFunction(Polynomial.ONE));
+    assertThat(c.hashCode()).isEqualTo(new LazyRationalFunction(Polynomial.ONE).hashCode());
+    assertThat(c.toString()).isEqualTo("1");
+    assertThat(c.getNumerator()).isEqualTo(Polynomial.ONE);
+    assertThat(c.getDenominator()).isEqualTo(Polynomial.ONE);
+  }
+
+  @Test
+  public void threshold() {
+    LazyRationalFunction a = new LazyRationalFunction(RationalFunction.of("1/(1-x)"));
+    LazyRationalFunction b = new LazyRationalFunction(RationalFunction.of("x/(1-x)"));
+    assertThat(a.getNormalizationThreshold())
+        .isEqualTo(LazyRationalFunction.DEFAULT_NORMALIZATION_THRESHOLD);
+    assertThrows(IllegalArgumentException.class, () -> a.withNormalizationThreshold(0));
+
+    LazyRationalFunction a3 = a.withNormalizationThreshold(3);
+    assertThat(a3.getNormalizationThreshold()).isEqualTo(3);
+    assertThat(a.getNormalizationThreshold())
+        .isEqualTo(LazyRationalFunction.DEFAULT_NORMALIZATION_THRESHOLD);
+
+    // The smaller threshold of the operands applies.
+    assertThat(a3.subtract(b).size()).isEqualTo(1);
+    assertThat(b.subtract(a3).size()).isEqualTo(1);
+    assertThat(a3.subtract(b).getNormalizationThreshold()).isEqualTo(3);
+    assertThat(a.subtract(b).size()).isEqualTo(4);
+  }
+}
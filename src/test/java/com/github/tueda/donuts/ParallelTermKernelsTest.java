@@ -0,0 +1,91 @@
+package com.github.tueda.donuts;
+
+import static com.github.tueda.donuts.TestUtils.ints;
+import static com.github.tueda.donuts.TestUtils.withParallelKernels;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import cc.redberry.rings.bigint.BigInteger;
+import cc.redberry.rings.poly.multivar.Monomial;
+import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+public class ParallelTermKernelsTest {
+  @Test
+  public void polynomial() {
+    Polynomial p = Polynomial.of("(1+x+y+z+w)^8-x^3*y*(2+z)^4");
+    Map<Polynomial, Polynomial> rules = new LinkedHashMap<>();
+    rules.put(Polynomial.of("x*y"), Polynomial.of("1-a"));
+    rules.put(Polynomial.of("z^2"), Polynomial.of("b"));
+
+    checkPolynomial(p, q -> q.substitute(Polynomial.of("x*z"), Polynomial.of("a+b-1")));
+    checkPolynomial(p, q -> q.substitute(rules));
+    checkPolynomial(p, q -> q.evaluate(Variable.of("x"), 3));
+    checkPolynomial(p, q -> q.evaluate(Variable.of("x", "y"), ints(-2, 5)));
+    checkPolynomial(p, q -> q.evaluateAtZero(Variable.of("z")));
+    checkPolynomial(p, q -> q.evaluateAtZero(VariableSet.of("x", "y")));
+    checkPolynomial(p, q -> q.evaluateAtOne(VariableSet.of("y", "w")));
+    checkPolynomial(p, q -> q.shift(Variable.of("y"), -1));
+    checkPolynomial(p, q -> q.shift(Variable.of("x", "z"), ints(2, 7)));
+    checkPolynomial(p, q -> q.derivative(Variable.of("w"), 3));
+    Variable[] xyzw = Variable.of("x", "y", "z", "w");
+    checkPolynomial(p, q -> new Polynomial(q.evaluateToInteger(xyzw, ints(2, -3, 5, 7))));
+  }
+
+  @Test
+  public void rationalFunction() {
+    RationalFunction r = RationalFunction.of("(1+x+y+z)^6/(1-x-y*z)^3");
+
+    checkRationalFunction(
+        r, q -> q.substitute(Polynomial.of("x*y"), RationalFunction.of("(1+a)/(1-z)")));
+    checkRationalFunction(r, q -> q.evaluate(Variable.of("x"), 3));
+    checkRationalFunction(r, q -> q.evaluateAtZero(Variable.of("z")));
+    checkRationalFunction(r, q -> q.shift(Variable.of("y"), -1));
+    checkRationalFunction(r, q -> q.derivative(Variable.of("x"), 2));
+  }
+
+  @Test
+  public void threshold() {
+    assertThat(withParallelKernels(ParallelTermKernels::getThreshold)).isEqualTo(1);
+    assertThrows(IllegalArgumentException.class, () -> ParallelTermKernels.setThreshold(0));
+  }
+
+  @Test
+  public void chunks() {
+    MultivariatePolynomial<BigInteger> raw =
+        Polynomial.of("(1+x+y+z)^6").getRawPolynomialWithoutCopy();
+    AtomicInteger nCalls = new AtomicInteger();
+    int nTerms =
+        withParallelKernels(
+            () ->
+                ParallelTermKernels.reduceTerms(
+                    raw,
+                    terms -> {
+                      nCalls.incrementAndGet();
+                      int n = 0;
+                      for (Monomial<BigInteger> t : terms) {
+                        n++;
+                      }
+                      return n;
+                    },
+                    Integer::sum));
+    assertThat(nTerms).isEqualTo(raw.size());
+    // The parallel path must have been taken.
+    assertThat(nCalls.get()).isGreaterThan(1);
+  }
+
+  private static void checkPolynomial(Polynomial p, Function<Polynomial, Polynomial> operation) {
+    Polynomial expected = operation.apply(p);
+    assertThat(withParallelKernels(() -> operation.apply(p))).isEqualTo(expected);
+  }
+
+  private static void checkRationalFunction(
+      RationalFunction r, Function<RationalFunction, RationalFunction> operation) {
+    RationalFunction expected = operation.apply(r);
+    assertThat(withParallelKernels(() -> operation.apply(r))).isEqualTo(expected);
+  }
+}
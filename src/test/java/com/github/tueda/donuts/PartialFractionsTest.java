@@ -0,0 +1,71 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class PartialFractionsTest {
+  private static void checkDecomposition(final RationalFunction r, final Variable x) {
+    PartialFractions pf = r.apart(x);
+    assertThat(pf.getVariable()).isEqualTo(x);
+    assertThat(pf.toRationalFunction()).isEqualTo(r);
+    assertThat(pf.getPolynomialPart().getDenominator().degree(x)).isEqualTo(0);
+    for (int i = 0; i < pf.size(); i++) {
+      RationalFunction n = pf.getNumerator(i);
+      assertThat(n.isZero()).isFalse();
+      assertThat(n.getDenominator().degree(x)).isEqualTo(0);
+      assertThat(n.getNumerator().degree(x)).isLessThan(pf.getDenominatorFactor(i).degree(x));
+      assertThat(pf.getExponent(i)).isGreaterThan(0);
+    }
+  }
+
+  @Test
+  public void simple() {
+    Variable x = Variable.of("x");
+    PartialFractions pf = RationalFunction.of("1/((x+1)*(x+2))").apart(x);
+    assertThat(pf.getPolynomialPart()).isEqualTo(RationalFunction.ZERO);
+    assertThat(pf.size()).isEqualTo(2);
+    List<RationalFunction> terms = new ArrayList<>();
+    for (int i = 0; i < pf.size(); i++) {
+      terms.add(pf.getTerm(i));
+    }
+    assertThat(terms).containsExactlyElementsIn(RationalFunction.of("1/(x+1)", "-1/(x+2)"));
+  }
+
+  @Test
+  public void repeatedFactors() {
+    Variable x = Variable.of("x");
+    RationalFunction r = RationalFunction.of("(x^3+y)/((x-y)^2*(x+1))");
+    PartialFractions pf = r.apart(x);
+    assertThat(pf.getPolynomialPart()).isEqualTo(RationalFunction.ONE);
+    assertThat(pf.size()).isEqualTo(3);
+    checkDecomposition(r, x);
+
+    checkDecomposition(RationalFunction.of("1/(x^3*(1+x)^2)"), x);
+    checkDecomposition(RationalFunction.of("(1+x^5*y)/(x^2+y)^3/(2*x-z)/(3+y)"), x);
+    checkDecomposition(RationalFunction.of("(1+x^5*y)/(x^2+y)^3/(2*x-z)/(3+y)"), Variable.of("y"));
+  }
+
+  @Test
+  public void trivial() {
+    Variable x = Variable.of("x");
+    RationalFunction r = RationalFunction.of("x^2/(1+y)");
+    PartialFractions pf = r.apart(x);
+    assertThat(pf.getPolynomialPart()).isEqualTo(r);
+    assertThat(pf.size()).isEqualTo(0);
+    assertThat(pf.toRationalFunction()).isEqualTo(r);
+
+    pf = RationalFunction.of("x/(x^2+y)").apart(Variable.of("y"));
+    assertThat(pf.getPolynomialPart()).isEqualTo(RationalFunction.ZERO);
+    assertThat(pf.size()).isEqualTo(1);
+    assertThat(pf.getNumerator(0)).isEqualTo(RationalFunction.of("x"));
+    assertThat(pf.getDenominatorFactor(0)).isEqualTo(Polynomial.of("x^2+y"));
+    assertThat(pf.getExponent(0)).isEqualTo(1);
+
+    pf = RationalFunction.ZERO.apart(x);
+    assertThat(pf.size()).isEqualTo(0);
+    assertThat(pf.toString()).isEqualTo("0");
+  }
+}
@@ -0,0 +1,59 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class PolynomialCacheTest {
+  @Test
+  public void test() {
+    Polynomial a = Polynomial.of("(1+x+y)*(2+y+z)");
+    Polynomial b = Polynomial.of("(1+x+y)*(3+z)");
+    Polynomial g = Polynomial.of("1+x+y");
+
+    assertThat(PolynomialCache.isEnabled()).isFalse();
+    assertThat(PolynomialCache.getStatistics().getHitCount()).isEqualTo(0);
+
+    try {
+      PolynomialCache.enable();
+      assertThat(PolynomialCache.isEnabled()).isTrue();
+
+      assertThat(a.gcd(b)).isEqualTo(g);
+      assertThat(PolynomialCache.getStatistics().getMissCount()).isEqualTo(1);
+
+      // GCD is commutative.
+      assertThat(b.gcd(a)).isEqualTo(g);
+      assertThat(PolynomialCache.getStatistics().getHitCount()).isEqualTo(1);
+
+      // Unused variables don't matter.
+      VariableSet v = VariableSet.of("w", "x", "y", "z");
+      Polynomial gg = a.translate(v).gcd(b);
+      assertThat(gg).isEqualTo(g);
+      assertThat(gg.getVariables()).isEqualTo(v);
+      assertThat(PolynomialCache.getStatistics().getHitCount()).isEqualTo(2);
+
+      assertThat(a.lcm(b)).isEqualTo(Polynomial.of("(1+x+y)*(2+y+z)*(3+z)"));
+      assertThat(a.divideExact(g)).isEqualTo(Polynomial.of("2+y+z"));
+      assertThat(a.divideExact(g)).isEqualTo(Polynomial.of("2+y+z"));
+      assertThrows(ArithmeticException.class, () -> g.divideExact(a));
+
+      Polynomial p = Polynomial.of("-2*x^2*(1+x+y)");
+      Polynomial[] f = p.factors();
+      assertThat(p.factors()).isEqualTo(f);
+      assertThat(p.translate(v).factors()).isEqualTo(f);
+
+      PolynomialCache.Statistics stats = PolynomialCache.getStatistics();
+      assertThat(stats.getSize()).isEqualTo(4);
+      assertThat(stats.getWeight()).isGreaterThan(0L);
+      assertThat(stats.getHitRate()).isGreaterThan(0.0);
+
+      PolynomialCache.clear();
+      assertThat(PolynomialCache.getStatistics().getSize()).isEqualTo(0);
+    } finally {
+      PolynomialCache.disable();
+    }
+
+    assertThat(PolynomialCache.isEnabled()).isFalse();
+  }
+}
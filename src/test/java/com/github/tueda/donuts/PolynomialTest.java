@@ -2,6 +2,7 @@ package com.github.tueda.donuts;
 
 import static com.github.tueda.donuts.TestUtils.bigInts;
 import static com.github.tueda.donuts.TestUtils.ints;
+import static com.github.tueda.donuts.TestUtils.withParallelKernels;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -13,6 +14,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
@@ -781,6 +783,15 @@ public class PolynomialTest {
       Polynomial r = p2.multiply(p3);
       assertThat(Polynomial.lcmOf(new Polynomial[] {p1, p2, p3})).isEqualTo(r);
     }
+
+    {
+      Polynomial[] pp =
+          Polynomial.of(
+              "2*(1+x)*(2+y)", "3*(1+x)^2*(3+z)", "x*(2+y)^2*(3+z)", "4*y^2*(1+x)", "0*x");
+      Polynomial r = Polynomial.of("12*x*y^2*(1+x)^2*(2+y)^2*(3+z)");
+      assertThat(Polynomial.lcmOf(Arrays.copyOf(pp, 4))).isEqualTo(r);
+      assertThat(Polynomial.lcmOf(pp)).isEqualTo(Polynomial.ZERO);
+    }
   }
 
   @Test
@@ -845,6 +856,49 @@ public class PolynomialTest {
     }
   }
 
+  @Test
+  public void squareFreeFactors() {
+    checkNoSquareFreeFactorization("0");
+    checkNoSquareFreeFactorization("1");
+    checkNoSquareFreeFactorization("-42");
+    checkNoSquareFreeFactorization("x");
+
+    checkSquareFreeFactorization("-x", new String[] {"-1", "x"});
+    checkSquareFreeFactorization("x^2*y", new String[] {"y", "x", "x"});
+    checkSquareFreeFactorization("x^2-y^2", new String[] {"x^2-y^2"});
+    checkSquareFreeFactorization(
+        "-3*x*z^2*(x^2-y^2)^3",
+        new String[] {"-3", "z", "z", "x", "x^2-y^2", "x^2-y^2", "x^2-y^2"});
+    checkSquareFreeFactorization(
+        "2*(1+x)^2*(1+x+y)^3", new String[] {"2", "1+x", "1+x", "1+x+y", "1+x+y", "1+x+y"});
+  }
+
+  void checkNoSquareFreeFactorization(String poly_str) {
+    Polynomial p = new Polynomial(poly_str);
+    assertThat(p.squareFreeFactors()).isEqualTo(new Polynomial[] {p});
+  }
+
+  void checkSquareFreeFactorization(String poly_str, String[] factors_str) {
+    Polynomial p = Polynomial.of(poly_str);
+    Polynomial[] factors = p.squareFreeFactors();
+    Polynomial[] answer = Polynomial.of(factors_str);
+    // The factorization given in the test case must be correct.
+    assertThat(p).isEqualTo(Polynomial.productOf(answer));
+    // The factors may differ in their order.
+    assertThat(Arrays.asList(factors)).containsExactly((Object[]) answer);
+    for (int i = 0; i < factors.length; i++) {
+      // The overall constant factor comes first.
+      if (i >= 1) {
+        assertThat(factors[i].isConstant()).isFalse();
+      }
+      // Each factor, except the overall constant factor, has its leading term with a positive
+      // coefficient.
+      if (!factors[i].isConstant()) {
+        assertThat(factors[i].signum()).isGreaterThan(0);
+      }
+    }
+  }
+
   @Test
   public void substitute() {
     {
@@ -884,6 +938,82 @@ public class PolynomialTest {
     }
   }
 
+  @Test
+  public void substituteMap() {
+    {
+      // Simultaneous: the right-hand sides are not substituted again.
+      Map<Polynomial, Polynomial> rules = new LinkedHashMap<>();
+      rules.put(Polynomial.of("x"), Polynomial.of("y+z"));
+      rules.put(Polynomial.of("y"), Polynomial.of("x"));
+      assertThat(Polynomial.of("x^2+x*y+y^3").substitute(rules))
+          .isEqualTo(Polynomial.of("(y+z)^2+(y+z)*x+x^3"));
+    }
+    {
+      // Non-interfering rules give the same result as the sequential substitutions.
+      Polynomial p = Polynomial.of("(1+x+y+z+w)^5");
+      Map<Polynomial, Polynomial> rules = new LinkedHashMap<>();
+      rules.put(Polynomial.of("x*y"), Polynomial.of("a-b"));
+      rules.put(Polynomial.of("z^2"), Polynomial.of("1+c"));
+      rules.put(Polynomial.of("u"), Polynomial.of("2"));
+      Polynomial q = p;
+      for (Map.Entry<Polynomial, Polynomial> rule : rules.entrySet()) {
+        q = q.substitute(rule.getKey(), rule.getValue());
+      }
+      assertThat(p.substitute(rules)).isEqualTo(q);
+    }
+    {
+      // Overlapping left-hand sides: the earlier rule has priority.
+      Polynomial p = Polynomial.of("x^3*y+x*y^2");
+      Map<Polynomial, Polynomial> rules1 = new LinkedHashMap<>();
+      rules1.put(Polynomial.of("x*y"), Polynomial.of("a"));
+      rules1.put(Polynomial.of("x"), Polynomial.of("b"));
+      assertThat(p.substitute(rules1)).isEqualTo(Polynomial.of("a*b^2+a*y"));
+      Map<Polynomial, Polynomial> rules2 = new LinkedHashMap<>();
+      rules2.put(Polynomial.of("x"), Polynomial.of("b"));
+      rules2.put(Polynomial.of("x*y"), Polynomial.of("a"));
+      assertThat(p.substitute(rules2)).isEqualTo(Polynomial.of("b^3*y+b*y^2"));
+    }
+    {
+      Polynomial p = Polynomial.of("1+x");
+      assertThat(p.substitute(new LinkedHashMap<>())).isSameInstanceAs(p);
+      Map<Polynomial, Polynomial> rules = new LinkedHashMap<>();
+      rules.put(Polynomial.of("a"), Polynomial.of("b"));
+      assertThat(p.substitute(rules)).isSameInstanceAs(p);
+      rules.put(Polynomial.of("2*x"), Polynomial.of("b"));
+      assertThrows(IllegalArgumentException.class, () -> p.substitute(rules));
+    }
+  }
+
+  @Test
+  public void flatMapTerms() {
+    {
+      Polynomial p = Polynomial.of("(1+x+y)^3");
+      assertThat(p.getVariables()).isEqualTo(VariableSet.of("x", "y"));
+      Polynomial t = Polynomial.of("t");
+      TermFunction f = (c, e) -> new Polynomial(c).multiply(t.pow(e[0] + e[1]));
+      assertThat(p.flatMapTerms(f)).isEqualTo(Polynomial.of("(1+2*t)^3"));
+    }
+    {
+      Polynomial p = Polynomial.of("1+x+x^2+x^3");
+      TermFunction f = (c, e) -> e[0] % 2 == 0 ? Polynomial.ZERO : Polynomial.of("a-x");
+      assertThat(p.flatMapTerms(f)).isEqualTo(Polynomial.of("2*a-2*x"));
+      assertThat(p.flatMapTerms((c, e) -> Polynomial.ZERO)).isEqualTo(Polynomial.ZERO);
+      TermFunction g = (c, e) -> Polynomial.of("x").multiply(new Polynomial(c));
+      assertThat(new Polynomial(3).flatMapTerms(g)).isEqualTo(Polynomial.of("3*x"));
+    }
+    {
+      Polynomial p = Polynomial.of("(1+x+y+z)^8");
+      TermFunction f =
+          (c, e) ->
+              new Polynomial(c)
+                  .multiply(Polynomial.of("a").pow(e[0]))
+                  .multiply(Polynomial.of("b+y").pow(e[1] + e[2]));
+      Polynomial expected = p.flatMapTerms(f);
+      assertThat(expected).isEqualTo(Polynomial.of("(1+a+2*b+2*y)^8"));
+      assertThat(withParallelKernels(() -> p.flatMapTerms(f))).isEqualTo(expected);
+    }
+  }
+
   @Test
   public void evaluateAtInt() {
     String s = "(1+x)^4*(2+y)^3*(3+z)^2*(4+w)";
@@ -979,6 +1109,35 @@ public class PolynomialTest {
         IllegalArgumentException.class, () -> a.evaluate(Variable.of("x", "y"), bigInts(1, 2, 3)));
   }
 
+  @Test
+  public void evaluateToInteger() {
+    Polynomial a = Polynomial.of("(1+x)^4*(2+y)^3*(3-z)^2*(4+w)+x^100");
+
+    {
+      BigInteger b = a.evaluateToInteger(Variable.of("w", "x", "y", "z", "a"), ints(1, 2, 3, 4, 5));
+      Polynomial c = a.evaluate(Variable.of("w", "x", "y", "z"), ints(1, 2, 3, 4));
+      assertThat(new Polynomial(b)).isEqualTo(c);
+    }
+
+    {
+      BigInteger b = a.evaluateToInteger(Variable.of("w", "x", "y", "z"), bigInts(-1, 0, 3, 3));
+      assertThat(b).isEqualTo(BigInteger.ZERO);
+    }
+
+    Variable[] x = {Variable.of("x")};
+    assertThat(Polynomial.of("x^1000-1").evaluateToInteger(x, ints(-1))).isEqualTo(BigInteger.ZERO);
+    assertThat(Polynomial.of("-7").evaluateToInteger(new Variable[0], ints()))
+        .isEqualTo(BigInteger.valueOf(-7));
+    assertThat(Polynomial.ZERO.evaluateToInteger(x, ints(3))).isEqualTo(BigInteger.ZERO);
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> a.evaluateToInteger(Variable.of("x", "y", "z"), ints(1, 2, 3)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> a.evaluateToInteger(Variable.of("x", "y"), bigInts(1)));
+  }
+
   @Test
   public void evaluateAtZero() {
     String s = "(1+x)^4*(2+y)^3*(3+z)^2*(4+w)";
@@ -0,0 +1,62 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import cc.redberry.rings.Rational;
+import cc.redberry.rings.bigint.BigInteger;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class RationalEvaluatorTest {
+  @Test
+  public void evaluate() {
+    RationalFunction a = RationalFunction.of("(1+x)^4*(2-y)^3/(3+z)^2/(x^2+y^2+1)");
+    Variable[] variables = Variable.of("x", "y", "z");
+    RationalEvaluator evaluator = RationalEvaluator.of(a, variables);
+    assertThat(evaluator.getVariables()).isEqualTo(variables);
+
+    int n = 600;
+    long[][] points = new long[n][];
+    BigInteger[][] bigPoints = new BigInteger[n][];
+    for (int i = 0; i < n; i++) {
+      points[i] = new long[] {i % 7 - 3, i % 11 - 5, i % 13};
+      bigPoints[i] = new BigInteger[3];
+      for (int j = 0; j < 3; j++) {
+        bigPoints[i][j] = BigInteger.valueOf(points[i][j]);
+      }
+    }
+
+    List<Rational<BigInteger>> values = evaluator.evaluate(bigPoints);
+    assertThat(values).hasSize(n);
+    long p = 1_000_000_007L;
+    long[] modValues = evaluator.evaluateModP(points, p);
+    BigInteger bigP = BigInteger.valueOf(p);
+    for (int i = 0; i < n; i++) {
+      Rational<BigInteger> expected = a.evaluateToRational(variables, bigPoints[i]);
+      assertThat(values.get(i).numerator()).isEqualTo(expected.numerator());
+      assertThat(values.get(i).denominator()).isEqualTo(expected.denominator());
+      // num == value * den (mod p).
+      assertThat(
+              BigInteger.valueOf(modValues[i])
+                  .multiply(expected.denominator())
+                  .subtract(expected.numerator())
+                  .mod(bigP))
+          .isEqualTo(BigInteger.ZERO);
+    }
+  }
+
+  @Test
+  public void divisionByZero() {
+    RationalEvaluator evaluator =
+        RationalEvaluator.of(RationalFunction.of("1/(x-y)"), Variable.of("x", "y"));
+    BigInteger[][] points = {{BigInteger.ONE, BigInteger.ONE}};
+    assertThrows(ArithmeticException.class, () -> evaluator.evaluate(points));
+    assertThrows(
+        ArithmeticException.class, () -> evaluator.evaluateModP(new long[][] {{8, 1}}, 7));
+    // Not invertible modulo a composite number.
+    assertThrows(
+        ArithmeticException.class, () -> evaluator.evaluateModP(new long[][] {{3, 1}}, 4));
+    assertThat(evaluator.evaluateModP(new long[][] {{4, 1}}, 4)).isEqualTo(new long[] {3});
+  }
+}
@@ -6,12 +6,16 @@ import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import cc.redberry.rings.Rational;
 import cc.redberry.rings.bigint.BigInteger;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 
 public class RationalFunctionTest {
@@ -361,6 +365,19 @@ public class RationalFunctionTest {
     assertThat(one.reciprocal()).isEqualTo(one);
   }
 
+  @Test
+  void manyVariables() {
+    StringBuilder sb = new StringBuilder("1");
+    for (int i = 0; i < 400; i++) {
+      sb.append("+x").append(i);
+    }
+    Polynomial p = new Polynomial(sb.toString());
+    RationalFunction r = new RationalFunction(Polynomial.ONE, p);
+    assertThat(r.getVariables().size()).isEqualTo(400);
+    assertThat(r.multiply(p)).isEqualTo(RationalFunction.ONE);
+    assertThat(RationalFunction.of(r.toString())).isEqualTo(r);
+  }
+
   @Test
   void add() {
     RationalFunction r = RationalFunction.of("(1-y)/(1+x)/(1+x-y+z)");
@@ -368,6 +385,21 @@ public class RationalFunctionTest {
     RationalFunction t = RationalFunction.of("1/(1+x)");
 
     assertThat(r.add(s)).isEqualTo(t);
+
+    // With polynomials.
+    Polynomial p = Polynomial.of("1+y");
+    assertThat(t.add(p)).isEqualTo(RationalFunction.of("(2+x+y+x*y)/(1+x)"));
+    assertThat(t.add(new RationalFunction(p))).isEqualTo(t.add(p));
+    assertThat(new RationalFunction(p).add(t)).isEqualTo(t.add(p));
+    assertThat(t.add(Polynomial.ZERO)).isEqualTo(t);
+
+    // Integer denominators.
+    RationalFunction u = RationalFunction.of("(1+x)/6");
+    RationalFunction v = RationalFunction.of("(1-x)/10");
+    assertThat(u.add(v)).isEqualTo(RationalFunction.of("(8+2*x)/30"));
+    assertThat(u.add(RationalFunction.of("-x/6"))).isEqualTo(RationalFunction.of("1/6"));
+    assertThat(u.add(u.negate())).isEqualTo(RationalFunction.ZERO);
+    assertThat(RationalFunction.ZERO.add(u)).isEqualTo(u);
   }
 
   @Test
@@ -377,6 +409,17 @@ public class RationalFunctionTest {
     RationalFunction t = RationalFunction.of("1/(1+x)");
 
     assertThat(r.subtract(s)).isEqualTo(t);
+
+    // With polynomials.
+    Polynomial p = Polynomial.of("1+y");
+    assertThat(t.subtract(p)).isEqualTo(RationalFunction.of("(-x-y-x*y)/(1+x)"));
+    assertThat(new RationalFunction(p).subtract(t)).isEqualTo(t.subtract(p).negate());
+    assertThat(RationalFunction.ZERO.subtract(t)).isEqualTo(t.negate());
+
+    // Integer denominators.
+    RationalFunction u = RationalFunction.of("(1+x)/6");
+    RationalFunction v = RationalFunction.of("(1-x)/10");
+    assertThat(u.subtract(v)).isEqualTo(RationalFunction.of("(1+4*x)/15"));
   }
 
   @Test
@@ -386,6 +429,11 @@ public class RationalFunctionTest {
     RationalFunction t = RationalFunction.of("x*y/(1+x)/(y-1)");
 
     assertThat(r.multiply(s)).isEqualTo(t);
+
+    // With polynomials.
+    assertThat(t.multiply(Polynomial.of("1+x"))).isEqualTo(RationalFunction.of("x*y/(y-1)"));
+    assertThat(t.multiply(Polynomial.of("z"))).isEqualTo(RationalFunction.of("x*y*z/(1+x)/(y-1)"));
+    assertThat(t.multiply(Polynomial.ZERO)).isEqualTo(RationalFunction.ZERO);
   }
 
   @Test
@@ -395,6 +443,11 @@ public class RationalFunctionTest {
     RationalFunction t = RationalFunction.of("(1+y+z)/(1+x+y)");
 
     assertThat(r.divide(s)).isEqualTo(t);
+
+    // With polynomials.
+    assertThat(t.divide(Polynomial.of("1+y+z"))).isEqualTo(r);
+    assertThat(t.divide(Polynomial.of("w"))).isEqualTo(RationalFunction.of("(1+y+z)/(1+x+y)/w"));
+    assertThrows(ArithmeticException.class, () -> t.divide(Polynomial.ZERO));
   }
 
   @Test
@@ -415,6 +468,78 @@ public class RationalFunctionTest {
     assertThat(r1.pow(-5).multiply(r5)).isEqualTo(one);
   }
 
+  @Test
+  void sumOf() {
+    RationalFunction[] rr =
+        RationalFunction.of(
+            "1/(1+x)",
+            "x/(2*(1+x)^2*(1+y))",
+            "(1+y)/(1+x)/(2+y)",
+            "-1/(1+x)",
+            "x+y",
+            "2/(1-x^2)",
+            "y/(2*(1+x)^2*(1+y))");
+
+    RationalFunction r = RationalFunction.ZERO;
+    for (RationalFunction a : rr) {
+      r = r.add(a);
+    }
+
+    assertThat(RationalFunction.sumOf()).isEqualTo(RationalFunction.ZERO);
+    assertThat(RationalFunction.sumOf(rr[1])).isEqualTo(rr[1]);
+    assertThat(RationalFunction.sumOf(rr[0], rr[1])).isEqualTo(rr[0].add(rr[1]));
+    assertThat(RationalFunction.sumOf(rr)).isEqualTo(r);
+    assertThat(RationalFunction.sumOf(Arrays.asList(rr))).isEqualTo(r);
+    assertThat(RationalFunction.sumOf(Arrays.stream(rr))).isEqualTo(r);
+
+    // Cancellation between the groups.
+    assertThat(RationalFunction.sumOf(RationalFunction.of("1/(1-x)", "-x/(1-x)", "y")))
+        .isEqualTo(RationalFunction.of("1+y"));
+    assertThat(RationalFunction.sumOf(RationalFunction.of("1/x", "1/y", "-1/x", "-1/y")))
+        .isEqualTo(RationalFunction.ZERO);
+  }
+
+  @Test
+  void commonDenominatorOf() {
+    RationalFunction[] rr =
+        RationalFunction.of("1/(1+x)", "x/(2*(1+x)^2*(1+y))", "(1+y)/(1+x)/(2+y)", "x+y");
+    Polynomial r = Polynomial.of("2*(1+x)^2*(1+y)*(2+y)");
+
+    assertThat(RationalFunction.commonDenominatorOf()).isEqualTo(Polynomial.ONE);
+    assertThat(RationalFunction.commonDenominatorOf(rr[1])).isEqualTo(rr[1].getDenominator());
+    assertThat(RationalFunction.commonDenominatorOf(rr)).isEqualTo(r);
+    assertThat(RationalFunction.commonDenominatorOf(Arrays.asList(rr))).isEqualTo(r);
+    assertThat(RationalFunction.commonDenominatorOf(Arrays.stream(rr))).isEqualTo(r);
+  }
+
+  @Test
+  void squareFreeFactors() {
+    {
+      RationalFunction r = RationalFunction.of("-3*(1+x)^2/(2*y^3*(1+x+y))");
+      RationalFunction[] factors = r.squareFreeFactors();
+      RationalFunction[] answer =
+          RationalFunction.of("-3/2", "1+x", "1+x", "1/y", "1/y", "1/y", "1/(1+x+y)");
+      assertThat(factors[0]).isEqualTo(answer[0]);
+      assertThat(Arrays.asList(factors)).containsExactly((Object[]) answer);
+      RationalFunction product = RationalFunction.ONE;
+      for (RationalFunction f : factors) {
+        product = product.multiply(f);
+      }
+      assertThat(product).isEqualTo(r);
+    }
+
+    {
+      RationalFunction r = RationalFunction.of("(1+x)^2*y");
+      RationalFunction[] answer = RationalFunction.of("y", "1+x", "1+x");
+      assertThat(Arrays.asList(r.squareFreeFactors())).containsExactly((Object[]) answer);
+    }
+
+    {
+      RationalFunction r = RationalFunction.of("2/3");
+      assertThat(r.squareFreeFactors()).isEqualTo(new RationalFunction[] {r});
+    }
+  }
+
   @Test
   void substitute() {
     {
@@ -462,6 +587,25 @@ public class RationalFunctionTest {
       assertThat(RationalFunction.of(s1).substitute(Polynomial.of(s2), RationalFunction.of(s3)))
           .isEqualTo(RationalFunction.of(s4));
     }
+    {
+      String s1 = "(x^3*y+x^2+z)/(x^2-1)";
+      String s2 = "x^2";
+      String s3 = "a/b";
+      String s4 = "(x*y*a+a+z*b)/(a-b)";
+      assertThat(RationalFunction.of(s1).substitute(Polynomial.of(s2), RationalFunction.of(s3)))
+          .isEqualTo(RationalFunction.of(s4));
+    }
+    {
+      RationalFunction r1 = RationalFunction.of("(x^2+y)/(x+1)");
+      RationalFunction r3 = RationalFunction.of("1/(1+y)");
+      RationalFunction r4 = r3.pow(2).add(Polynomial.of("y")).divide(r3.add(Polynomial.ONE));
+      assertThat(r1.substitute(Polynomial.of("x"), r3)).isEqualTo(r4);
+      assertThat(r1.substitute(Polynomial.of("x"), r3))
+          .isEqualTo(RationalFunction.of("(1+y+2*y^2+y^3)/(1+y)/(2+y)"));
+      RationalFunction r5 = RationalFunction.of("1/(1+x)");
+      RationalFunction r6 = RationalFunction.of("-1");
+      assertThrows(ArithmeticException.class, () -> r5.substitute(Polynomial.of("x"), r6));
+    }
     {
       RationalFunction r1 = RationalFunction.of("(1+x+y+z)^6/(1-x-y)");
       RationalFunction r3 = RationalFunction.of("1");
@@ -471,6 +615,38 @@ public class RationalFunctionTest {
     }
   }
 
+  @Test
+  public void substituteMap() {
+    {
+      RationalFunction r = RationalFunction.of("(x^2+z)/(x+1+z*x)+1/(1+x*z^3)");
+      Map<Polynomial, RationalFunction> rules = new LinkedHashMap<>();
+      rules.put(Polynomial.of("x"), RationalFunction.of("1/(1+y)"));
+      rules.put(Polynomial.of("z"), RationalFunction.of("(1+y)/w"));
+      RationalFunction q = r;
+      for (Map.Entry<Polynomial, RationalFunction> rule : rules.entrySet()) {
+        q = q.substitute(rule.getKey(), rule.getValue());
+      }
+      assertThat(r.substitute(rules)).isEqualTo(q);
+    }
+    {
+      // Simultaneous: the right-hand sides are not substituted again.
+      RationalFunction r = RationalFunction.of("x/y");
+      Map<Polynomial, RationalFunction> rules = new LinkedHashMap<>();
+      rules.put(Polynomial.of("x"), RationalFunction.of("y/2"));
+      rules.put(Polynomial.of("y"), RationalFunction.of("1/x"));
+      assertThat(r.substitute(rules)).isEqualTo(RationalFunction.of("x*y/2"));
+    }
+    {
+      RationalFunction r = RationalFunction.of("1/(x+z)");
+      Map<Polynomial, RationalFunction> rules = new LinkedHashMap<>();
+      rules.put(Polynomial.of("x"), RationalFunction.of("1"));
+      rules.put(Polynomial.of("z"), RationalFunction.of("-1"));
+      assertThrows(ArithmeticException.class, () -> r.substitute(rules));
+      rules.put(Polynomial.of("x+y"), RationalFunction.of("1"));
+      assertThrows(IllegalArgumentException.class, () -> r.substitute(rules));
+    }
+  }
+
   @Test
   public void evaluateAtInt() {
     String s = "(1+x)^4*(2+y)^3*(3+z)^2*(4+w)/(1+x^2)/(1+y^2)/(1+z)/(1+w)";
@@ -573,6 +749,34 @@ public class RationalFunctionTest {
         ArithmeticException.class, () -> a.evaluate(Variable.of("a", "z"), bigInts(-1, -1)));
   }
 
+  @Test
+  public void evaluateToRational() {
+    RationalFunction a = RationalFunction.of("(1+x)^4*(2+y)^3/(3-z)^2/(4+w)");
+
+    {
+      Rational<BigInteger> r =
+          a.evaluateToRational(Variable.of("w", "x", "y", "z", "a"), ints(1, 2, 3, 4, 5));
+      RationalFunction b = a.evaluate(Variable.of("w", "x", "y", "z"), ints(1, 2, 3, 4));
+      assertThat(new Polynomial(r.numerator())).isEqualTo(b.getNumerator());
+      assertThat(new Polynomial(r.denominator())).isEqualTo(b.getDenominator());
+    }
+
+    {
+      // 2^4 * 1^3 / 4^2 / 2 = 1/2.
+      Rational<BigInteger> r =
+          a.evaluateToRational(Variable.of("w", "x", "y", "z"), bigInts(-2, 1, -1, -1));
+      assertThat(r.numerator()).isEqualTo(BigInteger.ONE);
+      assertThat(r.denominator()).isEqualTo(BigInteger.valueOf(2));
+    }
+
+    assertThrows(
+        ArithmeticException.class,
+        () -> a.evaluateToRational(Variable.of("w", "x", "y", "z"), ints(1, 2, 3, 3)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> a.evaluateToRational(Variable.of("x", "y", "z"), ints(1, 2, 3)));
+  }
+
   @Test
   public void evaluateAtZero() {
     String s = "(1+x)^4*(2+y)^3*(3+z)^2*(4+w)/(1+x^2)/(1+y^2)/(1+z)/(z+w)";
@@ -806,5 +1010,52 @@ public class RationalFunctionTest {
       RationalFunction r1 = RationalFunction.of("(1+x+y)^3/(1-3*x+y)^2");
       assertThrows(IllegalArgumentException.class, () -> r1.derivative(Variable.of("x"), -1));
     }
+    {
+      // Repeated factors in the denominator.
+      RationalFunction r1 = RationalFunction.of("(1+x*y)/((1+x)^3*(x^2+y)*(2-y))");
+      RationalFunction r2 = r1.derivative(Variable.of("x"));
+      RationalFunction r3 = r2.derivative(Variable.of("x"));
+      RationalFunction r4 = r3.derivative(Variable.of("x"));
+      assertThat(r1.derivative(Variable.of("x"), 2)).isEqualTo(r3);
+      assertThat(r1.derivative(Variable.of("x"), 3)).isEqualTo(r4);
+      assertThat(r1.derivative(Variable.of("y"), 2))
+          .isEqualTo(r1.derivative(Variable.of("y")).derivative(Variable.of("y")));
+    }
+  }
+
+  @Test
+  public void derivatives() {
+    {
+      RationalFunction r1 = RationalFunction.of("(1+x+y)^3/(1-3*x+y)^2");
+      RationalFunction[] rr = r1.derivatives(Variable.of("x"), 5);
+      assertThat(rr.length).isEqualTo(6);
+      assertThat(rr[0]).isEqualTo(r1);
+      assertThat(rr[2]).isEqualTo(RationalFunction.of("96*(1+y)^2*(1+x+y)/(1-3*x+y)^4"));
+      assertThat(rr[5])
+          .isEqualTo(RationalFunction.of("(51840*(1+y)^2*(7+3*x+7*y))/(1-3*x+y)^7"));
+      for (int k = 1; k < rr.length; k++) {
+        assertThat(rr[k]).isEqualTo(rr[k - 1].derivative(Variable.of("x")));
+      }
+    }
+    {
+      RationalFunction r1 = RationalFunction.of("(1+x*y)/((1+x)^3*(x^2+y)*(2-y))");
+      RationalFunction[] rr = r1.derivatives(Variable.of("x"), 4);
+      for (int k = 1; k < rr.length; k++) {
+        assertThat(rr[k]).isEqualTo(rr[k - 1].derivative(Variable.of("x")));
+      }
+    }
+    {
+      RationalFunction r1 = RationalFunction.of("x^2/(1+y)");
+      RationalFunction[] rr = r1.derivatives(Variable.of("x"), 4);
+      assertThat(rr)
+          .isEqualTo(RationalFunction.of("x^2/(1+y)", "2*x/(1+y)", "2/(1+y)", "0", "0"));
+    }
+    {
+      RationalFunction r1 = RationalFunction.of("x^2/(1+y)");
+      assertThat(r1.derivatives(Variable.of("z"), 2))
+          .isEqualTo(new RationalFunction[] {r1, RationalFunction.ZERO, RationalFunction.ZERO});
+      assertThat(r1.derivatives(Variable.of("x"), 0)).isEqualTo(new RationalFunction[] {r1});
+      assertThrows(IllegalArgumentException.class, () -> r1.derivatives(Variable.of("x"), -1));
+    }
   }
 }
@@ -0,0 +1,58 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class SeriesTest {
+  @Test
+  public void geometric() {
+    Variable x = Variable.of("x");
+    Series s = RationalFunction.of("1/(1-x)").series(x, 5);
+    assertThat(s.getVariable()).isEqualTo(x);
+    assertThat(s.getMinOrder()).isEqualTo(0);
+    assertThat(s.getMaxOrder()).isEqualTo(5);
+    assertThat(s.getCoefficients()).isEqualTo(RationalFunction.of("1", "1", "1", "1", "1", "1"));
+    assertThat(s.getCoefficient(-3)).isEqualTo(RationalFunction.ZERO);
+    assertThat(s.toRationalFunction()).isEqualTo(RationalFunction.of("1+x+x^2+x^3+x^4+x^5"));
+    assertThat(s.toString()).isEqualTo("(1)+(1)*x+(1)*x^2+(1)*x^3+(1)*x^4+(1)*x^5+O(x^6)");
+    assertThrows(IllegalArgumentException.class, () -> s.getCoefficient(6));
+  }
+
+  @Test
+  public void laurent() {
+    Variable x = Variable.of("x");
+    Series s = RationalFunction.of("(1+x)/(x^2*(2-x*y))").series(x, 1);
+    assertThat(s.getMinOrder()).isEqualTo(-2);
+    assertThat(s.getCoefficients())
+        .isEqualTo(RationalFunction.of("1/2", "1/2+y/4", "y/4+y^2/8", "y^2/8+y^3/16"));
+    assertThat(s.toString().startsWith("(1/2)*x^(-2)+")).isTrue();
+
+    Series t = RationalFunction.of("1/x^3").series(x, -4);
+    assertThat(t.getMinOrder()).isEqualTo(-3);
+    assertThat(t.getCoefficients()).isEmpty();
+    assertThat(t.toString()).isEqualTo("O(x^(-3))");
+
+    Series u = RationalFunction.ZERO.series(x, 2);
+    assertThat(u.getCoefficients()).isEmpty();
+    assertThat(u.getCoefficient(2)).isEqualTo(RationalFunction.ZERO);
+    assertThat(u.toString()).isEqualTo("O(x^3)");
+  }
+
+  @Test
+  public void taylor() {
+    Variable x = Variable.of("x");
+    RationalFunction r = RationalFunction.of("(1+y*x-x^3)/(2+x+y*x^2)/(3-z*x)");
+    int order = 5;
+    Series s = r.series(x, order);
+    RationalFunction[] derivatives = r.derivatives(x, order);
+    RationalFunction factorial = RationalFunction.ONE;
+    for (int k = 0; k <= order; k++) {
+      if (k > 0) {
+        factorial = factorial.multiply(new RationalFunction(k));
+      }
+      assertThat(s.getCoefficient(k)).isEqualTo(derivatives[k].evaluate(x, 0).divide(factorial));
+    }
+  }
+}
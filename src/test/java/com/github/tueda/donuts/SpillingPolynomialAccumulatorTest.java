@@ -0,0 +1,134 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class SpillingPolynomialAccumulatorTest {
+  @Test
+  public void inMemory() {
+    try (SpillingPolynomialAccumulator acc = new SpillingPolynomialAccumulator()) {
+      assertThat(acc.toPolynomial()).isEqualTo(Polynomial.ZERO);
+      acc.add(Polynomial.of("1+x"));
+      acc.add(Polynomial.of("y-x"));
+      acc.subtract(Polynomial.of("1"));
+      assertThat(acc.getRunCount()).isEqualTo(0);
+      assertThat(acc.toPolynomial()).isEqualTo(Polynomial.of("y"));
+    }
+  }
+
+  @Test
+  public void spill() throws IOException {
+    Path dir = Files.createTempDirectory("donuts-test");
+    try {
+      Polynomial expected = Polynomial.ZERO;
+      try (SpillingPolynomialAccumulator acc = new SpillingPolynomialAccumulator(3, dir)) {
+        for (int i = 0; i < 20; i++) {
+          // The variables grow during the accumulation.
+          String w = "w" + (i % 5);
+          Polynomial p =
+              Polynomial.of("(1+x+y)^" + (i % 4) + "-z^" + i + "*(x-" + w + ")+1234567890123*y");
+          if (i % 3 == 0) {
+            acc.subtract(p);
+            expected = expected.subtract(p);
+          } else {
+            acc.add(p);
+            expected = expected.add(p);
+          }
+        }
+        assertThat(acc.getRunCount()).isGreaterThan(0);
+        try (Stream<Path> files = Files.list(dir)) {
+          assertThat(files.count()).isEqualTo(acc.getRunCount());
+        }
+
+        assertThat(acc.toPolynomial()).isEqualTo(expected);
+        // Can be called repeatedly.
+        assertThat(acc.toPolynomial()).isEqualTo(expected);
+
+        List<Polynomial> terms = new ArrayList<>();
+        VariableSet variables = acc.getVariables();
+        acc.forEachTerm(
+            (c, e) -> {
+              Polynomial t = new Polynomial(c);
+              int i = 0;
+              for (Variable v : variables) {
+                t = t.multiply(Polynomial.of(v.getName()).pow(e[i++]));
+              }
+              terms.add(t);
+            });
+        assertThat(terms.size()).isEqualTo(expected.size());
+        assertThat(Polynomial.sumOf(terms)).isEqualTo(expected);
+
+        // Complete cancellation.
+        acc.subtract(expected);
+        assertThat(acc.toPolynomial().isZero()).isTrue();
+      }
+      try (Stream<Path> files = Files.list(dir)) {
+        assertThat(files.count()).isEqualTo(0);
+      }
+    } finally {
+      Files.deleteIfExists(dir);
+    }
+  }
+
+  @Test
+  public void compact() {
+    Polynomial expected = Polynomial.ZERO;
+    try (SpillingPolynomialAccumulator acc = new SpillingPolynomialAccumulator(1)) {
+      for (int i = 0; i < 200; i++) {
+        Polynomial p = Polynomial.of("x^" + (i % 7) + "+y^" + (i % 11) + "+" + i + "*z");
+        acc.add(p);
+        expected = expected.add(p);
+      }
+      assertThat(acc.getRunCount()).isLessThan(64);
+      assertThat(acc.toPolynomial()).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void spillFailure() throws IOException {
+    Path dir = Files.createTempDirectory("donuts-test");
+    Path movedDir = dir.resolveSibling(dir.getFileName() + "-moved");
+    try {
+      try (SpillingPolynomialAccumulator acc = new SpillingPolynomialAccumulator(2, dir)) {
+        acc.add(Polynomial.of("1+x+y"));
+        assertThat(acc.getRunCount()).isEqualTo(1);
+
+        // Spilling fails while the directory is missing, but the sum must be kept.
+        Files.move(dir, movedDir);
+        assertThrows(UncheckedIOException.class, () -> acc.add(Polynomial.of("x+z+w")));
+        Files.move(movedDir, dir);
+        assertThat(acc.getRunCount()).isEqualTo(1);
+        assertThat(acc.toPolynomial()).isEqualTo(Polynomial.of("1+2*x+y+z+w"));
+
+        acc.add(Polynomial.of("-x+y+z"));
+        assertThat(acc.getRunCount()).isEqualTo(2);
+        assertThat(acc.toPolynomial()).isEqualTo(Polynomial.of("1+x+2*y+2*z+w"));
+      }
+      try (Stream<Path> files = Files.list(dir)) {
+        assertThat(files.count()).isEqualTo(0);
+      }
+    } finally {
+      Files.deleteIfExists(dir);
+    }
+  }
+
+  @Test
+  public void invalidUsages() {
+    assertThrows(IllegalArgumentException.class, () -> new SpillingPolynomialAccumulator(0));
+
+    SpillingPolynomialAccumulator acc = new SpillingPolynomialAccumulator();
+    acc.close();
+    acc.close();
+    assertThrows(IllegalStateException.class, () -> acc.add(Polynomial.ONE));
+    assertThrows(IllegalStateException.class, () -> acc.toPolynomial());
+  }
+}
@@ -0,0 +1,67 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class SubstitutionRuleTest {
+  @Test
+  public void polynomialRule() {
+    Polynomial lhs = Polynomial.of("x*y");
+    Polynomial rhs = Polynomial.of("1+z-w");
+    SubstitutionRule rule = SubstitutionRule.of(lhs, rhs);
+    assertThat(rule.getLhs()).isEqualTo(lhs);
+    assertThat(rule.getRhs()).isEqualTo(new RationalFunction(rhs));
+    assertThat(rule.isPolynomial()).isTrue();
+
+    List<Polynomial> inputs = new ArrayList<>();
+    for (int n = 0; n < 10; n++) {
+      inputs.add(Polynomial.of("(1+x+y+z)").pow(n).add(Polynomial.of("a")));
+    }
+    List<Polynomial> outputs = rule.applyToAllPolynomials(inputs);
+    assertThat(outputs).hasSize(inputs.size());
+    for (int i = 0; i < inputs.size(); i++) {
+      Polynomial expected = inputs.get(i).substitute(lhs, rhs);
+      assertThat(rule.applyTo(inputs.get(i))).isEqualTo(expected);
+      assertThat(outputs.get(i)).isEqualTo(expected);
+    }
+
+    Polynomial p = Polynomial.of("1+a");
+    assertThat(rule.applyTo(p)).isSameInstanceAs(p);
+
+    RationalFunction r = RationalFunction.of("(x^2*y+y^2*x)/(1-x*y)");
+    assertThat(rule.applyTo(r)).isEqualTo(r.substitute(lhs, new RationalFunction(rhs)));
+  }
+
+  @Test
+  public void rationalRule() {
+    Polynomial lhs = Polynomial.of("x");
+    RationalFunction rhs = RationalFunction.of("(1+y)/(1-z)");
+    SubstitutionRule rule = SubstitutionRule.of(lhs, rhs, 16);
+    assertThat(rule.isPolynomial()).isFalse();
+
+    List<RationalFunction> inputs = new ArrayList<>();
+    for (int n = 0; n < 10; n++) {
+      inputs.add(RationalFunction.of("(1+x+y)/(2+x-z)").pow(n).add(RationalFunction.of("x^3")));
+    }
+    List<RationalFunction> outputs = rule.applyToAll(inputs);
+    for (int i = 0; i < inputs.size(); i++) {
+      RationalFunction expected = inputs.get(i).substitute(lhs, rhs);
+      assertThat(rule.applyTo(inputs.get(i))).isEqualTo(expected);
+      assertThat(outputs.get(i)).isEqualTo(expected);
+    }
+
+    assertThrows(IllegalStateException.class, () -> rule.applyTo(Polynomial.of("x")));
+    assertThrows(IllegalStateException.class, () -> rule.applyToAllPolynomials(new ArrayList<>()));
+
+    SubstitutionRule rule2 = SubstitutionRule.of(lhs, RationalFunction.of("-1"));
+    assertThrows(ArithmeticException.class, () -> rule2.applyTo(RationalFunction.of("1/(1+x)")));
+
+    assertThrows(
+        IllegalArgumentException.class, () -> SubstitutionRule.of(Polynomial.of("2*x"), rhs));
+    assertThrows(IllegalArgumentException.class, () -> SubstitutionRule.of(lhs, rhs, 0));
+  }
+}
@@ -0,0 +1,39 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class TermPatternTest {
+  @Test
+  public void match() {
+    Variable x = Variable.of("x");
+    Variable y = Variable.of("y");
+    TermPattern p = TermPattern.of(x, y);
+    assertThat(p.getVariables()).isEqualTo(new Variable[] {x, y});
+    assertThat(p.match(Polynomial.of("3*x^2*y*z"))).isEqualTo(new int[] {2, 1});
+    assertThat(p.match(Polynomial.of("x^2*z"))).isNull();
+    assertThat(p.toString()).isEqualTo("x^[1,inf]*y^[1,inf]");
+
+    TermPattern q = p.withRange(y, 0, 2).withRange(x, 2, 3);
+    assertThat(q.match(Polynomial.of("x^2*z"))).isEqualTo(new int[] {2, 0});
+    assertThat(q.match(Polynomial.of("x^3*y^2"))).isEqualTo(new int[] {3, 2});
+    assertThat(q.match(Polynomial.of("x^4*y^2"))).isNull();
+    assertThat(q.match(Polynomial.of("x^3*y^3"))).isNull();
+    assertThat(q.toString()).isEqualTo("x^[2,3]*y^[0,2]");
+
+    TermPattern r = q.where(e -> e[0] + e[1] == 4).where(e -> e[1] > 0);
+    assertThat(r.match(Polynomial.of("x^3*y"))).isEqualTo(new int[] {3, 1});
+    assertThat(r.match(Polynomial.of("x^2*y"))).isNull();
+    assertThat(r.match(Polynomial.of("x^2*y^2"))).isEqualTo(new int[] {2, 2});
+    assertThat(r.match(Polynomial.of("x^3"))).isNull();
+
+    assertThrows(IllegalArgumentException.class, () -> p.match(Polynomial.of("x+y")));
+    assertThrows(IllegalArgumentException.class, () -> TermPattern.of());
+    assertThrows(IllegalArgumentException.class, () -> TermPattern.of(x, x));
+    assertThrows(IllegalArgumentException.class, () -> p.withRange(Variable.of("z"), 0, 1));
+    assertThrows(IllegalArgumentException.class, () -> p.withRange(x, -1, 1));
+    assertThrows(IllegalArgumentException.class, () -> p.withRange(x, 2, 1));
+  }
+}
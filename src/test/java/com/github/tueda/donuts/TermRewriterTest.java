@@ -0,0 +1,90 @@
+package com.github.tueda.donuts;
+
+import static com.github.tueda.donuts.TestUtils.withParallelKernels;
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+public class TermRewriterTest {
+  @Test
+  public void rewrite() {
+    Variable x = Variable.of("x");
+    Variable y = Variable.of("y");
+
+    {
+      // x^n * y^m -> n * m + 1.
+      RewriteRule rule =
+          RewriteRule.of(TermPattern.of(x, y), e -> new Polynomial(e[0] * e[1] + 1));
+      TermRewriter rewriter = TermRewriter.of(rule);
+      assertThat(rewriter.size()).isEqualTo(1);
+      assertThat(rewriter.getRule(0)).isSameInstanceAs(rule);
+      assertThat(rule.getRhs(2, 3)).isEqualTo(new Polynomial(7));
+      assertThat(rewriter.rewrite(Polynomial.of("3*x^2*y*z+x+y^2+5-x*y")))
+          .isEqualTo(Polynomial.of("9*z+x+y^2+5-2"));
+    }
+    {
+      // The first matching rule wins.
+      TermRewriter rewriter =
+          TermRewriter.of(
+              RewriteRule.of(
+                  TermPattern.of(x).withRange(x, 2, TermPattern.UNBOUNDED), Polynomial.ZERO),
+              RewriteRule.of(TermPattern.of(x), e -> Polynomial.of("a").pow(e[0])));
+      assertThat(rewriter.rewrite(Polynomial.of("1+x+x^2+x^3*y+2*x*y")))
+          .isEqualTo(Polynomial.of("1+a+2*a*y"));
+    }
+    {
+      // The results are not rewritten again.
+      TermRewriter rewriter =
+          TermRewriter.of(
+              Arrays.asList(
+                  RewriteRule.of(TermPattern.of(x), e -> Polynomial.of("x").pow(2 * e[0]))));
+      assertThat(rewriter.rewrite(Polynomial.of("x+x^2"))).isEqualTo(Polynomial.of("x^2+x^4"));
+    }
+    {
+      // Conditions.
+      TermRewriter rewriter =
+          TermRewriter.of(
+              RewriteRule.of(TermPattern.of(x).where(e -> e[0] % 2 == 0), Polynomial.ONE));
+      assertThat(rewriter.rewrite(Polynomial.of("x+x^2+x^4*z"))).isEqualTo(Polynomial.of("x+1+z"));
+    }
+    {
+      // Optional variables.
+      TermRewriter rewriter =
+          TermRewriter.of(
+              RewriteRule.of(
+                  TermPattern.of(x, y).withRange(y, 0, TermPattern.UNBOUNDED),
+                  e -> Polynomial.of("b").pow(e[1])));
+      assertThat(rewriter.rewrite(Polynomial.of("x*y^2+x+y^3")))
+          .isEqualTo(Polynomial.of("b^2+1+y^3"));
+    }
+    {
+      // A pattern without required variables: terms free of x.
+      TermRewriter rewriter =
+          TermRewriter.of(
+              RewriteRule.of(TermPattern.of(x).withRange(x, 0, 0), Polynomial.of("2")));
+      assertThat(rewriter.rewrite(Polynomial.of("1+x+y"))).isEqualTo(Polynomial.of("2+x+2*y"));
+    }
+    {
+      // No matches.
+      TermRewriter rewriter = TermRewriter.of(RewriteRule.of(TermPattern.of(x), Polynomial.ONE));
+      Polynomial p = Polynomial.of("1+y");
+      assertThat(rewriter.rewrite(p)).isSameInstanceAs(p);
+    }
+  }
+
+  @Test
+  public void parallel() {
+    Variable x = Variable.of("x");
+    Variable y = Variable.of("y");
+    TermRewriter rewriter =
+        TermRewriter.of(
+            RewriteRule.of(
+                TermPattern.of(x, y).where(e -> e[0] > e[1]),
+                e -> Polynomial.of("1+a").pow(e[0] - e[1])),
+            RewriteRule.of(TermPattern.of(y), e -> Polynomial.of("b").pow(e[0])));
+    Polynomial p = Polynomial.of("(1+x+y+z)^8");
+    Polynomial expected = rewriter.rewrite(p);
+    assertThat(withParallelKernels(() -> rewriter.rewrite(p))).isEqualTo(expected);
+  }
+}
@@ -1,8 +1,17 @@
 package com.github.tueda.donuts;
 
 import cc.redberry.rings.bigint.BigInteger;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 public class TestUtils {
+  /** The parallelism of the pool for the parallel kernels in tests. */
+  private static final int PARALLELISM = 4;
+
+  /** The lock for changing the threshold of the parallel kernels. */
+  private static final Object PARALLEL_LOCK = new Object();
+
   /**
    * Returns an array of {@code int}.
    *
@@ -26,4 +35,39 @@ public class TestUtils {
     }
     return result;
   }
+
+  /**
+   * Returns the result of the given computation with the parallel term-wise kernels used for any
+   * polynomial, on a dedicated fork-join pool so that the parallel path is taken even on a machine
+   * with few processors. The calls are serialized, and the previous threshold is restored.
+   *
+   * @param <T> the type of the result
+   * @param computation the computation
+   * @return the result
+   */
+  public static <T> T withParallelKernels(Supplier<T> computation) {
+    synchronized (PARALLEL_LOCK) {
+      int oldThreshold = ParallelTermKernels.getThreshold();
+      ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+      try {
+        ParallelTermKernels.setThreshold(1);
+        return pool.submit(computation::get).get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AssertionError(e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new AssertionError(cause);
+      } finally {
+        ParallelTermKernels.setThreshold(oldThreshold);
+        pool.shutdown();
+      }
+    }
+  }
 }
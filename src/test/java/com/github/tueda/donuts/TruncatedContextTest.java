@@ -0,0 +1,81 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+public class TruncatedContextTest {
+  @Test
+  public void totalDegree() {
+    TruncatedContext ctx = TruncatedContext.of(VariableSet.of("x", "y"), 2);
+
+    assertThat(ctx.truncate(Polynomial.of("1+x+y+x*y+x^2*y+z^5")))
+        .isEqualTo(Polynomial.of("1+x+y+x*y+z^5"));
+
+    Polynomial a = Polynomial.of("1+x+y+z");
+    Polynomial b = Polynomial.of("1-x+x*y+y^3");
+    assertThat(ctx.multiply(a, b)).isEqualTo(ctx.truncate(a.multiply(b)));
+    assertThat(ctx.multiply(a, b)).isEqualTo(Polynomial.of("1+y+z-x^2-x*z+x*y*z"));
+
+    assertThat(ctx.pow(a, 5)).isEqualTo(ctx.truncate(a.pow(5)));
+    assertThat(ctx.pow(a, 0)).isEqualTo(Polynomial.ONE);
+    assertThat(ctx.pow(Polynomial.of("x"), 3)).isEqualTo(Polynomial.ZERO);
+    assertThrows(IllegalArgumentException.class, () -> ctx.pow(a, -1));
+
+    assertThat(ctx.productOf(a, b, a)).isEqualTo(ctx.truncate(a.multiply(b).multiply(a)));
+    assertThat(ctx.productOf(Arrays.asList(a, b, a)))
+        .isEqualTo(ctx.truncate(a.multiply(b).multiply(a)));
+    assertThat(ctx.productOf()).isEqualTo(Polynomial.ONE);
+
+    Polynomial c = Polynomial.of("x^3+y");
+    assertThat(ctx.add(a, c)).isEqualTo(Polynomial.of("1+x+2*y+z"));
+    assertThat(ctx.subtract(a, c)).isEqualTo(Polynomial.of("1+x+z"));
+    assertThat(ctx.sumOf(a, b, c)).isEqualTo(ctx.truncate(a.add(b).add(c)));
+    assertThat(ctx.sumOf(Arrays.asList(a, b, c))).isEqualTo(ctx.truncate(a.add(b).add(c)));
+
+    // Variables not in the polynomials.
+    assertThat(TruncatedContext.of(VariableSet.of("w"), 0).multiply(a, b))
+        .isEqualTo(a.multiply(b));
+
+    assertThrows(
+        IllegalArgumentException.class, () -> TruncatedContext.of(VariableSet.of("x"), -1));
+  }
+
+  @Test
+  public void degrees() {
+    TruncatedContext ctx = TruncatedContext.of(Variable.of("x", "y"), new int[] {1, 2});
+
+    Polynomial a = Polynomial.of("(1+x+y)^2");
+    Polynomial b = Polynomial.of("(1-x+y)^3");
+    Polynomial ab = ctx.multiply(a, b);
+    assertThat(ab).isEqualTo(ctx.truncate(a.multiply(b)));
+    assertThat(ab.degree(Variable.of("x"))).isAtMost(1);
+    assertThat(ab.degree(Variable.of("y"))).isAtMost(2);
+    assertThat(ctx.pow(a, 3)).isEqualTo(ctx.truncate(a.pow(3)));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> TruncatedContext.of(Variable.of("x", "y"), new int[] {1}));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> TruncatedContext.of(Variable.of("x", "y"), new int[] {1, -1}));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> TruncatedContext.of(Variable.of("x", "x"), new int[] {1, 1}));
+  }
+
+  @Test
+  public void polynomialMethods() {
+    Polynomial a = Polynomial.of("1+x+y+z");
+    Polynomial b = Polynomial.of("1-x+x*y+y^3");
+    TruncatedContext ctx1 = TruncatedContext.of(VariableSet.of("x", "y"), 2);
+    TruncatedContext ctx2 = TruncatedContext.of(Variable.of("y", "z"), new int[] {1, 0});
+    assertThat(a.multiplyTruncated(b, VariableSet.of("x", "y"), 2))
+        .isEqualTo(ctx1.multiply(a, b));
+    assertThat(a.multiplyTruncated(b, Variable.of("y", "z"), new int[] {1, 0}))
+        .isEqualTo(ctx2.multiply(a, b));
+    assertThat(a.powTruncated(4, VariableSet.of("x", "y"), 2)).isEqualTo(ctx1.pow(a, 4));
+  }
+}
@@ -0,0 +1,59 @@
+package com.github.tueda.donuts;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import cc.redberry.rings.bigint.BigInteger;
+import cc.redberry.rings.poly.multivar.MultivariatePolynomial;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+public class VariableOrderingTest {
+  @Test
+  public void applyAndRestore() {
+    VariableSet v = VariableSet.of("a", "w", "x", "y", "z");
+    Polynomial p = Polynomial.of("x^7*y + x^3*z^2 + z + 1").translate(v);
+    MultivariatePolynomial<BigInteger> raw = p.getRawPolynomialWithoutCopy();
+
+    VariableOrdering ordering = VariableOrdering.of(Collections.singletonList(raw));
+    assertThat(ordering.isIdentity()).isFalse();
+
+    MultivariatePolynomial<BigInteger> reordered = ordering.apply(raw);
+    assertThat(reordered.nVariables).isEqualTo(3);
+    // y (degree 1) < z (degree 2) < x (degree 7).
+    assertThat(reordered.degrees()).isEqualTo(new int[] {1, 2, 7});
+    assertThat(ordering.restore(reordered)).isEqualTo(raw);
+  }
+
+  @Test
+  public void identity() {
+    Polynomial p = Polynomial.of("1 + x + y^2 + z^3");
+    MultivariatePolynomial<BigInteger> raw = p.getRawPolynomialWithoutCopy();
+    VariableOrdering ordering = VariableOrdering.of(Collections.singletonList(raw));
+    assertThat(ordering.isIdentity()).isTrue();
+    assertThat(ordering.apply(raw)).isSameInstanceAs(raw);
+  }
+
+  @Test
+  public void gcd() {
+    Polynomial g = Polynomial.of("x^6 + y*z + 3");
+    Polynomial a = Polynomial.of("(y^3 - z)").multiply(g);
+    Polynomial b = Polynomial.of("(x - 2*y^2)").multiply(g);
+    Polynomial c = Polynomial.of("(1 + z^4)").multiply(g);
+
+    assertThat(a.gcd(b)).isEqualTo(g);
+    assertThat(Polynomial.gcdOf(a, b, c)).isEqualTo(g);
+    assertThat(a.lcm(b)).isEqualTo(Polynomial.of("(y^3 - z)*(x - 2*y^2)").multiply(g));
+
+    RationalFunction r = new RationalFunction(a, b);
+    assertThat(r).isEqualTo(RationalFunction.of("(y^3 - z)/(x - 2*y^2)"));
+  }
+
+  @Test
+  public void factors() {
+    Polynomial p = Polynomial.of("(x^5 + y)*(x + y^3*z)^2*(z^4 + y + x)");
+    Polynomial[] answer =
+        Polynomial.of("x^5 + y", "x + y^3*z", "x + y^3*z", "z^4 + y + x");
+    assertThat(Arrays.asList(p.factors())).containsExactly((Object[]) answer);
+  }
+}
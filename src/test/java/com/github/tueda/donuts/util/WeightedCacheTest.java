@@ -0,0 +1,44 @@
+package com.github.tueda.donuts.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class WeightedCacheTest {
+  @Test
+  public void test() {
+    WeightedCache<String, Integer> cache = new WeightedCache<>(10);
+
+    cache.put("a", 1, 4, 100);
+    cache.put("b", 2, 4, 1);
+
+    assertThat(cache.get("a")).isEqualTo(1);
+    assertThat(cache.get("b")).isEqualTo(2);
+    assertThat(cache.get("x")).isNull();
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.getWeight()).isEqualTo(8);
+
+    // The cheapest entry "b" is evicted.
+    cache.put("c", 3, 4, 50);
+    assertThat(cache.get("a")).isEqualTo(1);
+    assertThat(cache.get("b")).isNull();
+    assertThat(cache.get("c")).isEqualTo(3);
+    assertThat(cache.getWeight()).isEqualTo(8);
+    assertThat(cache.getEvictionCount()).isEqualTo(1);
+
+    // Too heavy entries are not stored.
+    cache.put("d", 4, 11, 1000);
+    assertThat(cache.get("d")).isNull();
+
+    assertThat(cache.getHitCount()).isEqualTo(4);
+    assertThat(cache.getMissCount()).isEqualTo(3);
+
+    cache.clear();
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.getWeight()).isEqualTo(0);
+    assertThat(cache.getMaxWeight()).isEqualTo(10);
+
+    assertThrows(IllegalArgumentException.class, () -> new WeightedCache<String, Integer>(0));
+  }
+}